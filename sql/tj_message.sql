@@ -58,6 +58,7 @@ CREATE TABLE `notice_task`  (
   `expire_time` datetime NULL DEFAULT NULL COMMENT '任务失效时间',
   `max_times` int NULL DEFAULT 1 COMMENT '任务重复执行次数上限，1则只发一次',
   `finished` bit(1) NULL DEFAULT b'0' COMMENT '任务是否完成，默认false',
+  `last_target_id` bigint NULL DEFAULT NULL COMMENT '已处理的最后一个目标用户id，任务中断后从这里继续',
   `creater` bigint NOT NULL COMMENT '创建人',
   `updater` bigint NOT NULL COMMENT '更新人',
   `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
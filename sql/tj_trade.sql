@@ -38,6 +38,16 @@ CREATE TABLE `cart`  (
 -- ----------------------------
 INSERT INTO `cart` VALUES (1638714274064904194, 2, 1552558707325374467, '/img-tx/d15c718da3a24343b57b06becd79a032.jpg', '前端工程师2022版12', 32900, '2023-03-23 09:28:25', '2023-03-23 09:28:25');
 
+-- ----------------------------
+-- Table structure for cart_version
+-- ----------------------------
+DROP TABLE IF EXISTS `cart_version`;
+CREATE TABLE `cart_version`  (
+  `user_id` bigint NOT NULL COMMENT '用户id',
+  `version` bigint NOT NULL DEFAULT 0 COMMENT '已写回数据库的购物车缓存版本',
+  PRIMARY KEY (`user_id`) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '购物车写回版本，避免较旧的缓存快照覆盖较新的' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for order
 -- ----------------------------
@@ -62,7 +72,8 @@ CREATE TABLE `order`  (
   `creater` bigint NOT NULL COMMENT '创建人',
   `updater` bigint NOT NULL COMMENT '更新人',
   `deleted` tinyint NOT NULL DEFAULT 0 COMMENT '逻辑删除',
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_user_create_time`(`user_id` ASC, `deleted` ASC, `create_time` ASC, `id` ASC, `status` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -107,7 +118,8 @@ CREATE TABLE `order_detail`  (
   `updater` bigint NOT NULL COMMENT '更新人',
   PRIMARY KEY (`id`) USING BTREE,
   INDEX `idx_order`(`order_id` ASC) USING BTREE,
-  INDEX `idx_user_course`(`user_id` ASC, `course_id` ASC) USING BTREE,
+  INDEX `idx_user_course`(`user_id` ASC, `course_id` ASC, `status` ASC) USING BTREE,
+  INDEX `idx_course_status`(`course_id` ASC, `status` ASC) USING BTREE,
   INDEX `idx_course_expire_time`(`course_expire_time` ASC) USING BTREE,
   INDEX `idx_pay_channel`(`pay_channel` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单明细' ROW_FORMAT = Dynamic;
@@ -136,6 +148,23 @@ INSERT INTO `order_detail` VALUES (1585167987554402305, 1585167979069325314, 129
 INSERT INTO `order_detail` VALUES (1589930049877413889, 1589930049848053761, 129, 1549025085494521857, 0, 'java泛型', '/img-tx/default-cover-url.jpg', 12, NULL, 0, 0, 5, NULL, '', '2022-11-08 18:37:18', '2023-03-20 23:33:34', 5, 5);
 INSERT INTO `order_detail` VALUES (1597502690467774465, 1597502678241378305, 129, 1589905661084430337, 10, '可能是史上最全的微服务技术栈课程', '/img-tx/dafa5df0b10146a6881d3f26e1d091c4.jpg', 9999, NULL, 0, 10, 3, NULL, '', '2022-11-29 16:08:16', '2023-03-20 23:33:34', 129, 129);
 
+-- ----------------------------
+-- Table structure for order_outbox
+-- ----------------------------
+DROP TABLE IF EXISTS `order_outbox`;
+CREATE TABLE `order_outbox`  (
+  `id` bigint NOT NULL COMMENT '消息id',
+  `order_id` bigint NOT NULL COMMENT '订单id',
+  `routing_key` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_0900_ai_ci NOT NULL COMMENT '消息的RoutingKey，交换机固定为order.topic',
+  `payload` json NOT NULL COMMENT '消息内容',
+  `status` tinyint NOT NULL DEFAULT 0 COMMENT '投递状态，0：待投递，1：已投递，2：投递失败',
+  `retry_times` int NOT NULL DEFAULT 0 COMMENT '投递失败次数',
+  `create_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_status_create_time`(`status` ASC, `create_time` ASC) USING BTREE
+) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '订单本地消息表，与订单在同一事务中写入，由中继任务投递到MQ' ROW_FORMAT = Dynamic;
+
 -- ----------------------------
 -- Table structure for refund_apply
 -- ----------------------------
@@ -163,7 +192,8 @@ CREATE TABLE `refund_apply`  (
   `update_time` datetime NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `creater` bigint NOT NULL COMMENT '创建人',
   `updater` bigint NOT NULL COMMENT '更新人',
-  PRIMARY KEY (`id`) USING BTREE
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `idx_status_id`(`status` ASC, `id` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_0900_ai_ci COMMENT = '退款申请' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
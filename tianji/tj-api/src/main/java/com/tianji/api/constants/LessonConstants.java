@@ -0,0 +1,16 @@
+package com.tianji.api.constants;
+
+import java.time.Duration;
+
+public interface LessonConstants {
+    /**
+     * 用户有效课程集合(ZSET)的key前缀，完整key：lesson:valid:{userId}，成员为课程id，
+     * 分数为该成员的失效时间戳(毫秒)，分数大于当前时间才有效。
+     * 课程被移除(退款)时分数写为负的失效时间戳，在此之前不允许写回
+     */
+    String VALID_LESSON_KEY_PREFIX = "lesson:valid:";
+    /**
+     * 每个成员最长的缓存时间，成员的失效时间取课程过期时间和写入时间+该时长中较早的一个
+     */
+    Duration VALID_LESSON_TTL = Duration.ofMinutes(30);
+}
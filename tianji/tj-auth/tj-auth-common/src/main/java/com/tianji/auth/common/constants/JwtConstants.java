@@ -5,8 +5,12 @@ import java.time.Duration;
 public class JwtConstants {
     public static final String PAYLOAD_USER_KEY = "user";
     public static final String PAYLOAD_JTI_KEY = "jti";
+    public static final String PAYLOAD_DEVICE_KEY = "did";
 
+    // 用户refresh-token的hash，field是设备id，value是 jti:过期时间戳
     public static final String JWT_REDIS_KEY_PREFIX = "jwt:uid:";
+    // 每个用户最多同时登录的设备数量
+    public static final int JWT_MAX_DEVICES = 5;
     // token过期时间，测试期间改为 1天，正常是5分钟
     public static final Duration JWT_TOKEN_TTL = Duration.ofMinutes(5);
     // public static final Duration JWT_TOKEN_TTL = Duration.ofMinutes(60 * 24);
@@ -25,6 +29,14 @@ public class JwtConstants {
     public static final String AUTH_PRIVILEGE_KEY = "auth:privileges";
     public static final String AUTH_PRIVILEGE_VERSION_KEY = "version";
     public static final String LOCK_AUTH_PRIVILEGE_KEY = "lock:auth:privileges";
+    // 权限增量变更stream，字段：v 版本号，op 操作类型，其余字段为权限id和权限json
+    public static final String AUTH_PRIVILEGE_STREAM_KEY = "auth:privileges:stream";
+    public static final long AUTH_PRIVILEGE_STREAM_MAX_LEN = 10000;
+    // 单条变更最多携带的权限数量，超出后网关全量加载
+    public static final int AUTH_PRIVILEGE_EVENT_MAX_SIZE = 1000;
+    public static final String AUTH_PRIVILEGE_OP_PUT = "put";
+    public static final String AUTH_PRIVILEGE_OP_DEL = "del";
+    public static final String AUTH_PRIVILEGE_OP_RESET = "reset";
     /* 权限缓存 KEY  end */
 
 }
@@ -16,6 +16,12 @@ import com.tianji.common.exceptions.ForbiddenException;
 import com.tianji.common.exceptions.UnauthorizedException;
 import com.tianji.common.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisZSetCommands;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
@@ -31,12 +37,14 @@ import static com.tianji.auth.common.constants.JwtConstants.*;
 
 @Slf4j
 public class AuthUtil {
-    // 缓存权限信息
-    private Map<String, PrivilegeRoleDTO> privileges = new HashMap<>();
-    // 要拦截的路径匹配符的集合
-    private Set<String> paths = new HashSet<>();
-    // 权限版本信息，减少不必要的缓存处理
-    private int privilegeVersion;
+    // 单次从stream读取的变更数量
+    private static final int EVENT_BATCH_SIZE = 500;
+    private static final String FIRST_EVENT_ID = "0-0";
+
+    // 权限快照，变更时复制后整体替换，读取时无需加锁
+    private volatile PrivilegeSnapshot snapshot = PrivilegeSnapshot.EMPTY;
+    // 已经处理的最后一条权限变更消息id
+    private String lastEventId;
 
     private final AntPathMatcher antPathMatcher = new AntPathMatcher();
     private final JwtSignerHolder jwtSignerHolder;
@@ -92,8 +100,10 @@ public class AuthUtil {
     }
 
     public void checkAuth(String antPath, R<LoginUserDTO> r){
+        // 0.同一次校验只使用同一个快照
+        PrivilegeSnapshot current = this.snapshot;
         // 1.判断是否是需要权限的路径
-        String matchPath = findMatchPath(antPath);
+        String matchPath = findMatchPath(current, antPath);
         if(matchPath == null){
             // 没有权限限制，直接放行
             return;
@@ -104,7 +114,7 @@ public class AuthUtil {
             throw new UnauthorizedException(r.getCode(), r.getMsg());
         }
         // 3.获取当前路径所需权限
-        PrivilegeRoleDTO pathPrivilege = findPathPrivilege(matchPath);
+        PrivilegeRoleDTO pathPrivilege = current.byPath.get(matchPath);
 
         // 4.权限判断
         Set<Long> requiredRoles = pathPrivilege.getRoles();
@@ -114,19 +124,13 @@ public class AuthUtil {
         }
     }
 
-    private String findMatchPath(String antPath){
-        String matchPath = null;
-        for (String pathPattern : paths) {
+    private String findMatchPath(PrivilegeSnapshot current, String antPath){
+        for (String pathPattern : current.paths) {
             if(antPathMatcher.match(pathPattern, antPath)){
-                matchPath = pathPattern;
-                break;
+                return pathPattern;
             }
         }
-        return matchPath;
-    }
-
-    private PrivilegeRoleDTO findPathPrivilege(String path){
-        return privileges.get(path);
+        return null;
     }
 
     private List<PrivilegeRoleDTO> loadPrivileges(){
@@ -139,38 +143,136 @@ public class AuthUtil {
                 .collect(Collectors.toList());
     }
 
-    private int currentVersion() {
+    private long currentVersion() {
         String version = stringRedisTemplate.opsForValue().get(AUTH_PRIVILEGE_VERSION_KEY);
         if(StrUtil.isEmpty(version)){
             return 0;
         }
-        return Integer.parseInt(version);
+        return Long.parseLong(version);
     }
 
-
-    @Scheduled(fixedDelay = 20000)
+    @Scheduled(fixedDelay = 1000)
     public void refreshTask(){
-        // 1.获取版本号
-        int currentVersion = currentVersion();
-        if (currentVersion == this.privilegeVersion) {
-            // 版本一致，说明数据没有更新，直接结束任务
+        // 1.首次执行，全量加载
+        if (lastEventId == null) {
+            reload();
             return;
         }
+        // 2.循环读取权限变更，直到没有新的变更
+        while (true) {
+            List<MapRecord<String, Object, Object>> records = stringRedisTemplate.opsForStream().read(
+                    StreamReadOptions.empty().count(EVENT_BATCH_SIZE),
+                    StreamOffset.create(AUTH_PRIVILEGE_STREAM_KEY, ReadOffset.from(lastEventId)));
+            if (CollUtil.isEmpty(records)) {
+                // 没有新的变更，但版本号落后，说明stream已被清理，全量加载
+                if (currentVersion() > snapshot.version) {
+                    reload();
+                }
+                return;
+            }
+            // 3.应用变更
+            if (!applyEvents(records)) {
+                // 版本不连续或需要全量重置
+                reload();
+                return;
+            }
+            if (records.size() < EVENT_BATCH_SIZE) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 把一批变更应用到快照的副本上，再整体替换快照
+     *
+     * @return 变更是否应用成功，false表示需要全量加载
+     */
+    private boolean applyEvents(List<MapRecord<String, Object, Object>> records) {
+        PrivilegeSnapshot current = this.snapshot;
+        long version = current.version;
+        Map<Long, PrivilegeRoleDTO> byId = new HashMap<>(current.byId);
+        for (MapRecord<String, Object, Object> record : records) {
+            Map<Object, Object> event = record.getValue();
+            long v = Long.parseLong(String.valueOf(event.get("v")));
+            if (v <= version) {
+                // 全量加载时已经包含的变更
+                continue;
+            }
+            String op = String.valueOf(event.get("op"));
+            if (v != version + 1 || AUTH_PRIVILEGE_OP_RESET.equals(op)) {
+                log.info("权限版本不连续或全量重置，本地版本：{}，变更版本：{}，操作：{}", version, v, op);
+                return false;
+            }
+            for (Map.Entry<Object, Object> en : event.entrySet()) {
+                String field = String.valueOf(en.getKey());
+                if ("v".equals(field) || "op".equals(field)) {
+                    continue;
+                }
+                Long id = Long.valueOf(field);
+                if (AUTH_PRIVILEGE_OP_DEL.equals(op)) {
+                    byId.remove(id);
+                } else {
+                    byId.put(id, JSONUtil.toBean(String.valueOf(en.getValue()), PrivilegeRoleDTO.class));
+                }
+            }
+            version = v;
+        }
+        this.snapshot = new PrivilegeSnapshot(version, byId);
+        this.lastEventId = records.get(records.size() - 1).getId().getValue();
+        return true;
+    }
+
+    /**
+     * 全量加载权限，先记录stream中最新的变更，再加载权限hash，之后从该变更继续增量同步
+     */
+    private void reload() {
+        // 1.获取最新的变更id和版本
+        List<MapRecord<String, Object, Object>> last = stringRedisTemplate.opsForStream()
+                .reverseRange(AUTH_PRIVILEGE_STREAM_KEY, Range.unbounded(), RedisZSetCommands.Limit.limit().count(1));
+        String eventId = FIRST_EVENT_ID;
+        long version;
+        if (CollUtil.isEmpty(last)) {
+            version = currentVersion();
+        } else {
+            eventId = last.get(0).getId().getValue();
+            version = Long.parseLong(String.valueOf(last.get(0).getValue().get("v")));
+        }
         // 2.获取最新权限信息
         List<PrivilegeRoleDTO> privilegeRoleDTOS = loadPrivileges();
-        if(CollUtil.isEmpty(privilegeRoleDTOS)){
-            // 更新版本
-            this.privilegeVersion = currentVersion;
-            return;
-        }
-        // 3.数据处理
-        Map<String, PrivilegeRoleDTO> map = new HashMap<>();
+        Map<Long, PrivilegeRoleDTO> byId = new HashMap<>(privilegeRoleDTOS.size());
         for (PrivilegeRoleDTO p : privilegeRoleDTOS) {
-            map.put(p.getAntPath(), p);
-            this.privileges = map;
+            byId.put(p.getId(), p);
+        }
+        // 3.替换快照
+        this.snapshot = new PrivilegeSnapshot(version, byId);
+        this.lastEventId = eventId;
+        log.info("全量加载权限完成，版本：{}，数量：{}", version, byId.size());
+    }
+
+    /**
+     * 权限快照，创建后不再修改
+     */
+    private static class PrivilegeSnapshot {
+        private static final PrivilegeSnapshot EMPTY = new PrivilegeSnapshot(0, Collections.emptyMap());
+
+        // 权限版本
+        private final long version;
+        // 权限id与权限的映射，用于应用增量变更
+        private final Map<Long, PrivilegeRoleDTO> byId;
+        // 路径匹配符与权限的映射
+        private final Map<String, PrivilegeRoleDTO> byPath;
+        // 要拦截的路径匹配符
+        private final String[] paths;
+
+        private PrivilegeSnapshot(long version, Map<Long, PrivilegeRoleDTO> byId) {
+            this.version = version;
+            this.byId = byId;
+            Map<String, PrivilegeRoleDTO> map = new HashMap<>(byId.size());
+            for (PrivilegeRoleDTO p : byId.values()) {
+                map.put(p.getAntPath(), p);
+            }
+            this.byPath = map;
+            this.paths = map.keySet().toArray(new String[0]);
         }
-        this.paths = map.keySet();
-        // 4.更新版本
-        this.privilegeVersion = currentVersion;
     }
 }
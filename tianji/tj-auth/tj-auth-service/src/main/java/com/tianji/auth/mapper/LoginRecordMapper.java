@@ -2,6 +2,9 @@ package com.tianji.auth.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.tianji.auth.domain.po.LoginRecord;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +16,10 @@ import com.tianji.auth.domain.po.LoginRecord;
  */
 public interface LoginRecordMapper extends BaseMapper<LoginRecord> {
 
+    /**
+     * 批量新增登录记录，一条多值INSERT语句
+     * @param records 登录记录
+     * @return 新增的行数
+     */
+    int insertBatch(@Param("records") List<LoginRecord> records);
 }
@@ -42,7 +42,7 @@ public class AccountServiceImpl implements IAccountService{
         // 2.1.设置记住我标记
         detail.setRememberMe(loginDTO.getRememberMe());
         // 2.2.生成token
-        String token = generateToken(detail);
+        String token = generateToken(detail, null);
 
         // 3.计入登录信息表
         loginRecordService.loginSuccess(loginDTO.getCellPhone(), detail.getUserId());
@@ -50,11 +50,12 @@ public class AccountServiceImpl implements IAccountService{
         return token;
     }
 
-    private String generateToken(LoginUserDTO detail) {
+    private String generateToken(LoginUserDTO detail, String oldRefreshToken) {
         // 2.2.生成access-token
         String token = jwtTool.createToken(detail);
-        // 2.3.生成refresh-token，将refresh-token的JTI 保存到Redis
-        String refreshToken = jwtTool.createRefreshToken(detail);
+        // 2.3.生成refresh-token，将refresh-token的JTI 保存到Redis，刷新时校验并替换旧的JTI
+        String refreshToken = oldRefreshToken == null ?
+                jwtTool.createRefreshToken(detail) : jwtTool.rotateRefreshToken(detail, oldRefreshToken);
         // 2.4.将refresh-token写入用户cookie，并设置HttpOnly为true
         int maxAge = BooleanUtils.isTrue(detail.getRememberMe()) ?
                 (int) JwtConstants.JWT_REMEMBER_ME_TTL.toSeconds() : -1;
@@ -82,9 +83,9 @@ public class AccountServiceImpl implements IAccountService{
 
     @Override
     public String refreshToken(String refreshToken) {
-        // 1.校验refresh-token,校验JTI
+        // 1.校验refresh-token
         LoginUserDTO userDTO = jwtTool.parseRefreshToken(refreshToken);
-        // 2.生成新的access-token、refresh-token
-        return generateToken(userDTO);
+        // 2.校验JTI，生成新的access-token、refresh-token
+        return generateToken(userDTO, refreshToken);
     }
 }
@@ -4,48 +4,93 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.auth.domain.po.LoginRecord;
 import com.tianji.auth.mapper.LoginRecordMapper;
 import com.tianji.auth.service.ILoginRecordService;
-import com.tianji.common.utils.MarkedRunnable;
+import com.tianji.common.utils.StringUtils;
 import com.tianji.common.utils.WebUtils;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDateTime;
-import java.util.concurrent.Executor;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * <p>
  * 登录信息记录表 服务实现类
  * </p>
+ * 登录记录先写入有界缓冲区，由单独的线程按数量或时间批量写入数据库，登录流程不等待数据库。
+ * 缓冲区超过警戒水位后按比例抽样写入，写满后直接丢弃，不会阻塞登录。
  *
  * @author 虎哥
  * @since 2022-07-12
  */
+@Slf4j
 @Service
 public class LoginRecordServiceImpl extends ServiceImpl<LoginRecordMapper, LoginRecord> implements ILoginRecordService {
 
-    private static final Executor WRITE_RECORD_EXECUTOR;
-
-    static {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        //配置核心线程数
-        executor.setCorePoolSize(20);
-        //配置最大线程数
-        executor.setMaxPoolSize(40);
-        //配置队列大小
-        executor.setQueueCapacity(99999);
-        //配置线程池中的线程的名称前缀
-        executor.setThreadNamePrefix("login-record-write-worker-");
-        // 设置拒绝策略：放弃任务
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());
-        //执行初始化
-        executor.initialize();
-        WRITE_RECORD_EXECUTOR = executor;
+    // 缓冲区容量
+    private static final int BUFFER_CAPACITY = 20000;
+    // 缓冲区警戒水位，超过后开始抽样
+    private static final int SAMPLE_THRESHOLD = BUFFER_CAPACITY * 4 / 5;
+    // 抽样比例，超过警戒水位后每N条记录保留1条
+    private static final int SAMPLE_RATE = 10;
+    // 每批写入的最大数量
+    private static final int BATCH_SIZE = 500;
+    // 两次写入的最大间隔，毫秒
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    // 手机号字段长度
+    private static final int CELL_PHONE_LENGTH = 11;
+    // ip字段长度，超长的ipv6地址截断，避免整批写入失败
+    private static final int IP_LENGTH = 15;
+
+    private final BlockingQueue<LoginRecord> buffer = new ArrayBlockingQueue<>(BUFFER_CAPACITY);
+    // 抽样计数器
+    private final AtomicLong sampleCounter = new AtomicLong();
+    // 因抽样或缓冲区已满而丢弃的记录数量
+    private final AtomicLong droppedCounter = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writer;
+
+    @PostConstruct
+    public void startWriter() {
+        running = true;
+        writer = new Thread(this::writeLoop, "login-record-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 停机时停止写线程，并把缓冲区剩余的记录全部写入
+     */
+    @PreDestroy
+    public void drain() throws InterruptedException {
+        running = false;
+        writer.interrupt();
+        writer.join(FLUSH_INTERVAL_MILLIS * 5);
+        List<LoginRecord> records = new ArrayList<>(BATCH_SIZE);
+        while (buffer.drainTo(records, BATCH_SIZE) > 0) {
+            flush(records);
+        }
+        log.info("登录记录写线程已停止，累计丢弃记录：{}", droppedCounter.get());
     }
 
     @Override
     public void saveAsync(LoginRecord record) {
-        WRITE_RECORD_EXECUTOR.execute(new MarkedRunnable(() -> save(record)));
+        // 1.超过警戒水位，按比例抽样
+        if (buffer.size() >= SAMPLE_THRESHOLD && sampleCounter.incrementAndGet() % SAMPLE_RATE != 0) {
+            droppedCounter.incrementAndGet();
+            return;
+        }
+        // 2.写入缓冲区，已满则丢弃
+        if (!buffer.offer(record)) {
+            droppedCounter.incrementAndGet();
+        }
     }
 
     @Override
@@ -55,8 +100,74 @@ public class LoginRecordServiceImpl extends ServiceImpl<LoginRecordMapper, Login
         record.setLoginTime(now);
         record.setLoginDate(now.toLocalDate());
         record.setUserId(userId);
-        record.setCellPhone(cellphone);
-        record.setIpv4(WebUtils.getRemoteAddr());
+        record.setCellPhone(StringUtils.sub(cellphone, 0, CELL_PHONE_LENGTH));
+        record.setIpv4(StringUtils.sub(WebUtils.getRemoteAddr(), 0, IP_LENGTH));
         saveAsync(record);
     }
+
+    private void writeLoop() {
+        List<LoginRecord> records = new ArrayList<>(BATCH_SIZE);
+        long reportedDropped = 0;
+        while (running) {
+            try {
+                // 1.等待第一条记录，最多等待一个写入间隔
+                LoginRecord first = buffer.poll(FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                records.add(first);
+                // 2.凑够一批或到达写入间隔
+                long deadline = System.currentTimeMillis() + FLUSH_INTERVAL_MILLIS;
+                while (records.size() < BATCH_SIZE) {
+                    buffer.drainTo(records, BATCH_SIZE - records.size());
+                    long wait = deadline - System.currentTimeMillis();
+                    if (records.size() >= BATCH_SIZE || wait <= 0) {
+                        break;
+                    }
+                    LoginRecord next = buffer.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    records.add(next);
+                }
+            } catch (InterruptedException e) {
+                // 停机时被中断，写完当前批次后退出，缓冲区剩余记录由drain写入
+                log.debug("登录记录写线程被中断");
+            }
+            // 3.批量写入
+            flush(records);
+            // 4.记录丢弃情况
+            long dropped = droppedCounter.get();
+            if (dropped > reportedDropped) {
+                log.warn("登录记录缓冲区繁忙，累计丢弃记录：{}", dropped);
+                reportedDropped = dropped;
+            }
+        }
+    }
+
+    private void flush(List<LoginRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            baseMapper.insertBatch(records);
+        } catch (Exception e) {
+            // 整批失败，逐条写入，只丢弃写入失败的记录
+            log.error("批量写入登录记录失败，改为逐条写入，数量：{}", records.size(), e);
+            flushOneByOne(records);
+        } finally {
+            records.clear();
+        }
+    }
+
+    private void flushOneByOne(List<LoginRecord> records) {
+        for (LoginRecord record : records) {
+            try {
+                baseMapper.insert(record);
+            } catch (Exception e) {
+                droppedCounter.incrementAndGet();
+                log.error("写入登录记录失败，用户id：{}，原因：{}", record.getUserId(), e.getMessage());
+            }
+        }
+    }
 }
@@ -144,8 +144,8 @@ public class PrivilegeServiceImpl extends ServiceImpl<PrivilegeMapper, Privilege
         }
         // 4.写入数据库
         rolePrivilegeService.saveBatch(rolePrivileges);
-        // 5.重置缓存
-        privilegeCache.initPrivilegesCache(listPrivilegeRoles());
+        // 5.增量更新变更权限的缓存
+        privilegeCache.cachePrivileges(listPrivilegeRoles(privilegeIds));
     }
 
     @Override
@@ -153,7 +153,36 @@ public class PrivilegeServiceImpl extends ServiceImpl<PrivilegeMapper, Privilege
     public void deleteRolePrivileges(Long roleId, List<Long> privilegeIds) {
         // 1.删除
         rolePrivilegeService.deleteRolePrivileges(roleId, privilegeIds);
-        // 2.移除对应角色权限缓存
-        privilegeCache.initPrivilegesCache(listPrivilegeRoles());
+        // 2.增量更新变更权限的缓存
+        privilegeCache.cachePrivileges(listPrivilegeRoles(privilegeIds));
+    }
+
+    /**
+     * 查询指定权限及其对应的角色
+     */
+    private List<PrivilegeRoleDTO> listPrivilegeRoles(List<Long> privilegeIds) {
+        if (CollUtils.isEmpty(privilegeIds)) {
+            return Collections.emptyList();
+        }
+        // 1.查询权限
+        List<Privilege> privileges = listByIds(privilegeIds);
+        // 2.查询权限关联的角色，并按照权限分组
+        Map<Long, Set<Long>> rpMap = rolePrivilegeService.lambdaQuery()
+                .in(RolePrivilege::getPrivilegeId, privilegeIds)
+                .list()
+                .stream()
+                .collect(Collectors.groupingBy(RolePrivilege::getPrivilegeId,
+                        Collectors.mapping(RolePrivilege::getRoleId, Collectors.toSet())));
+        // 3.组装权限对应角色
+        List<PrivilegeRoleDTO> list = new ArrayList<>(privileges.size());
+        for (Privilege p : privileges) {
+            PrivilegeRoleDTO prDTO = new PrivilegeRoleDTO();
+            prDTO.setId(p.getId());
+            prDTO.setRoles(rpMap.getOrDefault(p.getId(), new HashSet<>()));
+            prDTO.setAntPath(p.getMethod() + ":" + p.getUri());
+            prDTO.setInternal(p.getInternal());
+            list.add(prDTO);
+        }
+        return list;
     }
 }
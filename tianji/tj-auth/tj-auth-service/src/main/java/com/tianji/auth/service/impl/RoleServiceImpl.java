@@ -2,6 +2,7 @@ package com.tianji.auth.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.auth.domain.po.Role;
+import com.tianji.auth.domain.po.RolePrivilege;
 import com.tianji.auth.mapper.RoleMapper;
 import com.tianji.auth.service.IRoleMenuService;
 import com.tianji.auth.service.IRolePrivilegeService;
@@ -12,6 +13,8 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -46,10 +49,16 @@ public class RoleServiceImpl extends ServiceImpl<RoleMapper, Role> implements IR
     public void deleteRole(Long id) {
         // 1.删除角色
         removeById(id);
-        // 2.删除角色与权限的关联信息
+        // 2.删除角色与权限的关联信息，删除前记录角色拥有的权限
+        Set<Long> privilegeIds = rolePrivilegeService.lambdaQuery()
+                .eq(RolePrivilege::getRoleId, id)
+                .list()
+                .stream()
+                .map(RolePrivilege::getPrivilegeId)
+                .collect(Collectors.toSet());
         roleMenuService.removeByRoleId(id);
         rolePrivilegeService.removeByRoleId(id);
-        // 3.清理缓存
-        privilegeCache.removeCacheByRoleId(id);
+        // 3.清理缓存，只更新角色拥有的权限
+        privilegeCache.removeCacheByRoleId(id, privilegeIds);
     }
 }
@@ -0,0 +1,65 @@
+package com.tianji.auth.task;
+
+import com.tianji.auth.common.constants.JwtConstants;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 定时清理用户refresh-token hash中已过期的设备，整个hash的过期由key的有效期保证
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RefreshTokenSweepTask {
+
+    private static final RedisScript<Long> SWEEP_REFRESH_TOKEN_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/sweep_refresh_token.lua"), Long.class);
+    // 每次脚本处理的key数量
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    @Scheduled(fixedDelay = 600000, initialDelay = 60000)
+    public void sweepExpiredRefreshToken() {
+        long removed = 0;
+        ScanOptions options = ScanOptions.scanOptions()
+                .match(JwtConstants.JWT_REDIS_KEY_PREFIX + "*")
+                .count(1000)
+                .build();
+        // 1.遍历用户的refresh-token hash
+        try (Cursor<String> cursor = stringRedisTemplate.scan(options)) {
+            List<String> keys = new ArrayList<>(SWEEP_BATCH_SIZE);
+            while (cursor.hasNext()) {
+                keys.add(cursor.next());
+                if (keys.size() >= SWEEP_BATCH_SIZE) {
+                    removed += sweep(keys);
+                }
+            }
+            removed += sweep(keys);
+        } catch (Exception e) {
+            log.error("清理过期refresh-token失败", e);
+        }
+        log.debug("清理过期refresh-token完成，数量：{}", removed);
+    }
+
+    private long sweep(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0;
+        }
+        // 2.一批key在一次脚本调用中清理
+        Long removed = stringRedisTemplate.execute(SWEEP_REFRESH_TOKEN_SCRIPT, keys,
+                String.valueOf(System.currentTimeMillis()));
+        keys.clear();
+        return removed == null ? 0 : removed;
+    }
+}
@@ -13,13 +13,15 @@ import com.tianji.common.domain.dto.LoginUserDTO;
 import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.utils.AssertUtils;
 import com.tianji.common.utils.BooleanUtils;
-import com.tianji.common.utils.StringUtils;
 import com.tianji.common.utils.UserContext;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
 import java.security.KeyPair;
 import java.time.Duration;
+import java.util.Collections;
 import java.util.Date;
 
 import static com.tianji.auth.common.constants.JwtConstants.JWT_REFRESH_TTL;
@@ -27,6 +29,9 @@ import static com.tianji.auth.common.constants.JwtConstants.JWT_TOKEN_TTL;
 
 @Component
 public class JwtTool {
+    private static final RedisScript<Long> SAVE_REFRESH_TOKEN_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/save_refresh_token.lua"), Long.class);
+
     private final StringRedisTemplate stringRedisTemplate;
     private final JWTSigner jwtSigner;
 
@@ -51,33 +56,64 @@ public class JwtTool {
     }
 
     /**
-     * 创建刷新token，并将token的JTI记录到Redis中
+     * 登录时创建刷新token，为本次登录分配新的设备id，并将token的JTI记录到用户的Redis hash中
      *
      * @param userDetail 用户信息
      * @return 刷新token
      */
     public String createRefreshToken(LoginUserDTO userDetail) {
+        String device = UUID.randomUUID().toString(true).substring(0, 8);
+        return createRefreshToken(userDetail, device, "");
+    }
+
+    /**
+     * 轮换刷新token，在一个lua脚本中校验旧的JTI并替换为新的JTI，旧token随即失效
+     *
+     * @param userDetail 用户信息
+     * @param oldRefreshToken 已经通过{@link #parseRefreshToken(String)}校验的旧刷新token
+     * @return 新的刷新token
+     */
+    public String rotateRefreshToken(LoginUserDTO userDetail, String oldRefreshToken) {
+        JWT oldJwt = JWT.of(oldRefreshToken);
+        Object device = oldJwt.getPayload(JwtConstants.PAYLOAD_DEVICE_KEY);
+        Object jti = oldJwt.getPayload(JwtConstants.PAYLOAD_JTI_KEY);
+        if (device == null || jti == null) {
+            throw new BadRequestException(400, AuthErrorInfo.Msg.INVALID_TOKEN);
+        }
+        return createRefreshToken(userDetail, device.toString(), jti.toString());
+    }
+
+    private String createRefreshToken(LoginUserDTO userDetail, String device, String oldJti) {
         // 1.生成 JTI
         String jti = UUID.randomUUID().toString(true);
         // 2.生成jwt
         // 2.1.如果是记住我，则有效期7天，否则30分钟
         Duration ttl = BooleanUtils.isTrue(userDetail.getRememberMe()) ?
                 JwtConstants.JWT_REMEMBER_ME_TTL : JWT_REFRESH_TTL;
+        long now = System.currentTimeMillis();
+        long expireAt = now + ttl.toMillis();
         // 2.2.生成token
         String token = JWT.create()
                 .setJWTId(jti)
+                .setPayload(JwtConstants.PAYLOAD_DEVICE_KEY, device)
                 .setPayload(JwtConstants.PAYLOAD_USER_KEY, userDetail)
-                .setExpiresAt(new Date(System.currentTimeMillis() + ttl.toMillis()))
+                .setExpiresAt(new Date(expireAt))
                 .setSigner(jwtSigner)
                 .sign();
-        // 3.缓存jti，有效期与token一致，过期或删除JTI后，对应的refresh-token失效
-        stringRedisTemplate.opsForValue()
-                .set(JwtConstants.JWT_REDIS_KEY_PREFIX + userDetail.getUserId(), jti, ttl);
+        // 3.缓存jti，过期或删除JTI后，对应的refresh-token失效；轮换时先校验旧的JTI
+        Long result = stringRedisTemplate.execute(SAVE_REFRESH_TOKEN_SCRIPT,
+                Collections.singletonList(JwtConstants.JWT_REDIS_KEY_PREFIX + userDetail.getUserId()),
+                device, jti, String.valueOf(expireAt), String.valueOf(now),
+                String.valueOf(JwtConstants.JWT_MAX_DEVICES), oldJti);
+        if (result == null || result == 0) {
+            // jti不一致或已过期
+            throw new BadRequestException(400, AuthErrorInfo.Msg.INVALID_TOKEN);
+        }
         return token;
     }
 
     /**
-     * 解析刷新token
+     * 解析刷新token，只校验签名、有效期和数据格式，JTI在轮换时校验
      *
      * @param refreshToken 刷新token
      * @return 解析刷新token得到的用户信息
@@ -112,25 +148,16 @@ public class JwtTool {
         }
 
         // 5.数据解析
-        LoginUserDTO userDTO;
         try {
-            userDTO = ((JSONObject) userPayload).toBean(LoginUserDTO.class);
+            return ((JSONObject) userPayload).toBean(LoginUserDTO.class);
         } catch (RuntimeException e) {
             // 数据格式有误
             throw new BadRequestException(400, AuthErrorInfo.Msg.INVALID_TOKEN);
         }
-
-        // 6.JTI校验
-        String jti = stringRedisTemplate.opsForValue().get(JwtConstants.JWT_REDIS_KEY_PREFIX + userDTO.getUserId());
-        if (!StringUtils.equals(jti, jtiPayload.toString())) {
-            // jti不一致
-            throw new BadRequestException(400, AuthErrorInfo.Msg.INVALID_TOKEN);
-        }
-        return userDTO;
     }
 
     /**
-     * 清理刷新refresh-token的jti，本质是refresh-token作废
+     * 清理用户所有设备的refresh-token的jti，本质是refresh-token作废
      */
     public void cleanJtiCache() {
         stringRedisTemplate.delete(JwtConstants.JWT_REDIS_KEY_PREFIX + UserContext.getUser());
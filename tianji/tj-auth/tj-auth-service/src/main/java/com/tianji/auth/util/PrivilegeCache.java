@@ -6,21 +6,28 @@ import com.tianji.auth.domain.po.Privilege;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.common.utils.JsonUtils;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.BoundHashOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
-import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_KEY;
-import static com.tianji.auth.common.constants.JwtConstants.AUTH_PRIVILEGE_VERSION_KEY;
+import static com.tianji.auth.common.constants.JwtConstants.*;
 
+/**
+ * 权限缓存，每次变更在同一个lua脚本中写入权限hash、递增版本号，并把变更追加到权限stream，
+ * 网关按stream增量同步
+ */
 @Slf4j
 @Component
 public class PrivilegeCache {
+    private static final RedisScript<Long> PRIVILEGE_CACHE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/privilege_cache.lua"), Long.class);
+    private static final List<String> PRIVILEGE_CACHE_KEYS =
+            Arrays.asList(AUTH_PRIVILEGE_KEY, AUTH_PRIVILEGE_VERSION_KEY, AUTH_PRIVILEGE_STREAM_KEY);
+
     private final BoundHashOperations<String, String, String> hashOps;
     private final StringRedisTemplate stringRedisTemplate;
 
@@ -29,16 +36,31 @@ public class PrivilegeCache {
         this.hashOps = stringRedisTemplate.boundHashOps(AUTH_PRIVILEGE_KEY);
     }
 
+    /**
+     * 全量重置权限缓存，网关收到后全量加载
+     */
     public void initPrivilegesCache(List<PrivilegeRoleDTO> list) {
         // 1.组装权限对应角色
-        Map<String, String> map = new HashMap<>();
+        Map<String, String> map = new HashMap<>(list.size());
         for (PrivilegeRoleDTO prDTO : list) {
             map.put(prDTO.getId().toString(), JSONUtil.toJsonStr(prDTO));
         }
         // 2.写入 redis
-        hashOps.putAll(map);
-        // 3.版本递增
-        incrementVersion();
+        execute(AUTH_PRIVILEGE_OP_RESET, map);
+    }
+
+    /**
+     * 增量更新部分权限
+     */
+    public void cachePrivileges(List<PrivilegeRoleDTO> list) {
+        if (CollUtils.isEmpty(list)) {
+            return;
+        }
+        Map<String, String> map = new HashMap<>(list.size());
+        for (PrivilegeRoleDTO prDTO : list) {
+            map.put(prDTO.getId().toString(), JSONUtil.toJsonStr(prDTO));
+        }
+        execute(AUTH_PRIVILEGE_OP_PUT, map);
     }
 
     public void cacheSinglePrivilege(Privilege p, Set<Long> roleIds) {
@@ -48,8 +70,8 @@ public class PrivilegeCache {
             privilegeRoleDTO.setAntPath(p.getMethod() + ":" + p.getUri());
             privilegeRoleDTO.setRoles(roleIds);
             privilegeRoleDTO.setInternal(p.getInternal());
-            hashOps.put(p.getId().toString(), JSONUtil.toJsonStr(privilegeRoleDTO));
-            incrementVersion();
+            execute(AUTH_PRIVILEGE_OP_PUT,
+                    Collections.singletonMap(p.getId().toString(), JSONUtil.toJsonStr(privilegeRoleDTO)));
         } catch (Exception e) {
             log.error("缓存权限信息失败。 ->", e);
             throw new RuntimeException(e);
@@ -57,40 +79,69 @@ public class PrivilegeCache {
     }
 
     public void removePrivilegeCacheById(Long id) {
-        hashOps.delete(id);
-        incrementVersion();
+        removePrivilegeCacheByIds(Collections.singletonList(id));
     }
 
     public void removePrivilegeCacheByIds(List<Long> ids) {
-        hashOps.delete(ids.toArray());
-        incrementVersion();
-    }
-
-
-    private void incrementVersion() {
-        stringRedisTemplate.opsForValue().increment(AUTH_PRIVILEGE_VERSION_KEY, 1);
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        Map<String, String> map = new HashMap<>(ids.size());
+        for (Long id : ids) {
+            map.put(id.toString(), "");
+        }
+        execute(AUTH_PRIVILEGE_OP_DEL, map);
     }
 
-    public void removeCacheByRoleId(Long id) {
-        // 查询出所有权限信息
-        Map<String, String> cacheMap = hashOps.entries();
-        if(CollUtils.isEmpty(cacheMap)){
+    /**
+     * 从指定权限中移除角色，只读取和写回这些权限
+     *
+     * @param id 角色id
+     * @param privilegeIds 角色拥有的权限id
+     */
+    public void removeCacheByRoleId(Long id, Collection<Long> privilegeIds) {
+        if (CollUtils.isEmpty(privilegeIds)) {
+            return;
+        }
+        // 1.查询角色关联的权限信息
+        List<String> keys = new ArrayList<>(privilegeIds.size());
+        privilegeIds.forEach(privilegeId -> keys.add(privilegeId.toString()));
+        List<String> values = hashOps.multiGet(keys);
+        if (CollUtils.isEmpty(values)) {
             return;
         }
-        // 记录修改的数据
-        Map<String, String> modified = new HashMap<>();
-        for (Map.Entry<String, String> en : cacheMap.entrySet()) {
-            // 获取权限数据
-            String value = en.getValue();
+        // 2.记录修改的数据
+        Map<String, String> modified = new HashMap<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            String value = values.get(i);
+            if (value == null) {
+                continue;
+            }
             PrivilegeRoleDTO prDTO = JsonUtils.toBean(value, PrivilegeRoleDTO.class);
             // 尝试移除角色id
-            boolean remove = prDTO.getRoles().remove(id);
-            if(remove){
-                modified.put(en.getKey(), JsonUtils.toJsonStr(prDTO));
+            if (prDTO.getRoles() != null && prDTO.getRoles().remove(id)) {
+                modified.put(keys.get(i), JsonUtils.toJsonStr(prDTO));
             }
         }
-        // 写回缓存
-        hashOps.putAll(modified);
-        incrementVersion();
+        // 3.写回缓存
+        if (CollUtils.isEmpty(modified)) {
+            return;
+        }
+        execute(AUTH_PRIVILEGE_OP_PUT, modified);
+    }
+
+    private void execute(String op, Map<String, String> entries) {
+        // 1.组装参数：操作类型、stream长度、单条变更上限，然后是权限id和json
+        List<String> args = new ArrayList<>(entries.size() * 2 + 3);
+        args.add(op);
+        args.add(String.valueOf(AUTH_PRIVILEGE_STREAM_MAX_LEN));
+        args.add(String.valueOf(AUTH_PRIVILEGE_EVENT_MAX_SIZE));
+        entries.forEach((k, v) -> {
+            args.add(k);
+            args.add(v);
+        });
+        // 2.执行脚本
+        Long version = stringRedisTemplate.execute(PRIVILEGE_CACHE_SCRIPT, PRIVILEGE_CACHE_KEYS, args.toArray());
+        log.debug("权限缓存变更，op:{}, 数量:{}, version:{}", op, entries.size(), version);
     }
 }
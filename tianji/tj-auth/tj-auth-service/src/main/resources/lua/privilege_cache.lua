@@ -0,0 +1,28 @@
+-- KEYS[1]：权限缓存hash，KEYS[2]：权限版本号，KEYS[3]：权限变更stream
+-- ARGV[1]：操作类型 put/del/reset，ARGV[2]：stream最大长度，ARGV[3]：单条变更最多携带的权限数量
+-- ARGV[4...]：权限id和权限json成对出现，del操作的json为空串
+local op = ARGV[1]
+if(op == 'reset') then
+    -- 全量重置，清除旧数据
+    redis.call('del', KEYS[1])
+end
+for i = 4, #ARGV, 2 do
+    if(op == 'del') then
+        redis.call('hdel', KEYS[1], ARGV[i])
+    else
+        redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+    end
+end
+-- 版本号递增
+local version = redis.call('incr', KEYS[2])
+-- 变更过多时只通知网关全量加载
+local event = {'v', version, 'op', op}
+if(op ~= 'reset' and (#ARGV - 3) / 2 <= tonumber(ARGV[3])) then
+    for i = 4, #ARGV do
+        table.insert(event, ARGV[i])
+    end
+else
+    event[4] = 'reset'
+end
+redis.call('xadd', KEYS[3], 'MAXLEN', '~', ARGV[2], '*', unpack(event))
+return version
@@ -0,0 +1,56 @@
+-- KEYS[1]：用户refresh-token的hash，field是设备id，value是 jti:过期时间戳
+-- ARGV[1]：设备id，ARGV[2]：新的jti，ARGV[3]：新token过期时间戳(毫秒)，ARGV[4]：当前时间戳(毫秒)
+-- ARGV[5]：每个用户最多的登录设备数量，ARGV[6]：旧的jti，为空串时表示新登录，否则表示轮换
+-- 返回值：1 成功，0 旧的jti无效
+local key = KEYS[1]
+local device = ARGV[1]
+local expireAt = tonumber(ARGV[3])
+local now = tonumber(ARGV[4])
+local maxDevices = tonumber(ARGV[5])
+local oldJti = ARGV[6]
+
+local function parse(value)
+    local sep = string.find(value, ':', 1, true)
+    return string.sub(value, 1, sep - 1), tonumber(string.sub(value, sep + 1))
+end
+
+-- 兼容旧版本的字符串结构
+if(redis.call('type', key).ok == 'string') then
+    redis.call('del', key)
+end
+-- 轮换时校验旧的jti
+if(oldJti ~= '') then
+    local old = redis.call('hget', key, device)
+    if(not old) then
+        return 0
+    end
+    local jti, exp = parse(old)
+    if(jti ~= oldJti or exp <= now) then
+        return 0
+    end
+end
+-- 清理已过期的设备，记录其它有效设备
+local entries = redis.call('hgetall', key)
+local live = {}
+for i = 1, #entries, 2 do
+    local _, exp = parse(entries[i + 1])
+    if(exp <= now) then
+        redis.call('hdel', key, entries[i])
+    elseif(entries[i] ~= device) then
+        table.insert(live, {entries[i], exp})
+    end
+end
+-- 超出设备数量上限，移除最早过期的设备
+if(#live >= maxDevices) then
+    table.sort(live, function(a, b) return a[2] < b[2] end)
+    for i = 1, #live - maxDevices + 1 do
+        redis.call('hdel', key, live[i][1])
+    end
+end
+-- 写入新的jti，key的有效期不短于最晚过期的token
+redis.call('hset', key, device, ARGV[2] .. ':' .. ARGV[3])
+local ttl = expireAt - now
+if(redis.call('pttl', key) < ttl) then
+    redis.call('pexpire', key, ttl)
+end
+return 1
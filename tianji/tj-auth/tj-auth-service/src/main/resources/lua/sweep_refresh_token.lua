@@ -0,0 +1,19 @@
+-- KEYS：一批用户refresh-token的hash
+-- ARGV[1]：当前时间戳(毫秒)
+-- 返回值：清理的过期设备数量
+local now = tonumber(ARGV[1])
+local removed = 0
+for _, key in ipairs(KEYS) do
+    if(redis.call('type', key).ok == 'hash') then
+        local entries = redis.call('hgetall', key)
+        for i = 1, #entries, 2 do
+            local value = entries[i + 1]
+            local sep = string.find(value, ':', 1, true)
+            if(not sep or tonumber(string.sub(value, sep + 1)) <= now) then
+                redis.call('hdel', key, entries[i])
+                removed = removed + 1
+            end
+        end
+    end
+end
+return removed
@@ -1,5 +1,6 @@
 package com.tianji.common.autoconfigure.mvc.advice;
 
+import com.tianji.common.autoconfigure.mvc.converter.WrapperResponseMessageConverter;
 import com.tianji.common.constants.Constant;
 import com.tianji.common.domain.R;
 import com.tianji.common.utils.WebUtils;
@@ -15,6 +16,14 @@ import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
 
 @RestControllerAdvice
 public class WrapperResponseBodyAdvice implements ResponseBodyAdvice<Object> {
+
+    /**
+     * 判断请求路径的响应结果是否需要包装成R
+     */
+    public static boolean needWrap(String path) {
+        return !"/v2/api-docs".equals(path);
+    }
+
     @Override
     public boolean supports(MethodParameter returnType, @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
         return returnType.getParameterType() != R.class && WebUtils.isGatewayRequest();
@@ -25,7 +34,7 @@ public class WrapperResponseBodyAdvice implements ResponseBodyAdvice<Object> {
             Object body, @NonNull MethodParameter returnType, @NonNull MediaType selectedContentType,
             @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
             @NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response) {
-        if (request.getURI().getPath().equals("/v2/api-docs")){
+        if (!needWrap(request.getURI().getPath())){
             return body;
         }
         if (body == null) {
@@ -34,6 +43,10 @@ public class WrapperResponseBodyAdvice implements ResponseBodyAdvice<Object> {
         if(body instanceof R){
             return body;
         }
+        if (WrapperResponseMessageConverter.class.isAssignableFrom(selectedConverterType)) {
+            // 由转换器在输出流中直接写出R的字段
+            return body;
+        }
         return R.ok(body).requestId(MDC.get(Constant.REQUEST_ID_HEADER));
     }
 }
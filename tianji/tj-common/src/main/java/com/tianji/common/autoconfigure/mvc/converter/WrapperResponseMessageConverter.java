@@ -1,6 +1,15 @@
 package com.tianji.common.autoconfigure.mvc.converter;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.tianji.common.autoconfigure.mvc.advice.WrapperResponseBodyAdvice;
+import com.tianji.common.constants.Constant;
+import com.tianji.common.domain.R;
 import com.tianji.common.utils.WebUtils;
+import org.slf4j.MDC;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
@@ -9,10 +18,18 @@ import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.http.converter.HttpMessageNotWritableException;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.lang.NonNull;
+import org.springframework.util.StreamUtils;
 
 import java.io.IOException;
 import java.util.List;
 
+import static com.tianji.common.constants.ErrorInfo.Code.SUCCESS;
+import static com.tianji.common.constants.ErrorInfo.Msg.OK;
+
+/**
+ * 网关请求的响应转换器，非{@link R}的结果不再包装成R对象，而是直接在输出流中写出R的字段，
+ * data字段由delegate的ObjectMapper在同一个JsonGenerator中序列化，不产生中间对象和缓冲区
+ */
 public class WrapperResponseMessageConverter implements HttpMessageConverter<Object> {
 
     private final MappingJackson2HttpMessageConverter delegate;
@@ -46,6 +63,40 @@ public class WrapperResponseMessageConverter implements HttpMessageConverter<Obj
 
     @Override
     public void write(@NonNull Object o, MediaType contentType,@NonNull HttpOutputMessage outputMessage) throws IOException, HttpMessageNotWritableException {
-        delegate.write(o, contentType, outputMessage);
+        // 1.已经是R，或者不需要包装的请求，直接交给delegate
+        if (o instanceof R || !WrapperResponseBodyAdvice.needWrap(WebUtils.getRequest().getRequestURI())) {
+            delegate.write(o, contentType, outputMessage);
+            return;
+        }
+        // 2.设置响应头
+        if (outputMessage.getHeaders().getContentType() == null) {
+            outputMessage.getHeaders().setContentType(
+                    contentType == null || !contentType.isConcrete() ? MediaType.APPLICATION_JSON : contentType);
+        }
+        // 3.直接写出R的字段，顺序与R的序列化结果一致
+        ObjectMapper objectMapper = delegate.getObjectMapper();
+        String requestId = MDC.get(Constant.REQUEST_ID_HEADER);
+        try (JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(StreamUtils.nonClosing(outputMessage.getBody()), JsonEncoding.UTF8)) {
+            generator.writeStartObject();
+            generator.writeNumberField("code", SUCCESS);
+            generator.writeStringField("msg", OK);
+            generator.writeFieldName("data");
+            objectMapper.writeValue(generator, o);
+            if (requestId != null) {
+                generator.writeStringField("requestId", requestId);
+            } else if (includeNull(objectMapper)) {
+                generator.writeNullField("requestId");
+            }
+            generator.writeEndObject();
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static boolean includeNull(ObjectMapper objectMapper) {
+        JsonInclude.Include inclusion = objectMapper.getSerializationConfig()
+                .getDefaultPropertyInclusion().getValueInclusion();
+        return inclusion == JsonInclude.Include.ALWAYS || inclusion == JsonInclude.Include.USE_DEFAULTS;
     }
 }
@@ -50,4 +50,10 @@ public @interface Lock {
      * 锁策略，包括5种，默认策略是 不断尝试获取锁，直到成功或超时，超时后抛出异常
      */
     LockStrategy lockStrategy() default LockStrategy.FAIL_AFTER_RETRY_TIMEOUT;
+
+    /**
+     * 是否先获取本地锁，同一JVM内的竞争者在本地排队，只有获得本地锁的线程才访问Redis，适合热点key。
+     * 本地锁与分布式锁同名，本地等待的时间计入waitTime
+     */
+    boolean localLock() default false;
 }
@@ -3,6 +3,7 @@ package com.tianji.common.autoconfigure.redisson.aspect;
 import com.tianji.common.autoconfigure.redisson.annotations.Lock;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.utils.StringUtils;
+import com.tianji.common.utils.NamedLocks;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -20,6 +21,7 @@ import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.util.ObjectUtils;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +29,10 @@ import java.util.regex.Pattern;
 public class LockAspect {
 
     private final RedissonClient redissonClient;
+    /**
+     * 本地锁，与分布式锁同名
+     */
+    private final NamedLocks localLocks = new NamedLocks();
 
     public LockAspect(RedissonClient redissonClient) {
         this.redissonClient = redissonClient;
@@ -41,19 +47,45 @@ public class LockAspect {
         }
         // 1.基于SPEL表达式解析锁的 name
         String name = getLockName(properties.name(), pjp);
-        // 2.得到锁对象
+        long waitNanos = properties.timeUnit().toNanos(properties.waitTime());
+        // 2.需要时先获取本地锁，同一JVM内的竞争者在本地排队
+        if (!properties.localLock()) {
+            return handleLock(pjp, properties, name, waitNanos);
+        }
+        ReentrantLock localLock = localLocks.acquire(name);
+        try {
+            long begin = System.nanoTime();
+            if (!properties.lockStrategy().tryLocalLock(localLock, properties)) {
+                // 获取锁失败，结束
+                return null;
+            }
+            try {
+                // 扣除本地等待的时间，总等待时间不超过waitTime
+                long remain = Math.max(waitNanos - (System.nanoTime() - begin), 0);
+                return handleLock(pjp, properties, name, remain);
+            } finally {
+                // 本地锁总是在方法结束时释放，不释放的分布式锁依然按leaseTime阻止后续请求
+                localLock.unlock();
+            }
+        } finally {
+            localLocks.release(name);
+        }
+    }
+
+    private Object handleLock(ProceedingJoinPoint pjp, Lock properties, String name, long waitNanos) throws Throwable {
+        // 1.得到锁对象
         RLock rLock = properties.lockType().getLock(redissonClient, name);
-        // 3.尝试获取锁
-        boolean success = properties.lockStrategy().tryLock(rLock, properties);
+        // 2.尝试获取锁
+        boolean success = properties.lockStrategy().tryLock(rLock, properties, waitNanos);
         if (!success) {
             // 获取锁失败，结束
             return null;
         }
         try {
-            // 4.执行被代理方法
+            // 3.执行被代理方法
             return pjp.proceed();
         } finally {
-            // 5.释放锁
+            // 4.释放锁
             if (properties.autoUnlock()) {
                 rLock.unlock();
             }
@@ -4,14 +4,22 @@ import com.tianji.common.autoconfigure.redisson.annotations.Lock;
 import com.tianji.common.exceptions.BizIllegalException;
 import org.redisson.api.RLock;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 public enum LockStrategy {
     /**
      * 不重试，直接结束，返回false
      */
     SKIP_FAST() {
         @Override
-        public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
-            return lock.tryLock(0, properties.leaseTime(), properties.timeUnit());
+        public boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException {
+            return lock.tryLock(0, leaseNanos(properties), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, Lock properties) {
+            return lock.tryLock();
         }
     },
     /**
@@ -19,21 +27,34 @@ public enum LockStrategy {
      */
     FAIL_FAST() {
         @Override
-        public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
-            boolean success = lock.tryLock(0, properties.leaseTime(), properties.timeUnit());
+        public boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException {
+            boolean success = lock.tryLock(0, leaseNanos(properties), TimeUnit.NANOSECONDS);
             if (!success) {
                 throw new BizIllegalException("请求太频繁");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, Lock properties) {
+            if (!lock.tryLock()) {
+                throw new BizIllegalException("请求太频繁");
+            }
+            return true;
+        }
     },
     /**
      * 重试，直到超时后，直接结束
      */
     SKIP_AFTER_RETRY_TIMEOUT() {
         @Override
-        public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
-            return lock.tryLock(properties.waitTime(), properties.leaseTime(), properties.timeUnit());
+        public boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException {
+            return lock.tryLock(waitNanos, leaseNanos(properties), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, Lock properties) throws InterruptedException {
+            return lock.tryLock(properties.waitTime(), properties.timeUnit());
         }
     },
     /**
@@ -41,25 +62,58 @@ public enum LockStrategy {
      */
     FAIL_AFTER_RETRY_TIMEOUT() {
         @Override
-        public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
-            boolean success = lock.tryLock(properties.waitTime(), properties.leaseTime(), properties.timeUnit());
+        public boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException {
+            boolean success = lock.tryLock(waitNanos, leaseNanos(properties), TimeUnit.NANOSECONDS);
             if (!success) {
                 throw new BizIllegalException("请求超时");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, Lock properties) throws InterruptedException {
+            if (!lock.tryLock(properties.waitTime(), properties.timeUnit())) {
+                throw new BizIllegalException("请求超时");
+            }
+            return true;
+        }
     },
     /**
      * 不停重试，直到成功为止
      */
     KEEP_RETRY() {
         @Override
-        public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
+        public boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException {
             lock.lock(properties.leaseTime(), properties.timeUnit());
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, Lock properties) throws InterruptedException {
+            lock.lockInterruptibly();
+            return true;
+        }
     },
     ;
 
-    public abstract boolean tryLock(RLock lock, Lock properties) throws InterruptedException;
+    public boolean tryLock(RLock lock, Lock properties) throws InterruptedException {
+        return tryLock(lock, properties, properties.timeUnit().toNanos(properties.waitTime()));
+    }
+
+    /**
+     * 获取分布式锁
+     *
+     * @param waitNanos 剩余的等待时间，纳秒，先获取了本地锁时要扣除本地等待的时间
+     */
+    public abstract boolean tryLock(RLock lock, Lock properties, long waitNanos) throws InterruptedException;
+
+    /**
+     * 获取本地锁，失败时的处理方式与获取分布式锁一致
+     */
+    public abstract boolean tryLocalLock(ReentrantLock lock, Lock properties) throws InterruptedException;
+
+    private static long leaseNanos(Lock properties) {
+        // 小于等于0时由看门狗续期，保持原值
+        return properties.leaseTime() > 0 ? properties.timeUnit().toNanos(properties.leaseTime()) : properties.leaseTime();
+    }
 }
@@ -37,11 +37,14 @@ public interface MqConstants {
         String COURSE_UP_KEY = "course.up";
         String COURSE_DOWN_KEY = "course.down";
         String COURSE_EXPIRE_KEY = "course.expire";
+        /*批量课程完结，消息体是课程id集合*/
+        String COURSE_EXPIRE_BATCH_KEY = "course.expire.batch";
         String COURSE_DELETE_KEY = "course.delete";
 
         /*订单有关的RoutingKey*/
         String ORDER_PAY_KEY = "order.pay";
         String ORDER_REFUND_KEY = "order.refund";
+        String ORDER_PLACE_KEY = "order.place";
 
         /*积分相关RoutingKey*/
         /* 写回答 */
@@ -64,6 +67,8 @@ public interface MqConstants {
 
         /*短信系统发送短信*/
         String SMS_MESSAGE = "sms.message";
+        /*短信模板路由变更，通知所有实例清除本地缓存*/
+        String SMS_ROUTE_CHANGED = "sms.route.changed";
 
         /*异常RoutingKey的前缀*/
         String ERROR_KEY_PREFIX = "error.";
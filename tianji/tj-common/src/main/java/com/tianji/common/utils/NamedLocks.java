@@ -0,0 +1,43 @@
+package com.tianji.common.utils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按名称区分的本地锁，同名的调用共用一把{@link ReentrantLock}，不同名称互不影响。
+ * 锁按引用计数保存，最后一个使用者归还后移除，不随名称数量增长
+ */
+public class NamedLocks {
+
+    private final Map<String, Ref> locks = new ConcurrentHashMap<>();
+
+    /**
+     * 获取名称对应的锁并增加引用计数，使用完毕后必须调用{@link #release(String)}
+     */
+    public ReentrantLock acquire(String name) {
+        return locks.compute(name, (k, ref) -> {
+            if (ref == null) {
+                ref = new Ref();
+            }
+            ref.count++;
+            return ref;
+        }).lock;
+    }
+
+    /**
+     * 减少引用计数，为0时移除
+     */
+    public void release(String name) {
+        locks.computeIfPresent(name, (k, ref) -> --ref.count == 0 ? null : ref);
+    }
+
+    int size() {
+        return locks.size();
+    }
+
+    private static class Ref {
+        private final ReentrantLock lock = new ReentrantLock();
+        private int count;
+    }
+}
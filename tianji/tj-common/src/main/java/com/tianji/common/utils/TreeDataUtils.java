@@ -2,10 +2,7 @@ package com.tianji.common.utils;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 /**
  * 树形数据处理工具
@@ -42,7 +39,8 @@ public class TreeDataUtils {
     }
 
     /**
-     * 将树状数据转化成目标类型的列表数据，并建立数据之间的父子关系，采用了递归
+     * 将树状数据转化成目标类型的列表数据，并建立数据之间的父子关系，按先序遍历的顺序输出，
+     * 使用显式的栈代替递归，树的深度不受线程栈大小限制
      *
      * @param parentKey 父数据key
      * @param originData 原始树状数据
@@ -56,16 +54,35 @@ public class TreeDataUtils {
     public static <T, R> void parseTreeToList(Object parentKey, List<R> originData,
                                               ToListDataProcessor<T, R> dataProcessor, Class<T> clazz,
                                               Convert<R, T> convert, List<T> targetData, Filter<R> filter) {
-        if (CollUtils.isNotEmpty(originData)) {
-            for (R data : originData) {
-                T target = BeanUtils.copyBean(data, clazz, convert);
-                dataProcessor.setParent(target, parentKey);
-                targetData.add(target);
-                parseTreeToList(dataProcessor.getKey(data), dataProcessor.getChildren(data), dataProcessor, clazz, convert, targetData, filter);
+        if (CollUtils.isEmpty(originData)) {
+            return;
+        }
+        //1.栈中保存待处理的数据及其父数据key，逆序入栈保证同级数据按原顺序出栈
+        Deque<Object[]> stack = new ArrayDeque<>();
+        pushReversed(stack, parentKey, originData);
+        //2.依次处理栈顶数据
+        while (!stack.isEmpty()) {
+            Object[] entry = stack.pop();
+            @SuppressWarnings("unchecked")
+            R data = (R) entry[1];
+            T target = BeanUtils.copyBean(data, clazz, convert);
+            dataProcessor.setParent(target, entry[0]);
+            targetData.add(target);
+            //3.子数据入栈
+            List<R> children = dataProcessor.getChildren(data);
+            if (CollUtils.isNotEmpty(children)) {
+                pushReversed(stack, dataProcessor.getKey(data), children);
             }
         }
     }
 
+    private static <R> void pushReversed(Deque<Object[]> stack, Object parentKey, List<R> data) {
+        ListIterator<R> iterator = data.listIterator(data.size());
+        while (iterator.hasPrevious()) {
+            stack.push(new Object[]{parentKey, iterator.previous()});
+        }
+    }
+
     /**
      * 根据数据之间的父子关系将原始数据列表转化成树型数据，并将数据转化成目标类型
      * 适用场景 每一条数据都有一个唯一标识和父数据的唯一标识
@@ -124,50 +141,69 @@ public class TreeDataUtils {
      * @return 目标数据类型的树状数据
      */
     public static <T, R> List<T> parseToTree(List<R> originData, Class<T> clazz, Convert<R, T> convert, DataProcessor<T, R> dataProcessor, Filter<R> filter) {
+        return parseToTree(originData, clazz, convert, dataProcessor, filter, null);
+    }
+
+    /**
+     * 根据数据之间的父子关系将原始数据列表转化成树型数据，并将数据转化成目标类型。
+     * 第一遍遍历转换数据并按key建立索引，第二遍遍历把每条数据挂到父数据的子列表中，时间复杂度O(n)；
+     * 同级数据保持原始数据中的顺序，指定了comparator时按comparator排序
+     *
+     * @param originData    原始数据，列表
+     * @param clazz         目标类型class
+     * @param convert       从原始数据转换成目标数据的数据转化器
+     * @param dataProcessor 树形数据包装器
+     * @param filter        原始数据过滤器，被过滤的数据及其子孙数据都不会出现在树中
+     * @param comparator    同级数据的排序规则，为空时保持原始顺序
+     * @param <T>           目标数据的类型
+     * @param <R>           原始数据的类型
+     * @return 目标数据类型的树状数据，没有根节点下的数据时返回null
+     */
+    public static <T, R> List<T> parseToTree(List<R> originData, Class<T> clazz, Convert<R, T> convert,
+                                             DataProcessor<T, R> dataProcessor, Filter<R> filter, Comparator<? super R> comparator) {
         //1.原始数据为空，返回一个空列表
         if (CollUtils.isEmpty(originData)) {
             return new ArrayList<>();
         }
-        //2.初始化一个map用于搭建树形关系
-        Map<Object, T> resultMap = new HashMap<>();
-        //3.遍历数据
-        originData.stream().forEach(r -> {
-            if(!filter.filter(r)){
-                return;
+        //2.排序，稳定排序保证相等的数据保持原始顺序
+        List<R> sortedData = originData;
+        if (comparator != null) {
+            sortedData = new ArrayList<>(originData);
+            sortedData.sort(comparator);
+        }
+        //3.转换数据，并按key建立索引
+        int size = sortedData.size();
+        List<R> origins = new ArrayList<>(size);
+        List<T> targets = new ArrayList<>(size);
+        Map<Object, T> keyMap = new HashMap<>(size * 4 / 3 + 1);
+        for (R r : sortedData) {
+            if (!filter.filter(r)) {
+                continue;
             }
-            //3.1将数据转换为指定类型的数据
             T current = BeanUtils.copyBean(r, clazz, convert);
-            //3.2给当前数据初始化一个空的子数据列表
             dataProcessor.setChild(current, new ArrayList<>());
-            //3.3获取当前数据的唯一key
-            Object key = dataProcessor.getKey(r);
-            //3.4从resultMap中获取当前数据，主要把已经添加的数据的子数据copy出来
-            T currentInMap = resultMap.get(key);
-            if (currentInMap != null) {
-                //3.5发现当前数据在resultMap中已经保存了，将它的子列表设置到新生成的目标数据中
-                List<T> children = dataProcessor.getChild(currentInMap);
-                dataProcessor.setChild(current, children);
+            origins.add(r);
+            targets.add(current);
+            keyMap.put(dataProcessor.getKey(r), current);
+        }
+        //4.将数据挂到父数据的子列表中，父数据不存在的数据被丢弃
+        Object rootKey = dataProcessor.getRootKey();
+        List<T> roots = null;
+        for (int i = 0; i < origins.size(); i++) {
+            Object parentKey = dataProcessor.getParentKey(origins.get(i));
+            if (Objects.equals(parentKey, rootKey)) {
+                if (roots == null) {
+                    roots = new ArrayList<>();
+                }
+                roots.add(targets.get(i));
+                continue;
             }
-
-            //3.6获取当前数据的父数据key,如果父数据不存在初始化一个空
-            Object parentKey = dataProcessor.getParentKey(r);
-            T parent = resultMap.get(parentKey);
-            //3.7初始化父数据
-            if (parent == null) {
-                parent = ReflectUtils.newInstance(clazz);
-                dataProcessor.setChild(parent, new ArrayList<>());
+            T parent = keyMap.get(parentKey);
+            if (parent != null) {
+                dataProcessor.getChild(parent).add(targets.get(i));
             }
-            //3.8将子数据添加到父数据的子列表中
-            List<T> children = dataProcessor.getChild(parent);
-            children.add(current);
-            //3.9将父数据放入resultMap中
-            resultMap.put(parentKey, parent);
-            //3.10将子数据放入resultMap中
-            resultMap.put(dataProcessor.getKey(r), current);
-        });
-        //4.将组装好的数据取出
-        T t = resultMap.get(dataProcessor.getRootKey());
-        return t== null ? null : dataProcessor.getChild(t);
+        }
+        return roots;
     }
 
     /**
@@ -0,0 +1,270 @@
+package com.tianji.common.autoconfigure.redisson.aspect;
+
+import com.tianji.common.autoconfigure.redisson.annotations.Lock;
+import com.tianji.common.autoconfigure.redisson.enums.LockStrategy;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class LockAspectTest {
+
+    private static final int THREADS = 200;
+    private static final int KEYS = 10;
+    private static final int ROUNDS = 10;
+    /**
+     * 模拟的Redis往返耗时和业务耗时，纳秒
+     */
+    private static final long RTT = 200_000;
+    private static final long WORK = 500_000;
+
+    @Test
+    void testLocalLockCoalescing() throws Throwable {
+        long remoteCommands = race("remoteOnly");
+        long localCommands = race("withLocalLock");
+
+        // 本地排队后，每次调用只有加锁、解锁2条命令
+        assertEquals(THREADS * ROUNDS * 2L, localCommands);
+        assertTrue(localCommands < remoteCommands);
+    }
+
+    @Test
+    void testDifferentKeysDoNotBlockEachOther() throws Throwable {
+        LockAspect aspect = new LockAspect(simulatedClient(new AtomicLong(), new ConcurrentHashMap<>()));
+        Method method = getClass().getMethod("skipFast", String.class);
+        Lock properties = method.getAnnotation(Lock.class);
+        // 1.一个线程持有key0不释放
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        ProceedingJoinPoint held = joinPoint(method, "key0", invocation -> {
+            holding.countDown();
+            release.await();
+            return null;
+        });
+        Future<?> holder = pool.submit(() -> invoke(aspect, held, properties));
+        holding.await();
+        // 2.其它key都能立即执行，不受key0影响
+        AtomicInteger executed = new AtomicInteger();
+        for (int i = 1; i <= 1000; i++) {
+            aspect.handleLock(joinPoint(method, "key" + i, invocation -> executed.incrementAndGet()), properties);
+        }
+        assertEquals(1000, executed.get());
+        // 3.同名的调用按策略直接跳过
+        aspect.handleLock(joinPoint(method, "key0", invocation -> executed.incrementAndGet()), properties);
+        assertEquals(1000, executed.get());
+        release.countDown();
+        holder.get();
+        pool.shutdown();
+    }
+
+    @Test
+    void testLocalWaitCountsTowardsWaitTime() throws Throwable {
+        Map<String, SimulatedLock> locks = new ConcurrentHashMap<>();
+        LockAspect aspect = new LockAspect(simulatedClient(new AtomicLong(), locks));
+        Method method = getClass().getMethod("waitBriefly", String.class);
+        Lock properties = method.getAnnotation(Lock.class);
+        // 1.第一个调用持有锁200ms
+        CountDownLatch holding = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        ProceedingJoinPoint held = joinPoint(method, "key", invocation -> {
+            holding.countDown();
+            Thread.sleep(200);
+            return null;
+        });
+        Future<?> holder = pool.submit(() -> invoke(aspect, held, properties));
+        holding.await();
+        // 2.第二个调用在本地等待约200ms，获取分布式锁时只剩余约300ms
+        aspect.handleLock(joinPoint(method, "key", invocation -> null), properties);
+        holder.get();
+        pool.shutdown();
+        long remain = locks.get("lock:test:key").lastWaitNanos;
+        assertTrue(remain <= TimeUnit.MILLISECONDS.toNanos(320), "剩余等待时间：" + remain);
+    }
+
+    @Lock(name = "lock:test:#{p0}", lockStrategy = LockStrategy.SKIP_FAST, localLock = true)
+    public void skipFast(String key) {
+    }
+
+    @Lock(name = "lock:test:#{p0}", waitTime = 500, timeUnit = TimeUnit.MILLISECONDS, localLock = true)
+    public void waitBriefly(String key) {
+    }
+
+    @Lock(name = "lock:test:#{p0}", waitTime = 30)
+    public void remoteOnly(String key) {
+    }
+
+    @Lock(name = "lock:test:#{p0}", waitTime = 30, localLock = true)
+    public void withLocalLock(String key) {
+    }
+
+    private long race(String methodName) throws Throwable {
+        // 1.模拟的Redisson客户端，统计命令次数
+        AtomicLong commands = new AtomicLong();
+        LockAspect aspect = new LockAspect(simulatedClient(commands, new ConcurrentHashMap<>()));
+
+        // 2.每个key一个切入点，业务执行时校验互斥
+        Method method = getClass().getMethod(methodName, String.class);
+        Lock properties = method.getAnnotation(Lock.class);
+        AtomicInteger violations = new AtomicInteger();
+        ProceedingJoinPoint[] points = new ProceedingJoinPoint[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            points[i] = joinPoint(method, "key" + i, violations);
+        }
+
+        // 3.所有线程同时开始竞争
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future[THREADS];
+        for (int t = 0; t < THREADS; t++) {
+            int index = t;
+            futures[t] = pool.submit(() -> {
+                start.await();
+                for (int r = 0; r < ROUNDS; r++) {
+                    invoke(aspect, points[index % KEYS], properties);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+
+        assertEquals(0, violations.get());
+        return commands.get();
+    }
+
+    private static Object invoke(LockAspect aspect, ProceedingJoinPoint pjp, Lock properties) {
+        try {
+            return aspect.handleLock(pjp, properties);
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private RedissonClient simulatedClient(AtomicLong commands, Map<String, SimulatedLock> locks) {
+        RedissonClient redissonClient = mock(RedissonClient.class, withSettings().stubOnly());
+        when(redissonClient.getLock(anyString())).thenAnswer(invocation -> {
+            SimulatedLock lock = locks.computeIfAbsent(invocation.getArgument(0), k -> new SimulatedLock(commands));
+            return lock.rLock;
+        });
+        return redissonClient;
+    }
+
+    private ProceedingJoinPoint joinPoint(Method method, String key, AtomicInteger violations) throws Throwable {
+        AtomicInteger running = new AtomicInteger();
+        return joinPoint(method, key, invocation -> {
+            if (running.incrementAndGet() > 1) {
+                violations.incrementAndGet();
+            }
+            LockSupport.parkNanos(WORK);
+            running.decrementAndGet();
+            return null;
+        });
+    }
+
+    private ProceedingJoinPoint joinPoint(Method method, String key, Answer<Object> body) throws Throwable {
+        MethodSignature signature = mock(MethodSignature.class, withSettings().stubOnly());
+        when(signature.getName()).thenReturn(method.getName());
+        when(signature.getMethod()).thenReturn(method);
+        ProceedingJoinPoint pjp = mock(ProceedingJoinPoint.class, withSettings().stubOnly());
+        when(pjp.getSignature()).thenReturn(signature);
+        when(pjp.getTarget()).thenReturn(this);
+        when(pjp.getArgs()).thenReturn(new Object[]{key});
+        when(pjp.proceed()).thenAnswer(body);
+        return pjp;
+    }
+
+    /**
+     * 模拟Redisson的可重入锁：每次加锁尝试、订阅、解锁各是一条命令，
+     * 解锁时通过发布消息唤醒所有等待者，等待者被唤醒后重新尝试加锁
+     */
+    private static class SimulatedLock {
+        private final AtomicLong commands;
+        private final RLock rLock = mock(RLock.class, withSettings().stubOnly());
+        private Thread owner;
+        private int count;
+        private volatile long lastWaitNanos;
+
+        SimulatedLock(AtomicLong commands) {
+            this.commands = commands;
+            try {
+                when(rLock.tryLock(anyLong(), anyLong(), any())).thenAnswer(invocation ->
+                        tryLock(invocation.<TimeUnit>getArgument(2).toNanos(invocation.getArgument(0))));
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            doAnswer(invocation -> {
+                unlock();
+                return null;
+            }).when(rLock).unlock();
+        }
+
+        private boolean tryLock(long waitNanos) throws InterruptedException {
+            lastWaitNanos = waitNanos;
+            long deadline = System.nanoTime() + waitNanos;
+            if (attempt()) {
+                return true;
+            }
+            // 订阅解锁消息
+            command();
+            while (true) {
+                synchronized (this) {
+                    long remain = deadline - System.nanoTime();
+                    if (remain <= 0) {
+                        return false;
+                    }
+                    if (owner != null) {
+                        TimeUnit.NANOSECONDS.timedWait(this, remain);
+                    }
+                }
+                if (attempt()) {
+                    return true;
+                }
+            }
+        }
+
+        private boolean attempt() {
+            command();
+            synchronized (this) {
+                Thread current = Thread.currentThread();
+                if (owner == null || owner == current) {
+                    owner = current;
+                    count++;
+                    return true;
+                }
+                return false;
+            }
+        }
+
+        private void unlock() {
+            command();
+            synchronized (this) {
+                if (--count == 0) {
+                    owner = null;
+                    notifyAll();
+                }
+            }
+        }
+
+        private void command() {
+            commands.incrementAndGet();
+            LockSupport.parkNanos(RTT);
+        }
+    }
+}
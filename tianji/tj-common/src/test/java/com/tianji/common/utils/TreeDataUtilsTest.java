@@ -0,0 +1,225 @@
+package com.tianji.common.utils;
+
+import lombok.Data;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TreeDataUtilsTest {
+
+    @Test
+    void testParseToTreeSameAsLegacy() {
+        Random random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            List<Node> nodes = randomNodes(random, 2000);
+            // 打乱顺序，子节点可能出现在父节点之前
+            Collections.shuffle(nodes, random);
+            TreeDataUtils.Filter<Node> filter = new TreeDataUtils.Filter<Node>() {
+                @Override
+                public boolean filter(Node node) {
+                    return node.getId() % 17 != 0;
+                }
+            };
+            List<NodeVO> expected = legacyParseToTree(nodes, filter);
+            List<NodeVO> actual = TreeDataUtils.parseToTree(nodes, NodeVO.class, null, new NodeProcessor(), filter);
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void testParseToTreeWithComparator() {
+        List<Node> nodes = Arrays.asList(node(1, 0, 3), node(2, 0, 1), node(3, 1, 2), node(4, 1, 1));
+        List<NodeVO> tree = TreeDataUtils.parseToTree(nodes, NodeVO.class, null, new NodeProcessor(),
+                new TreeDataUtils.DefaultFilter(), Comparator.comparing(Node::getPriority));
+        assertEquals(Arrays.asList(2L, 1L), ids(tree));
+        assertEquals(Arrays.asList(4L, 3L), ids(tree.get(1).getChildren()));
+    }
+
+    @Test
+    void testParseToTreeWithoutRoot() {
+        assertTrue(TreeDataUtils.parseToTree(new ArrayList<Node>(), NodeVO.class, new NodeProcessor()).isEmpty());
+        assertNull(TreeDataUtils.parseToTree(Collections.singletonList(node(2, 1, 0)), NodeVO.class, new NodeProcessor()));
+    }
+
+    @Test
+    void testParseTreeToListPreOrder() {
+        List<Node> nodes = randomNodes(new Random(11), 3000);
+        List<NodeVO> tree = TreeDataUtils.parseToTree(nodes, NodeVO.class, new NodeProcessor());
+        List<Node> treeNodes = toNodeTree(tree);
+
+        List<FlatNode> expected = new ArrayList<>();
+        legacyParseTreeToList(0L, treeNodes, expected);
+        List<FlatNode> actual = new ArrayList<>();
+        TreeDataUtils.parseTreeToList(0L, treeNodes, new FlatProcessor(), FlatNode.class, null, actual, null);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    void testParseTreeToListDeepTree() {
+        // 深度超过递归可以承受的层级
+        Node root = node(1, 0, 0);
+        Node current = root;
+        for (long id = 2; id <= 100000; id++) {
+            Node child = node(id, current.getId(), 0);
+            current.setChildren(new ArrayList<>(Collections.singletonList(child)));
+            current = child;
+        }
+        List<FlatNode> result = new ArrayList<>();
+        TreeDataUtils.parseTreeToList(0L, Collections.singletonList(root), new FlatProcessor(), FlatNode.class, null, result, null);
+        assertEquals(100000, result.size());
+        assertEquals(99999L, result.get(result.size() - 1).getParentId());
+    }
+
+    private static List<Node> randomNodes(Random random, int size) {
+        List<Node> nodes = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            // 约10%的节点挂在根节点下，少量节点的父节点不存在
+            long parentId = id == 1 || random.nextInt(10) == 0 ? 0 : random.nextInt(size + 20) + 1;
+            if (parentId == id) {
+                parentId = 0;
+            }
+            nodes.add(node(id, parentId, random.nextInt(5)));
+        }
+        return nodes;
+    }
+
+    private static Node node(long id, long parentId, int priority) {
+        Node node = new Node();
+        node.setId(id);
+        node.setParentId(parentId);
+        node.setPriority(priority);
+        return node;
+    }
+
+    private static List<Long> ids(List<NodeVO> vos) {
+        List<Long> ids = new ArrayList<>();
+        vos.forEach(vo -> ids.add(vo.getId()));
+        return ids;
+    }
+
+    private static List<Node> toNodeTree(List<NodeVO> vos) {
+        List<Node> nodes = new ArrayList<>();
+        if (vos == null) {
+            return nodes;
+        }
+        for (NodeVO vo : vos) {
+            Node node = node(vo.getId(), vo.getParentId(), vo.getPriority());
+            node.setChildren(toNodeTree(vo.getChildren()));
+            nodes.add(node);
+        }
+        return nodes;
+    }
+
+    /**
+     * 原有的parseToTree实现，作为对照
+     */
+    private static List<NodeVO> legacyParseToTree(List<Node> originData, TreeDataUtils.Filter<Node> filter) {
+        NodeProcessor dataProcessor = new NodeProcessor();
+        Map<Object, NodeVO> resultMap = new HashMap<>();
+        for (Node r : originData) {
+            if (!filter.filter(r)) {
+                continue;
+            }
+            NodeVO current = BeanUtils.copyBean(r, NodeVO.class);
+            dataProcessor.setChild(current, new ArrayList<>());
+            Object key = dataProcessor.getKey(r);
+            NodeVO currentInMap = resultMap.get(key);
+            if (currentInMap != null) {
+                dataProcessor.setChild(current, dataProcessor.getChild(currentInMap));
+            }
+            Object parentKey = dataProcessor.getParentKey(r);
+            NodeVO parent = resultMap.get(parentKey);
+            if (parent == null) {
+                parent = new NodeVO();
+                dataProcessor.setChild(parent, new ArrayList<>());
+            }
+            dataProcessor.getChild(parent).add(current);
+            resultMap.put(parentKey, parent);
+            resultMap.put(key, current);
+        }
+        NodeVO t = resultMap.get(dataProcessor.getRootKey());
+        return t == null ? null : dataProcessor.getChild(t);
+    }
+
+    /**
+     * 原有的递归parseTreeToList实现，作为对照
+     */
+    private static void legacyParseTreeToList(Object parentKey, List<Node> originData, List<FlatNode> targetData) {
+        FlatProcessor dataProcessor = new FlatProcessor();
+        for (Node data : originData) {
+            FlatNode target = BeanUtils.copyBean(data, FlatNode.class);
+            dataProcessor.setParent(target, parentKey);
+            targetData.add(target);
+            legacyParseTreeToList(dataProcessor.getKey(data), dataProcessor.getChildren(data), targetData);
+        }
+    }
+
+    @Data
+    public static class Node {
+        private Long id;
+        private Long parentId;
+        private Integer priority;
+        private List<Node> children;
+    }
+
+    @Data
+    public static class NodeVO {
+        private Long id;
+        private Long parentId;
+        private Integer priority;
+        private List<NodeVO> children;
+    }
+
+    @Data
+    public static class FlatNode {
+        private Long id;
+        private Long parentId;
+        private Integer priority;
+    }
+
+    private static class NodeProcessor implements TreeDataUtils.DataProcessor<NodeVO, Node> {
+        @Override
+        public Object getParentKey(Node node) {
+            return node.getParentId();
+        }
+
+        @Override
+        public Object getKey(Node node) {
+            return node.getId();
+        }
+
+        @Override
+        public Object getRootKey() {
+            return 0L;
+        }
+
+        @Override
+        public List<NodeVO> getChild(NodeVO nodeVO) {
+            return nodeVO.getChildren();
+        }
+
+        @Override
+        public void setChild(NodeVO parent, List<NodeVO> child) {
+            parent.setChildren(child);
+        }
+    }
+
+    private static class FlatProcessor implements TreeDataUtils.ToListDataProcessor<FlatNode, Node> {
+        @Override
+        public Object getKey(Node node) {
+            return node.getId();
+        }
+
+        @Override
+        public void setParent(FlatNode flatNode, Object parentKey) {
+            flatNode.setParentId((Long) parentKey);
+        }
+
+        @Override
+        public List<Node> getChildren(Node node) {
+            return node.getChildren();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tianji.course.cache;
+
+import com.tianji.course.domain.po.Category;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * 课程分类树快照，构建完成后不再修改，分类变更时按版本号整体替换
+ */
+@Getter
+public class CategoryTree {
+
+    /**
+     * 快照版本号，与redis中的分类版本号对应
+     */
+    private final long version;
+
+    /**
+     * 全部分类，按priority正序、updateTime倒序排列
+     */
+    private final List<Category> sortedByUpdateTime;
+
+    /**
+     * 全部分类，按priority正序、id倒序排列
+     */
+    private final List<Category> sortedById;
+
+    /**
+     * 分类id和分类的映射
+     */
+    private final Map<Long, Category> idMap;
+
+    /**
+     * 父分类id和直接子分类列表的映射
+     */
+    private final Map<Long, List<Category>> childrenMap;
+
+    /**
+     * 分类级别和该级别分类列表的映射
+     */
+    private final Map<Integer, List<Category>> levelMap;
+
+    /**
+     * 一级二级分类拥有的三级分类数量
+     */
+    private final Map<Long, Long> thirdCategoryNumMap;
+
+    /**
+     * 每个分类拥有的课程数量
+     */
+    private final Map<Long, Integer> courseNumMap;
+
+    public CategoryTree(long version, List<Category> categories, Map<Long, Integer> courseNumMap) {
+        this.version = version;
+        // 1.两种排序的分类列表
+        Comparator<Category> byPriority = Comparator.comparing(Category::getPriority,
+                Comparator.nullsFirst(Comparator.naturalOrder()));
+        this.sortedByUpdateTime = Collections.unmodifiableList(categories.stream()
+                .sorted(byPriority.thenComparing(Category::getUpdateTime,
+                        Comparator.nullsFirst(Comparator.<LocalDateTime>naturalOrder()).reversed()))
+                .collect(Collectors.toList()));
+        this.sortedById = Collections.unmodifiableList(categories.stream()
+                .sorted(byPriority.thenComparing(Category::getId, Comparator.reverseOrder()))
+                .collect(Collectors.toList()));
+        // 2.id索引、父子关系索引、级别索引
+        Map<Long, Category> ids = new HashMap<>(categories.size() * 4 / 3 + 1);
+        Map<Long, List<Category>> children = new HashMap<>();
+        Map<Integer, List<Category>> levels = new HashMap<>();
+        for (Category category : this.sortedById) {
+            ids.put(category.getId(), category);
+            children.computeIfAbsent(category.getParentId(), k -> new ArrayList<>()).add(category);
+            levels.computeIfAbsent(category.getLevel(), k -> new ArrayList<>()).add(category);
+        }
+        this.idMap = Collections.unmodifiableMap(ids);
+        this.childrenMap = unmodifiable(children);
+        this.levelMap = unmodifiable(levels);
+        // 3.三级分类数量
+        this.thirdCategoryNumMap = Collections.unmodifiableMap(countThirdCategory());
+        // 4.课程数量
+        this.courseNumMap = Collections.unmodifiableMap(new HashMap<>(courseNumMap));
+    }
+
+    public Category get(Long id) {
+        return idMap.get(id);
+    }
+
+    public List<Category> getChildren(Long parentId) {
+        return childrenMap.getOrDefault(parentId, Collections.emptyList());
+    }
+
+    public List<Category> getByLevel(Integer level) {
+        return levelMap.getOrDefault(level, Collections.emptyList());
+    }
+
+    public boolean isEmpty() {
+        return idMap.isEmpty();
+    }
+
+    private Map<Long, Long> countThirdCategory() {
+        Map<Long, Long> result = new HashMap<>();
+        // 1.二级分类拥有的三级分类数量
+        for (Category second : getByLevel(2)) {
+            result.put(second.getId(), (long) getChildren(second.getId()).size());
+        }
+        // 2.一级分类拥有的三级分类数量，等于其二级分类的三级分类数量之和
+        for (Category first : getByLevel(1)) {
+            long sum = 0;
+            for (Category second : getChildren(first.getId())) {
+                sum += result.getOrDefault(second.getId(), 0L);
+            }
+            result.put(first.getId(), sum);
+        }
+        return result;
+    }
+
+    private static <K> Map<K, List<Category>> unmodifiable(Map<K, List<Category>> map) {
+        Map<K, List<Category>> result = new HashMap<>(map.size() * 4 / 3 + 1);
+        map.forEach((k, v) -> result.put(k, Collections.unmodifiableList(v)));
+        return Collections.unmodifiableMap(result);
+    }
+}
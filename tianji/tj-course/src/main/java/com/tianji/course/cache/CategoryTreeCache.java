@@ -0,0 +1,132 @@
+package com.tianji.course.cache;
+
+import com.tianji.common.utils.NumberUtils;
+import com.tianji.course.constants.RedisConstants;
+import com.tianji.course.domain.po.Category;
+import com.tianji.course.mapper.CategoryMapper;
+import com.tianji.course.service.ICourseService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 课程分类树的本地快照缓存
+ * <p>
+ * 1.分类写操作提交后，版本号+1，在taskExecutor中异步重建快照，并通过redis频道通知其它实例
+ * 2.其它实例收到更高的版本号后异步重建自己的快照
+ * 3.课程数量随课程上下架变化，定时按当前版本重建一次
+ */
+@Slf4j
+@Component
+public class CategoryTreeCache implements MessageListener {
+
+    private final AtomicReference<CategoryTree> current = new AtomicReference<>();
+
+    @Autowired
+    private CategoryMapper categoryMapper;
+
+    @Autowired
+    private ICourseService courseService;
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Resource(name = "taskExecutor")
+    private Executor taskExecutor;
+
+    /**
+     * 获取当前快照，快照尚未构建时同步构建一次
+     */
+    public CategoryTree get() {
+        CategoryTree tree = current.get();
+        if (tree == null) {
+            tree = rebuild(currentVersion());
+        }
+        return tree;
+    }
+
+    /**
+     * 分类发生变更，在事务提交后发布新版本
+     */
+    public void publishChange() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    taskExecutor.execute(CategoryTreeCache.this::doPublishChange);
+                }
+            });
+            return;
+        }
+        taskExecutor.execute(this::doPublishChange);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        long version = NumberUtils.parseLong(new String(message.getBody(), StandardCharsets.UTF_8));
+        CategoryTree tree = current.get();
+        if (tree != null && tree.getVersion() >= version) {
+            // 本实例发布的或已经处理过的版本
+            return;
+        }
+        taskExecutor.execute(() -> rebuild(version));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void init() {
+        taskExecutor.execute(() -> rebuild(currentVersion()));
+    }
+
+    @Scheduled(fixedDelay = 60000, initialDelay = 60000)
+    public void refreshCourseNum() {
+        rebuild(currentVersion());
+    }
+
+    private void doPublishChange() {
+        // 1.版本号+1
+        Long version = redisTemplate.opsForValue().increment(RedisConstants.REDIS_KEY_CATEGORY_VERSION);
+        long v = NumberUtils.null2Zero(version);
+        // 2.重建本地快照
+        rebuild(v);
+        // 3.通知其它实例
+        redisTemplate.convertAndSend(RedisConstants.CATEGORY_CHANGED_CHANNEL, String.valueOf(v));
+    }
+
+    private CategoryTree rebuild(long version) {
+        try {
+            // 1.查询全部分类和分类的课程数量
+            List<Category> categories = categoryMapper.selectList(null);
+            CategoryTree tree = new CategoryTree(version, categories, courseService.countCourseNumOfCategory());
+            // 2.只替换不比当前新的快照
+            CategoryTree old = current.getAndUpdate(o -> o == null || o.getVersion() <= version ? tree : o);
+            log.debug("课程分类快照重建完成，version:{}, 分类数量:{}", version, categories.size());
+            return old == null || old.getVersion() <= version ? tree : old;
+        } catch (Exception e) {
+            log.error("课程分类快照重建失败，version:{}", version, e);
+            CategoryTree old = current.get();
+            if (old == null) {
+                throw e;
+            }
+            return old;
+        }
+    }
+
+    private long currentVersion() {
+        String version = redisTemplate.opsForValue().get(RedisConstants.REDIS_KEY_CATEGORY_VERSION);
+        return version == null ? 0L : NumberUtils.parseLong(version);
+    }
+}
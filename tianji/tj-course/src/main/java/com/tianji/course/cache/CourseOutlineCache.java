@@ -0,0 +1,110 @@
+package com.tianji.course.cache;
+
+import com.tianji.api.dto.course.CatalogueDTO;
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.common.utils.NumberUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.course.constants.RedisConstants;
+import com.tianji.course.domain.vo.ChapterVO;
+import com.tianji.course.service.ICourseCatalogueService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.Resource;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 课程大纲缓存，已上架课程的章节目录（含练习）序列化后按课程发布次数作为版本缓存到redis，
+ * 重新上架后版本变化，旧版本随有效期自然过期
+ */
+@Slf4j
+@Component
+public class CourseOutlineCache {
+
+    private static final Duration OUTLINE_TTL = Duration.ofDays(7);
+
+    @Autowired
+    private StringRedisTemplate redisTemplate;
+
+    @Autowired
+    private ICourseCatalogueService courseCatalogueService;
+
+    @Resource(name = "taskExecutor")
+    private Executor taskExecutor;
+
+    /**
+     * 查询课程大纲
+     *
+     * @param courseId 课程id
+     * @param version 课程发布次数
+     * @return 章节目录，课程没有目录时返回null
+     */
+    public List<CatalogueDTO> getOutline(Long courseId, Integer version) {
+        String json = getOutlineJson(courseId, version);
+        return json == null ? null : JsonUtils.toList(json, CatalogueDTO.class);
+    }
+
+    /**
+     * 查询课程大纲，直接从缓存的json转换为学习页面的章节结构
+     *
+     * @param courseId 课程id
+     * @param version 课程发布次数
+     * @return 章节目录，课程没有目录时返回null
+     */
+    public List<ChapterVO> getChapters(Long courseId, Integer version) {
+        String json = getOutlineJson(courseId, version);
+        return json == null ? null : JsonUtils.toList(json, ChapterVO.class);
+    }
+
+    /**
+     * 课程上架事务提交后，异步预先构建新版本的课程大纲
+     */
+    public void rebuildAfterCommit(Long courseId, Integer version) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            taskExecutor.execute(() -> rebuild(courseId, version));
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                taskExecutor.execute(() -> rebuild(courseId, version));
+            }
+        });
+    }
+
+    private String getOutlineJson(Long courseId, Integer version) {
+        // 1.查询缓存
+        String key = key(courseId, version);
+        String json = redisTemplate.opsForValue().get(key);
+        if (json != null) {
+            return json;
+        }
+        // 2.未命中，查询数据库并缓存
+        return rebuild(courseId, version);
+    }
+
+    private String rebuild(Long courseId, Integer version) {
+        try {
+            List<CatalogueDTO> outline = courseCatalogueService.queryCourseCatalogues(courseId, true);
+            if (outline == null) {
+                return null;
+            }
+            String json = JsonUtils.toJsonStr(outline);
+            redisTemplate.opsForValue().set(key(courseId, version), json, OUTLINE_TTL);
+            return json;
+        } catch (Exception e) {
+            log.error("构建课程大纲缓存失败，courseId：{}，version：{}", courseId, version, e);
+            throw e;
+        }
+    }
+
+    private static String key(Long courseId, Integer version) {
+        return StringUtils.format(RedisConstants.COURSE_OUTLINE_KEY_FORMAT, courseId, NumberUtils.null2Zero(version));
+    }
+}
@@ -0,0 +1,25 @@
+package com.tianji.course.config;
+
+import com.tianji.course.cache.CategoryTreeCache;
+import com.tianji.course.constants.RedisConstants;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class CategoryCacheConfig {
+
+    /**
+     * 订阅课程分类变更频道，收到新版本后重建本地分类快照
+     */
+    @Bean
+    public RedisMessageListenerContainer categoryChangedListenerContainer(
+            RedisConnectionFactory connectionFactory, CategoryTreeCache categoryTreeCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(categoryTreeCache, new ChannelTopic(RedisConstants.CATEGORY_CHANGED_CHANNEL));
+        return container;
+    }
+}
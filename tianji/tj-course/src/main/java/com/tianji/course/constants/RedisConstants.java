@@ -10,6 +10,15 @@ public class RedisConstants {
     //一级二级分类拥有的三级分类的数量
     public static final String REDIS_KEY_CATEGORY_THIRD_NUMBER = "CATEGORY:THIRD_NUMBER";
 
+    //课程分类树快照版本号
+    public static final String REDIS_KEY_CATEGORY_VERSION = "CATEGORY:VERSION";
+
+    //课程分类变更通知频道
+    public static final String CATEGORY_CHANGED_CHANNEL = "CATEGORY:CHANGED";
+
+    //课程大纲缓存，参数为课程id和课程发布次数
+    public static final String COURSE_OUTLINE_KEY_FORMAT = "COURSE:OUTLINE:{}:{}";
+
     public static class Formatter {
         public static final String STATISTICS_EXAMINFO = "COURSE:SUBJECT:ANSWER_PROCESS_#{examDetailInfoDTO.recordId}";
         public static final String STATISTICS_COURSE_NUM_CATE = "COURSE:COURSE_NUM_CATEGORY";
@@ -1,6 +1,7 @@
 package com.tianji.course.handler;
 
 import com.tianji.course.service.ICourseService;
+import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,6 +22,9 @@ public class CourseJobHandler {
 
     @XxlJob("courseFinished")
     public void courseFinished(){
-        courseService.courseFinished();
+        int index = XxlJobHelper.getShardIndex();
+        int total = XxlJobHelper.getShardTotal();
+        int count = courseService.courseFinished(index, total);
+        log.info("课程完结任务执行完成，分片：{}/{}，完结课程数量：{}", index, total, count);
     }
 }
@@ -29,6 +29,15 @@ public interface CourseCataSubjectDraftMapper extends BaseMapper<CourseCataSubje
     @Delete("delete from course_cata_subject_draft where course_id=#{courseId}")
     int deleteByCourseId(@Param("courseId") Long courseId);
 
+    /**
+     * 根据课程id批量删除课程对应的题目
+     * @param courseIds 课程id集合
+     * @return 删除条数
+     */
+    @Delete("<script>delete from course_cata_subject_draft where course_id in " +
+            "(<foreach collection='courseIds' item='courseId' separator=','>#{courseId}</foreach>)</script>")
+    int deleteByCourseIds(@Param("courseIds") List<Long> courseIds);
+
     @Select("select course_id,cata_id,subject_id from course_cata_subject_draft where course_id=#{courseId}")
     @ResultMap("BaseResultMap")
     List<CourseCataSubjectDraft> getByCourseId(@Param("courseId") Long courseId);
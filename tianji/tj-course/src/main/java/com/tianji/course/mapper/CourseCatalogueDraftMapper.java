@@ -29,6 +29,11 @@ public interface CourseCatalogueDraftMapper extends BaseMapper<CourseCatalogueDr
             " and type in (<foreach collection='types' item='type' separator=','>#{type}</foreach>)</script>")
     int deleteByCourseId(@Param("courseId") Long couseId, @Param("types")List<Integer> types);
 
+    @Delete("<script>delete from course_catalogue_draft where course_id in " +
+            "(<foreach collection='courseIds' item='courseId' separator=','>#{courseId}</foreach>)" +
+            " and type in (<foreach collection='types' item='type' separator=','>#{type}</foreach>)</script>")
+    int deleteByCourseIds(@Param("courseIds") List<Long> courseIds, @Param("types")List<Integer> types);
+
 
     @Insert("insert into course_catalogue_draft(" + COLUMNS + ",can_update) " +
             "(select " + COLUMNS + ",0 from course_catalogue where course_id=#{courseId})" )
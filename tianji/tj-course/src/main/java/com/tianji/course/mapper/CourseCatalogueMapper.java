@@ -2,6 +2,8 @@ package com.tianji.course.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.tianji.course.domain.po.CourseCatalogue;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,4 +15,36 @@ import com.tianji.course.domain.po.CourseCatalogue;
  */
 public interface CourseCatalogueMapper extends BaseMapper<CourseCatalogue> {
 
+    /**
+     * 上架时从草稿复制的字段
+     */
+    String SHELF_COLUMNS = "id, name, trailer, course_id, type, parent_catalogue_id, media_id, video_name, c_index, media_duration, dep_id";
+
+    /**
+     * 草稿行和架上行逐列做null安全比较，全部相同说明该行没有变化
+     */
+    String SAME_AS_DRAFT = "c.name <=> d.name and c.trailer <=> d.trailer and c.course_id <=> d.course_id " +
+            "and c.type <=> d.type and c.parent_catalogue_id <=> d.parent_catalogue_id and c.media_id <=> d.media_id " +
+            "and c.video_name <=> d.video_name and c.c_index <=> d.c_index and c.media_duration <=> d.media_duration " +
+            "and c.dep_id <=> d.dep_id";
+
+    /**
+     * 把课程的目录草稿一次性上架，只写入新增或发生变化的目录
+     *
+     * @param courseId 课程id
+     * @param userId 操作人
+     * @return 影响行数
+     */
+    @Insert("insert into course_catalogue (" + SHELF_COLUMNS + ", creater, updater) " +
+            "select d.id, d.name, d.trailer, d.course_id, d.type, d.parent_catalogue_id, d.media_id, d.video_name, " +
+            "d.c_index, d.media_duration, d.dep_id, #{userId}, #{userId} from course_catalogue_draft d " +
+            "where d.course_id = #{courseId} and not exists (select 1 from course_catalogue c " +
+            "where c.id = d.id and " + SAME_AS_DRAFT + ") " +
+            "on duplicate key update course_catalogue.name = values(name), course_catalogue.trailer = values(trailer), " +
+            "course_catalogue.course_id = values(course_id), course_catalogue.type = values(type), " +
+            "course_catalogue.parent_catalogue_id = values(parent_catalogue_id), course_catalogue.media_id = values(media_id), " +
+            "course_catalogue.video_name = values(video_name), course_catalogue.c_index = values(c_index), " +
+            "course_catalogue.media_duration = values(media_duration), course_catalogue.dep_id = values(dep_id), " +
+            "course_catalogue.updater = values(updater), course_catalogue.update_time = now()")
+    int upsertFromDraft(@Param("courseId") Long courseId, @Param("userId") Long userId);
 }
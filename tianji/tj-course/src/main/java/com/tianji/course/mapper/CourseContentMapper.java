@@ -2,6 +2,8 @@ package com.tianji.course.mapper;
 
 import com.tianji.course.domain.po.CourseContent;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
 
 /**
  * <p>
@@ -13,6 +15,21 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface CourseContentMapper extends BaseMapper<CourseContent> {
 
-
-
+    /**
+     * 把课程内容草稿上架，首次上架插入，再次上架只在内容有变化时更新
+     *
+     * @param id 课程id
+     * @param userId 操作人
+     * @return 影响行数
+     */
+    @Insert("insert into course_content (id, course_introduce, use_people, course_detail, dep_id, creater, updater) " +
+            "select d.id, d.course_introduce, d.use_people, d.course_detail, d.dep_id, #{userId}, #{userId} " +
+            "from course_content_draft d where d.id = #{id} and not exists (select 1 from course_content c " +
+            "where c.id = d.id and c.course_introduce <=> d.course_introduce and c.use_people <=> d.use_people " +
+            "and c.course_detail <=> d.course_detail and c.dep_id <=> d.dep_id) " +
+            "on duplicate key update course_content.course_introduce = values(course_introduce), " +
+            "course_content.use_people = values(use_people), course_content.course_detail = values(course_detail), " +
+            "course_content.dep_id = values(dep_id), course_content.updater = values(updater), " +
+            "course_content.update_time = now()")
+    int upsertFromDraft(@Param("id") Long id, @Param("userId") Long userId);
 }
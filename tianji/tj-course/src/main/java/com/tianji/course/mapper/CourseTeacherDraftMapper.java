@@ -6,6 +6,8 @@ import org.apache.ibatis.annotations.Delete;
 import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 
+import java.util.List;
+
 /**
  * <p>
  * 课程老师关系表草稿 Mapper 接口
@@ -25,6 +27,15 @@ public interface CourseTeacherDraftMapper extends BaseMapper<CourseTeacherDraft>
     @Delete("delete from course_teacher_draft where course_id=#{courseId}")
     int deleteByCourseId(@Param("courseId") Long courseId);
 
+    /**
+     * 根据课程id批量删除课程中的老师
+     * @param courseIds 课程id集合
+     * @return 删除条数
+     */
+    @Delete("<script>delete from course_teacher_draft where course_id in " +
+            "(<foreach collection='courseIds' item='courseId' separator=','>#{courseId}</foreach>)</script>")
+    int deleteByCourseIds(@Param("courseIds") List<Long> courseIds);
+
     @Insert("insert into course_teacher_draft (" + COLUMNS + ") (select " + COLUMNS + " from course_teacher " +
             "where course_id= #{courseId} and deleted = 0)")
     int insertFromCourseTeacher(@Param("courseId") Long courseId);
@@ -3,6 +3,7 @@ package com.tianji.course.mapper;
 import com.tianji.course.domain.po.CourseTeacher;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Param;
 
 /**
@@ -18,4 +19,38 @@ public interface CourseTeacherMapper extends BaseMapper<CourseTeacher> {
     @Delete("delete from course_teacher where course_id=#{courseId}")
     int deleteByCourseId(@Param("courseId") Long courseId);
 
+    /**
+     * 草稿行和架上行逐列做null安全比较，全部相同说明该行没有变化
+     */
+    String SAME_AS_DRAFT = "t.course_id <=> d.course_id and t.teacher_id <=> d.teacher_id and t.is_show <=> d.is_show " +
+            "and t.c_index <=> d.c_index and t.dep_id <=> d.dep_id and t.deleted <=> d.deleted";
+
+    /**
+     * 把课程的老师草稿一次性上架，只写入新增或发生变化的记录
+     *
+     * @param courseId 课程id
+     * @return 影响行数
+     */
+    @Insert("insert into course_teacher (" + CourseTeacherDraftMapper.COLUMNS + ") " +
+            "select d.id, d.course_id, d.teacher_id, d.is_show, d.c_index, d.dep_id, d.create_time, d.update_time, " +
+            "d.creater, d.updater, d.deleted from course_teacher_draft d " +
+            "where d.course_id = #{courseId} and d.deleted = 0 and not exists (select 1 from course_teacher t " +
+            "where t.id = d.id and " + SAME_AS_DRAFT + ") " +
+            "on duplicate key update course_teacher.course_id = values(course_id), " +
+            "course_teacher.teacher_id = values(teacher_id), course_teacher.is_show = values(is_show), " +
+            "course_teacher.c_index = values(c_index), course_teacher.dep_id = values(dep_id), " +
+            "course_teacher.update_time = values(update_time), course_teacher.updater = values(updater), " +
+            "course_teacher.deleted = values(deleted)")
+    int upsertFromDraft(@Param("courseId") Long courseId);
+
+    /**
+     * 删除草稿中已经移除的架上老师
+     *
+     * @param courseId 课程id
+     * @return 删除条数
+     */
+    @Delete("delete from course_teacher where course_id = #{courseId} and id not in " +
+            "(select id from course_teacher_draft where course_id = #{courseId} and deleted = 0)")
+    int deleteRemovedByCourseId(@Param("courseId") Long courseId);
+
 }
@@ -77,6 +77,13 @@ public interface ICourseDraftService extends IService<CourseDraft> {
      */
     void delete(Long id);
 
+    /**
+     * 批量删除课程的草稿
+     *
+     * @param ids 课程id集合
+     */
+    void deleteByIds(List<Long> ids);
+
     /**
      * 分页查询更新时间
      * @param coursePageQuery 课程分页参数
@@ -52,9 +52,12 @@ public interface ICourseService extends IService<Course> {
     List<SubNumAndCourseNumDTO> countSubjectNumAndCourseNumOfTeacher(List<Long> teacherIds);
 
     /**
-     * 课程完结
+     * 课程完结，按课程id分片处理
+     * @param shardIndex 分片序号，从0开始
+     * @param shardTotal 分片总数
+     * @return 完结的课程数量
      */
-    int courseFinished();
+    int courseFinished(int shardIndex, int shardTotal);
 
     /**
      * 统计每个分类id所拥有的课程数量
@@ -11,6 +11,8 @@ import com.tianji.common.enums.CommonStatus;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.exceptions.DbException;
 import com.tianji.common.utils.*;
+import com.tianji.course.cache.CategoryTree;
+import com.tianji.course.cache.CategoryTreeCache;
 import com.tianji.course.constants.CourseConstants;
 import com.tianji.course.constants.CourseErrorInfo;
 import com.tianji.course.constants.CourseStatus;
@@ -65,28 +67,27 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
     @Autowired
     private ICourseDraftService courseDraftService;
 
+    @Autowired
+    private CategoryTreeCache categoryTreeCache;
+
     @Resource(name = "taskExecutor")
     private Executor taskExecutor;
 
     @Override
     public List<CategoryVO> list(CategoryListDTO categoryListDTO) {
 
-        //1.搜索条件根据priority正序排序，id逆序排序
-        LambdaQueryWrapper<Category> queryWrapper =
-                Wrappers.lambdaQuery(Category.class)
-                        .orderByAsc(Category::getPriority)
-                        .orderByDesc(Category::getUpdateTime);
-        //2.查询数据
-        List<Category> list = super.list(queryWrapper);
+        //1.获取分类快照
+        CategoryTree tree = categoryTreeCache.get();
+        //2.快照中的分类已根据priority正序，更新时间逆序排序
+        List<Category> list = tree.getSortedByUpdateTime();
         if (CollUtils.isEmpty(list)) {
             return new ArrayList<>();
         }
 
-        //3.获取课程分类拥有的课程数量
-        Map<Long, Long> thirdCategoryNumMap = this.statisticThirdCategory();
+        //3.获取课程分类拥有的三级分类数量、课程数量
+        Map<Long, Long> thirdCategoryNumMap = tree.getThirdCategoryNumMap();
 
-        Map<Long, Integer> cateIdAndNumMap = courseService
-                .countCourseNumOfCategory();
+        Map<Long, Integer> cateIdAndNumMap = tree.getCourseNumMap();
         //4.通过TreeDataUtils组装数据
         List<CategoryVO> categoryVOS = TreeDataUtils.parseToTree(list, CategoryVO.class,
                 //4.1设置转换
@@ -139,12 +140,15 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         if (this.baseMapper.insert(category) <= 0) {
             throw new DbException(null);
         }
+        //发布分类变更
+        categoryTreeCache.publishChange();
     }
 
     @Override
     public CategoryInfoVO get(Long id) {
         //1.查询数据
-        Category category = this.baseMapper.selectById(id);
+        CategoryTree tree = categoryTreeCache.get();
+        Category category = tree.get(id);
         //1.1判空
         if (category == null) {
             return new CategoryInfoVO();
@@ -160,7 +164,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         Long firstCategoryId = null;
         if (category.getLevel() == 3) {
             //2.4.查询二级课程分类
-            Category secondCategory = this.baseMapper.selectById(category.getParentId()); //所在二级目录
+            Category secondCategory = tree.get(category.getParentId()); //所在二级目录
             //2.5.设置二级课程分类名称
             categoryInfoVO.setSecondCategoryName(secondCategory.getName());
             //2.6.设置一级课程分类id
@@ -172,7 +176,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
 
         if (firstCategoryId != null) {
             //2.8.查询一级课程分类信息
-            Category firstCategory = this.baseMapper.selectById(firstCategoryId);
+            Category firstCategory = tree.get(firstCategoryId);
             //2.9设置一级课程分类名称
             categoryInfoVO.setFirstCategoryName(firstCategory.getName());
         }
@@ -214,6 +218,8 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         if (result <= 0) {
             throw new DbException(CourseErrorInfo.Msg.CATEGORY_DELETE_FAILD);
         }
+        //6.发布分类变更
+        categoryTreeCache.publishChange();
     }
 
     /**
@@ -286,6 +292,8 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
             //5.2更新关联分类状态
             baseMapper.update(updateCategory, updateWrapper);
         }
+        //5.3发布分类变更
+        categoryTreeCache.publishChange();
         //6.课程分类禁用触发课程批量下架
         if (categoryDisableOrEnableDTO.getStatus() == CommonStatus.DISABLE.getValue()) {
             Long userId = UserContext.getUser();
@@ -316,6 +324,8 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         if (result <= 0) {
             throw new BizIllegalException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
         }
+        //5.发布分类变更
+        categoryTreeCache.publishChange();
     }
 
     @Override
@@ -328,13 +338,12 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
             return new ArrayList<>();
         }
 
-        // 2.升序查询所有未禁用的课程分类
-        LambdaQueryWrapper<Category> queryWrapper = Wrappers.lambdaQuery(Category.class)
-                .eq(!admin, Category::getStatus, CommonStatus.ENABLE.getValue())
-                .in(CollectionUtil.isNotEmpty(categoryIdList), Category::getId, categoryIdList)
-                .orderByAsc(Category::getPriority)
-                .orderByDesc(Category::getId);
-        List<Category> categories = this.baseMapper.selectList(queryWrapper);
+        // 2.从分类快照中过滤出所有未禁用的课程分类，快照中已按priority正序，id逆序排序
+        Set<Long> categoryIds = admin ? null : new HashSet<>(categoryIdList);
+        List<Category> categories = categoryTreeCache.get().getSortedById().stream()
+                .filter(category -> admin || (category.getStatus() == CommonStatus.ENABLE.getValue()
+                        && categoryIds.contains(category.getId())))
+                .collect(Collectors.toList());
 
         // 3.将课程分类转换成树状结构
         List<SimpleCategoryVO> simpleCategoryVOS = TreeDataUtils.parseToTree(categories,
@@ -347,21 +356,21 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
 
     @Override
     public Map<Long, String> getCateIdAndName() {
-        List<Category> categories = this.baseMapper.selectList(null);
-        return categories.stream()
+        return categoryTreeCache.get().getIdMap().values().stream()
                 .collect(Collectors.toMap(Category::getId, Category::getName));
     }
 
     @Override
     public List<CategoryVO> allOfOneLevel() {
         //1.查询数据
-        List<Category> list = super.list();
+        CategoryTree tree = categoryTreeCache.get();
+        List<Category> list = tree.getSortedById();
         if (CollUtils.isEmpty(list)) {
             return new ArrayList<>();
         }
 
-        //2.统计一级二级目录对应的三级目录的数量，做一个三分钟的redis缓存
-        Map<Long, Long> thirdCategoryNumMap = this.statisticThirdCategory();
+        //2.一级二级目录对应的三级目录的数量
+        Map<Long, Long> thirdCategoryNumMap = tree.getThirdCategoryNumMap();
         return BeanUtils.copyList(list, CategoryVO.class, (category, categoryVO) -> {
             categoryVO.setThirdCategoryNum(thirdCategoryNumMap.getOrDefault(category.getId(), 0L).intValue());
         });
@@ -372,10 +381,13 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         if (CollUtils.isEmpty(ids)) {
             return new ArrayList<>();
         }
-        LambdaQueryWrapper<Category> queryWrapper =
-                Wrappers.lambdaQuery(Category.class)
-                        .in(Category::getId, ids);
-        return baseMapper.selectList(queryWrapper);
+        //快照中的分类对象是共享的，返回副本
+        CategoryTree tree = categoryTreeCache.get();
+        return ids.stream()
+                .map(tree::get)
+                .filter(Objects::nonNull)
+                .map(category -> BeanUtils.copyBean(category, Category.class))
+                .collect(Collectors.toList());
     }
 
     @Override
@@ -387,17 +399,15 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
             return resultMap;
         }
         // 1.2校验分类id都是三级分类id
-        LambdaQueryWrapper<Category> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(Category::getLevel, 3)
-                .in(Category::getId, thirdCateIdList);
-        int thirdCateNum = baseMapper.selectCount(queryWrapper);
-        if (!NumberUtils.equals(thirdCateNum, thirdCateIdList.size())) {
-            throw new BizIllegalException(ErrorInfo.Msg.REQUEST_PARAM_ILLEGAL);
-        }
-        //2.查询所有分类，并将分类转化成map
-        List<Category> categories = baseMapper.selectList(null);
-        Map<Long, Category> categoryMap = categories.stream()
-                .collect(Collectors.toMap(Category::getId, p -> p));
+        CategoryTree tree = categoryTreeCache.get();
+        for (Long thirdCateId : thirdCateIdList) {
+            Category category = tree.get(thirdCateId);
+            if (category == null || category.getLevel() != 3) {
+                throw new BizIllegalException(ErrorInfo.Msg.REQUEST_PARAM_ILLEGAL);
+            }
+        }
+        //2.从快照中获取分类map
+        Map<Long, Category> categoryMap = tree.getIdMap();
         //3.遍历三级分类id
         for (Long thirdCateId : thirdCateIdList) {
             //3.1三级分类
@@ -406,7 +416,7 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
             //3.2二级分类
             Category secondCategory = categoryMap.get(thirdCategory.getParentId());
             //3.3一级分类
-            Category firstCategory = categoryMap.get(thirdCateId);
+            Category firstCategory = categoryMap.get(secondCategory.getParentId());
             resultMap.put(thirdCateId, StringUtils.format("{}/{}/{}",
                     firstCategory.getName(), secondCategory.getName(), thirdCategory.getName()));
         }
@@ -415,20 +425,16 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
 
     @Override
     public List<String> queryCourseCategorys(Course course) {
-        //1.查询课程分类
-        List<Category> categories = baseMapper.selectBatchIds(
-                Arrays.asList(course.getFirstCateId(),
-                        course.getSecondCateId(),
-                        course.getThirdCateId()));
-        if (CollUtils.isNotEmpty(categories)) {
+        //1.从快照中查询课程分类
+        CategoryTree tree = categoryTreeCache.get();
+        Category first = tree.get(course.getFirstCateId());
+        Category second = tree.get(course.getSecondCateId());
+        Category third = tree.get(course.getThirdCateId());
+        if (first == null || second == null || third == null) {
             return new ArrayList<>();
         }
-        Map<Long, String> categoryIdAndNameMap = categories.stream()
-                .collect(Collectors.toMap(Category::getId, Category::getName));
         //2.按照分类层级关系组装成列表
-        return Arrays.asList(categoryIdAndNameMap.get(course.getFirstCateId()),
-                categoryIdAndNameMap.get(course.getSecondCateId()),
-                categoryIdAndNameMap.get(course.getThirdCateId()));
+        return Arrays.asList(first.getName(), second.getName(), third.getName());
     }
 
     @Override
@@ -506,42 +512,6 @@ public class CategoryServiceImpl extends ServiceImpl<CategoryMapper, Category> i
         // 2.
     }
 
-    /**
-     * 统计每个一级目录二级目录有多少个三级目录
-     *
-     * @return
-     */
-    private Map<Long, Long> statisticThirdCategory() {
-        Map<Long, Long> result = new HashMap<>();
-        // 1.查询所有数据
-        List<Category> categories = baseMapper.selectList(null);
-        // 1.1.判空
-        if(CollUtils.isEmpty(categories)){
-            return result;
-        }
-
-        // 2.二级分类的拥有的三级课程分类数量
-        Map<Long, Long> collect = categories.stream()
-                .filter(category -> category.getLevel() == 3)
-                .collect(Collectors.groupingBy(Category::getParentId, Collectors.counting()));
-        result.putAll(collect);
-        // 3.一级分类拥有的三级课程分类数量
-        Map<Long, List<Category>> category2Map = categories.stream()
-                .filter(category -> category.getLevel() == 2)
-                .collect(Collectors.groupingBy(Category::getParentId));
-        // 3.1.遍历category2Map
-        for (Map.Entry<Long, List<Category>> entry : category2Map.entrySet()){
-            long sum = entry.getValue()
-                    .stream()
-                    .map(category -> NumberUtils.null2Zero(result.get(category.getId())))
-                    .collect(Collectors.summarizingLong(num -> num))
-                    .getSum();
-            result.put(entry.getKey(), sum);
-        }
-        // 4.返回结果
-        return result;
-    }
-
     /**
      * 根据条件过滤课程分类
      *
@@ -323,23 +323,26 @@ public class CourseCatalogueDraftServiceImpl extends ServiceImpl<CourseCatalogue
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = {DbException.class, Exception.class})
     public void copyToShelf(Long courseId, Boolean isFirstShelf) {
-        //1.从草稿中查出目录信息
-        List<CourseCatalogueDraft> courseCatalogueDrafts = baseMapper.getByCourseId(courseId);
-        List<CourseCatalogue> courseCatalogues = BeanUtils.copyList(courseCatalogueDrafts, CourseCatalogue.class);
-        //2.保存数据上架
-        boolean result = courseCatalogueService.saveOrUpdateBatch(courseCatalogues);
-        if (!result) {
-            throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
-        }
-        //3.删除草稿
-        int deleteResult = courseCatalogueDraftMapper.deleteByCourseId(courseId, Arrays.asList(
+        //1.统计目录草稿数量，没有草稿说明目录没有变更，直接结束
+        List<Integer> types = Arrays.asList(
                 CourseConstants.CataType.CHAPTER,
                 CourseConstants.CataType.SECTION,
                 CourseConstants.CataType.PRATICE
-        ));
-        if (deleteResult != courseCatalogueDrafts.size()) {
+        );
+        int draftNum = count(Wrappers.lambdaQuery(CourseCatalogueDraft.class)
+                .eq(CourseCatalogueDraft::getCourseId, courseId)
+                .in(CourseCatalogueDraft::getType, types));
+        if (draftNum <= 0) {
+            return;
+        }
+        //2.目录草稿一次性上架，只写入新增和有变化的目录
+        int upserted = courseCatalogueMapper.upsertFromDraft(courseId, NumberUtils.null2Zero(UserContext.getUser()));
+        //3.删除草稿
+        int deleteResult = courseCatalogueDraftMapper.deleteByCourseId(courseId, types);
+        if (deleteResult != draftNum) {
             throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
         }
+        log.debug("课程目录上架，courseId：{}，目录数量：{}，变更数量：{}", courseId, deleteResult, upserted);
     }
 
     @Override
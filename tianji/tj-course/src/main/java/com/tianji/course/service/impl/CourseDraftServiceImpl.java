@@ -21,6 +21,7 @@ import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.exceptions.DbException;
 import com.tianji.common.utils.*;
+import com.tianji.course.cache.CourseOutlineCache;
 import com.tianji.course.constants.CourseConstants;
 import com.tianji.course.constants.CourseErrorInfo;
 import com.tianji.course.constants.CourseStatus;
@@ -60,6 +61,9 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
     @Autowired
     private CourseMapper courseMapper;
 
+    @Autowired
+    private CourseOutlineCache courseOutlineCache;
+
     @Autowired
     private ICourseService courseService;
 
@@ -350,59 +354,54 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
         courseCatalogueDraftService.copySubjectToShelf(id, isFirstUpShelf);
         //4.3目录信息上架
         courseCatalogueDraftService.copyToShelf(id, isFirstUpShelf);
-        //4.4 组装课程基本信息、课程内容信息
-        CourseContentDraft courseContentDraft = courseContentDraftMapper.selectById(id);
-        CourseContent courseContent = BeanUtils.toBean(courseContentDraft, CourseContent.class);
+        //4.4 课程内容信息上架，首次上架插入，再次上架只在内容变化时更新
+        int result = courseContentMapper.upsertFromDraft(id, NumberUtils.null2Zero(UserContext.getUser()));
+        if (isFirstUpShelf && result <= 0) {
+            throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
+        }
+        //4.5 组装课程基本信息
         Course courseToShelf = BeanUtils.toBean(courseDraft, Course.class);
-        //4.4.1.课程视频总时长
+        //4.5.1.课程视频总时长
         courseToShelf.setMediaDuration(totalMediaDuration);
-        //4.4.2.课程有效期月数
+        //4.5.2.课程有效期月数
         courseToShelf.setValidDuration(courseDraft.getValidDuration());
-        //4.4.3.课程发布时间
+        //4.5.3.课程发布时间
         courseToShelf.setPublishTime(DateUtils.now());
-        //4.4.4.课程状态设置为已上架
+        //4.5.4.课程状态设置为已上架
         courseToShelf.setStatus(CourseStatus.SHELF.getStatus());
-        //4.4.5.课程发布次数
+        //4.5.5.课程发布次数
         int publishTimes = (course == null) ?
                 1 : NumberUtils.null2Zero(course.getPublishTimes()) + 1;
         courseToShelf.setPublishTimes(publishTimes);
-        // 4.4.6.评分
+        // 4.5.6.评分
         courseToShelf.setScore((int)(Math.random() * 10) + 40);
 
-        //4.5.首次上架
+        //4.6.首次上架
         if (isFirstUpShelf) {
-            //4.5.1.插入课程内容信息
-            int result = courseContentMapper.insert(courseContent);
-            if (result <= 0) {
-                throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
-            }
-            //4.5.2.插入课程基本信息
+            //4.6.1.插入课程基本信息
             result = courseMapper.insert(courseToShelf);
             if (result <= 0) {
                 throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
             }
-            //4.5.1.删除课程草稿基本信息
+            //4.6.2.删除课程草稿基本信息
             baseMapper.deleteById(id);
-            //4.5.2.删除课程草稿内容信息
+            //4.6.3.删除课程草稿内容信息
             courseContentDraftMapper.deleteById(id);
         } else {
-            //4.6.再次上架
-            //4.6.1.更新正式课程内容信息
-            int result = courseContentMapper.updateById(courseContent);
-            if (result <= 0) {
-                throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
-            }
-            //4.6.2.更新正式课程基本信息
+            //4.7.再次上架
+            //4.7.1.更新正式课程基本信息
             result = courseMapper.updateVariableById(courseToShelf);
             if (result <= 0) {
                 throw new DbException(ErrorInfo.Msg.DB_UPDATE_EXCEPTION);
             }
-            //4.6.3.删除课程草稿基本信息
+            //4.7.2.删除课程草稿基本信息
             baseMapper.deleteById(id);
-            //4.6.4.删除课程草稿内容信息
+            //4.7.3.删除课程草稿内容信息
             courseContentDraftMapper.deleteById(id);
 
         }
+        //4.8.事务提交后预先构建新版本的课程大纲缓存
+        courseOutlineCache.rebuildAfterCommit(id, publishTimes);
         //5.课程上架mq
         rabbitMqHelper.sendAsyn(MqConstants.Exchange.COURSE_EXCHANGE,
                 MqConstants.Key.COURSE_UP_KEY,
@@ -552,6 +551,28 @@ public class CourseDraftServiceImpl extends ServiceImpl<CourseDraftMapper, Cours
         courseTeacherDraftMapper.deleteByCourseId(id);
     }
 
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = {DbException.class, Exception.class})
+    public void deleteByIds(List<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        //1.删除课程草稿
+        baseMapper.deleteBatchIds(ids);
+        //2.删除课程内容草稿
+        courseContentDraftMapper.deleteBatchIds(ids);
+        //3.删除课程题目关系草稿
+        courseCataSubjectDraftMapper.deleteByCourseIds(ids);
+        //4.删除课程目录草稿
+        courseCatalogueDraftMapper.deleteByCourseIds(ids, Arrays.asList(
+                CourseConstants.CataType.CHAPTER,
+                CourseConstants.CataType.SECTION,
+                CourseConstants.CataType.PRATICE
+        ));
+        //5.删除课程老师关系草稿
+        courseTeacherDraftMapper.deleteByCourseIds(ids);
+    }
+
     @Override
     public PageDTO<CoursePageVO> queryForPage(CoursePageQuery coursePageQuery) {
         //1.课程草稿分页查询条件
@@ -20,6 +20,7 @@ import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.DbException;
 import com.tianji.common.utils.*;
+import com.tianji.course.cache.CourseOutlineCache;
 import com.tianji.course.constants.CourseErrorInfo;
 import com.tianji.course.constants.CourseStatus;
 import com.tianji.course.constants.RedisContants;
@@ -40,6 +41,7 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -90,6 +92,17 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
     @Autowired
     private LearningClient learningClient;
 
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CourseOutlineCache courseOutlineCache;
+
+    /**
+     * 课程完结任务每页处理的课程数量
+     */
+    private static final int FINISH_PAGE_SIZE = 500;
+
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = {DbException.class, Exception.class})
     public void updateStatus(Long id, Integer status) {
@@ -242,8 +255,8 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
     public CourseAndSectionVO queryCourseAndCatalogById(Long courseId) {
         // 1.获取当前用户
         Long userId = UserContext.getUser();
-        // 2.查询课程详情
-        CourseFullInfoDTO course = getInfoById(courseId, true, true);
+        // 2.查询课程基本信息
+        Course course = baseMapper.selectById(courseId);
         if (course == null) {
             return null;
         }
@@ -254,26 +267,15 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
         vo.setSections(course.getSectionNum());
         vo.setCoverUrl(course.getCoverUrl());
         // 4.查询教师信息
-        List<UserDTO> teachers = userClient.queryUserByIds(course.getTeacherIds());
+        List<UserDTO> teachers = userClient.queryUserByIds(courseTeacherService.getTeacherIdOfCourse(courseId));
         if (CollUtils.isNotEmpty(teachers)) {
             UserDTO teacher = teachers.get(0);
             vo.setTeacherName(teacher.getName());
             vo.setTeacherIcon(teacher.getIcon());
         }
-        // 5.组装小节信息
-        List<CatalogueDTO> catas = course.getChapters();
-        List<ChapterVO> chapters = new ArrayList<>(catas.size());
-        for (CatalogueDTO c : catas) {
-            ChapterVO cv = new ChapterVO();
-            cv.setId(c.getId());
-            cv.setName(c.getName());
-            cv.setIndex(c.getIndex());
-            cv.setMediaDuration(c.getMediaDuration());
-            List<SectionVO> sections = BeanUtils.copyToList(c.getSections(), SectionVO.class);
-            cv.setSections(sections);
-            chapters.add(cv);
-        }
-        vo.setChapters(chapters);
+        // 5.章节信息，直接由缓存的课程大纲转换而来
+        List<ChapterVO> chapters = courseOutlineCache.getChapters(courseId, course.getPublishTimes());
+        vo.setChapters(chapters == null ? new ArrayList<>() : chapters);
         // 6.查询学习进度
         if (learningClient == null) {
             return vo;
@@ -339,42 +341,46 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
     }
 
     @Override
-    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
-    public int courseFinished() {
-        //1.完结课程查询条件
-        LambdaQueryWrapper<Course> queryWrapper =
-                Wrappers.lambdaQuery(Course.class)
-                        .le(Course::getPurchaseEndTime, LocalDateTime.now())
-                        .in(Course::getStatus,
-                                List.of(CourseStatus.DOWN_SHELF.getStatus(),
-                                        CourseStatus.SHELF.getStatus()));
-
-        //1.2.查询完结课程
-        List<Course> courses = baseMapper.selectList(queryWrapper);
-        //1.3.完结课程判空
-        if (CollUtils.isEmpty(courses)) {
-            return 0;
-        }
-        //2.组装数据
-        List<Course> updateCourses = new ArrayList<>();
-        for (Course course : courses) {
-            Course updateCourse = new Course();
-            //2.1.设置课程id
-            updateCourse.setId(course.getId());
-            //2.2.设置课程状态-已完结
-            updateCourse.setStatus(CourseStatus.FINISHED.getStatus());
-            updateCourses.add(updateCourse);
-        }
-        //3.批量完结课程
-        updateBatchById(updateCourses);
-        //4.发送课程完结mq
-        sendFinishedCourse(courses);
-        //5.清理草稿
-        for (Course course: courses){
-            courseDraftService.delete(course.getId());
+    public int courseFinished(int shardIndex, int shardTotal) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Integer> statuses = List.of(CourseStatus.DOWN_SHELF.getStatus(), CourseStatus.SHELF.getStatus());
+        long cursor = 0;
+        int total = 0;
+        while (true) {
+            //1.按id游标查询一页完结课程，只查询id
+            List<Long> ids = lambdaQuery()
+                    .select(Course::getId)
+                    .le(Course::getPurchaseEndTime, now)
+                    .in(Course::getStatus, statuses)
+                    .gt(Course::getId, cursor)
+                    .apply(shardTotal > 1, "MOD(id, {0}) = {1}", shardTotal, shardIndex)
+                    .orderByAsc(Course::getId)
+                    .last("LIMIT " + FINISH_PAGE_SIZE)
+                    .list()
+                    .stream().map(Course::getId).collect(Collectors.toList());
+            //1.1.完结课程判空
+            if (CollUtils.isEmpty(ids)) {
+                break;
+            }
+            cursor = ids.get(ids.size() - 1);
+            //2.同一个事务中批量完结课程、清理草稿
+            transactionTemplate.executeWithoutResult(status -> {
+                lambdaUpdate()
+                        .set(Course::getStatus, CourseStatus.FINISHED.getStatus())
+                        .in(Course::getId, ids)
+                        .in(Course::getStatus, statuses)
+                        .update();
+                courseDraftService.deleteByIds(ids);
+            });
+            //3.每页发送一条课程完结mq
+            rabbitMqHelper.sendAsyn(MqConstants.Exchange.COURSE_EXCHANGE,
+                    MqConstants.Key.COURSE_EXPIRE_BATCH_KEY, ids);
+            total += ids.size();
+            if (ids.size() < FINISH_PAGE_SIZE) {
+                break;
+            }
         }
-
-        return updateCourses.size();
+        return total;
     }
 
     @Override
@@ -432,9 +438,9 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
         // 2.转换vo
         CourseFullInfoDTO courseFullInfoDTO = BeanUtils.toBean(course, CourseFullInfoDTO.class);
 
-        // 3.查询目录信息
+        // 3.查询目录信息，从课程大纲缓存中获取
         if (withCatalogue) {
-            courseFullInfoDTO.setChapters(courseCatalogueService.queryCourseCatalogues(id, true));
+            courseFullInfoDTO.setChapters(courseOutlineCache.getOutline(id, course.getPublishTimes()));
         }
         // 4.查询教师信息
         if (withTeachers) {
@@ -515,20 +521,6 @@ public class CourseServiceImpl extends ServiceImpl<CourseMapper, Course> impleme
         });
     }
 
-    /**
-     * 异步发送课程完结mq
-     *
-     * @param finishedCourse
-     */
-    private void sendFinishedCourse(List<Course> finishedCourse) {
-        //1.遍历发送课程完结mq
-        for (Course course : finishedCourse) {
-            rabbitMqHelper.sendAsyn(MqConstants.Exchange.COURSE_EXCHANGE,
-                    MqConstants.Key.COURSE_EXPIRE_KEY,
-                    course.getId());
-        }
-    }
-
     /**
      * 统计课程分类上架和已完结课程的数量
      *
@@ -12,10 +12,10 @@ import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.course.constants.CourseConstants;
 import com.tianji.course.domain.dto.CourseTeacherSaveDTO;
-import com.tianji.course.domain.po.CourseTeacher;
 import com.tianji.course.domain.po.CourseTeacherDraft;
 import com.tianji.course.domain.vo.CourseTeacherVO;
 import com.tianji.course.mapper.CourseTeacherDraftMapper;
+import com.tianji.course.mapper.CourseTeacherMapper;
 import com.tianji.course.service.ICourseDraftService;
 import com.tianji.course.service.ICourseTeacherDraftService;
 import com.tianji.course.service.ICourseTeacherService;
@@ -49,6 +49,9 @@ public class CourseTeacherDraftServiceImpl extends ServiceImpl<CourseTeacherDraf
     @Autowired
     private UserClient userClient;
 
+    @Autowired
+    private CourseTeacherMapper courseTeacherMapper;
+
     @Override
     @Transactional(propagation = Propagation.REQUIRED)
     public void save(CourseTeacherSaveDTO courseTeacherSaveDTO) {
@@ -99,18 +102,13 @@ public class CourseTeacherDraftServiceImpl extends ServiceImpl<CourseTeacherDraf
     @Override
     @Transactional(rollbackFor = {DbException.class, Exception.class})
     public void copyToShelf(Long courseId, Boolean isFirstShelf) {
-        //1.先将草稿中的数据查出来
-        LambdaQueryWrapper<CourseTeacherDraft> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(CourseTeacherDraft::getCourseId, courseId);
-        List<CourseTeacherDraft> courseTeacherDrafts = baseMapper.selectList(queryWrapper);
-        //2.删除架上的老师数据，
+        //1.删除草稿中已经移除的架上老师
         if (!isFirstShelf) {
-            courseTeacherService.deleteByCourseId(courseId);
+            courseTeacherMapper.deleteRemovedByCourseId(courseId);
         }
-        //3.将草稿上架
-        List<CourseTeacher> courseTeachers = BeanUtils.copyList(courseTeacherDrafts, CourseTeacher.class);
-        courseTeacherService.saveOrUpdateBatch(courseTeachers);
-        //4.删除草稿
+        //2.将草稿一次性上架，只写入新增和有变化的记录
+        courseTeacherMapper.upsertFromDraft(courseId);
+        //3.删除草稿
         if (baseMapper.deleteByCourseId(courseId) <= 0) {
             throw new DbException(ErrorInfo.Msg.DB_DELETE_EXCEPTION);
         }
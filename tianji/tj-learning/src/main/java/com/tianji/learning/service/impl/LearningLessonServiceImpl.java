@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.api.client.course.CatalogueClient;
 import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.constants.LessonConstants;
 import com.tianji.api.dto.IdAndNumDTO;
 import com.tianji.api.dto.course.CataSimpleInfoDTO;
 import com.tianji.api.dto.course.CourseFullInfoDTO;
@@ -25,12 +26,21 @@ import com.tianji.learning.mapper.LearningRecordMapper;
 import com.tianji.learning.service.ILearningLessonService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -53,6 +63,10 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
     private final CourseClient courseClient;
     private final CatalogueClient catalogueClient;
     private final LearningRecordMapper recordMapper;
+    private final StringRedisTemplate redisTemplate;
+
+    private static final RedisScript<Long> CACHE_VALID_LESSON_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/cache_valid_lesson.lua"), Long.class);
 
     @Override
     @Transactional
@@ -83,7 +97,13 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         }
         // 3.批量新增
         saveBatch(list);
-
+        // 4.事务提交后把课程加入用户有效课程集合
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cacheValidLessons(userId, list);
+            }
+        });
     }
 
     /**
@@ -268,6 +288,8 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         }
         // 2.删除课程
         remove(buildUserIdAndCourseIdWrapper(userId, courseId));
+        // 3.在用户有效课程集合中标记为已移除，避免并发查询把旧数据写回
+        removeValidLesson(userId, courseId);
     }
 
     @Override
@@ -293,6 +315,11 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         if (lesson == null) {
             return null;
         }
+        // 写入用户有效课程集合，已过期的课程不写入
+        LocalDateTime expireTime = lesson.getExpireTime();
+        if (expireTime == null || expireTime.isAfter(LocalDateTime.now())) {
+            writeBackValidLesson(user, lesson);
+        }
         return lesson.getId();
     }
 
@@ -399,6 +426,54 @@ public class LearningLessonServiceImpl extends ServiceImpl<LearningLessonMapper,
         return result.pageInfo(p.getTotal(), p.getPages(), voList);
     }
 
+    private void cacheValidLessons(Long userId, List<LearningLesson> lessons) {
+        String key = LessonConstants.VALID_LESSON_KEY_PREFIX + userId;
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> tuples = new HashSet<>(lessons.size());
+        for (LearningLesson lesson : lessons) {
+            tuples.add(new DefaultTypedTuple<>(lesson.getCourseId().toString(), (double) validUntil(lesson, now)));
+        }
+        try {
+            redisTemplate.opsForZSet().add(key, tuples);
+            // 清理已失效的成员，已移除的标记(负数)保留到各自失效
+            redisTemplate.opsForZSet().removeRangeByScore(key, 0, now);
+            redisTemplate.expire(key, LessonConstants.VALID_LESSON_TTL);
+        } catch (Exception e) {
+            log.error("缓存用户有效课程失败，userId：{}", userId, e);
+        }
+    }
+
+    private void writeBackValidLesson(Long userId, LearningLesson lesson) {
+        long now = System.currentTimeMillis();
+        try {
+            redisTemplate.execute(CACHE_VALID_LESSON_SCRIPT,
+                    List.of(LessonConstants.VALID_LESSON_KEY_PREFIX + userId),
+                    lesson.getCourseId().toString(), String.valueOf(validUntil(lesson, now)),
+                    String.valueOf(now), String.valueOf(LessonConstants.VALID_LESSON_TTL.getSeconds()));
+        } catch (Exception e) {
+            log.error("缓存用户有效课程失败，userId：{}", userId, e);
+        }
+    }
+
+    private void removeValidLesson(Long userId, Long courseId) {
+        String key = LessonConstants.VALID_LESSON_KEY_PREFIX + userId;
+        long until = System.currentTimeMillis() + LessonConstants.VALID_LESSON_TTL.toMillis();
+        redisTemplate.opsForZSet().add(key, courseId.toString(), -until);
+        redisTemplate.expire(key, LessonConstants.VALID_LESSON_TTL);
+    }
+
+    /**
+     * 成员的失效时间，取课程过期时间和当前时间+缓存时长中较早的一个
+     */
+    private static long validUntil(LearningLesson lesson, long now) {
+        long until = now + LessonConstants.VALID_LESSON_TTL.toMillis();
+        LocalDateTime expireTime = lesson.getExpireTime();
+        if (expireTime != null) {
+            until = Math.min(until, expireTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+        return until;
+    }
+
     private LambdaQueryWrapper<LearningLesson> buildUserIdAndCourseIdWrapper(Long userId, Long courseId) {
         LambdaQueryWrapper<LearningLesson> queryWrapper = new QueryWrapper<LearningLesson>()
                 .lambda()
@@ -0,0 +1,10 @@
+-- KEYS[1]：用户有效课程集合key
+-- ARGV[1]：课程id，ARGV[2]：成员失效时间戳，ARGV[3]：当前时间戳，ARGV[4]：集合key的有效期(秒)
+local score = redis.call('zscore', KEYS[1], ARGV[1])
+if(score and tonumber(score) < 0 and -tonumber(score) > tonumber(ARGV[3])) then
+    -- 课程刚被移除(退款)，不能把查询时读到的旧数据写回
+    return 0
+end
+redis.call('zadd', KEYS[1], ARGV[2], ARGV[1])
+redis.call('expire', KEYS[1], ARGV[4])
+return 1
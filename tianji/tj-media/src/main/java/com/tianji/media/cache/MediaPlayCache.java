@@ -0,0 +1,108 @@
+package com.tianji.media.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.client.learning.LearningClient;
+import com.tianji.api.constants.LessonConstants;
+import com.tianji.api.dto.course.SectionInfoDTO;
+import com.tianji.common.utils.AssertUtils;
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.mapper.MediaMapper;
+import com.tianji.media.storage.IMediaStorage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+
+import static com.tianji.media.constants.FileErrorInfo.MEDIA_NOT_EXISTS;
+
+/**
+ * 视频播放相关的缓存，包括小节对应的媒资、媒资对应的文件id、用户的播放签名，以及用户课程是否有效
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MediaPlayCache {
+
+    /**
+     * 播放签名的缓存时长，签名本身不带过期时间，这里只是避免重复计算
+     */
+    private static final Duration SIGNATURE_TTL = Duration.ofMinutes(10);
+
+    private final CourseClient courseClient;
+    private final LearningClient learningClient;
+    private final MediaMapper mediaMapper;
+    private final IMediaStorage mediaStorage;
+    private final StringRedisTemplate redisTemplate;
+
+    /**
+     * 小节信息缓存，小节的媒资只会在课程重新上架时变化
+     */
+    private final Cache<Long, SectionInfoDTO> sectionCaches = Caffeine.newBuilder()
+            .initialCapacity(1024)
+            .maximumSize(50_000)
+            .expireAfterWrite(Duration.ofMinutes(5))
+            .build();
+    /**
+     * 媒资id到文件id的缓存，媒资的文件id不会变化
+     */
+    private final Cache<Long, String> fileIdCaches = Caffeine.newBuilder()
+            .initialCapacity(1024)
+            .maximumSize(50_000)
+            .expireAfterWrite(Duration.ofMinutes(30))
+            .build();
+    /**
+     * 播放签名缓存，key为：用户id:文件id:免费时长
+     */
+    private final Cache<String, String> signatureCaches = Caffeine.newBuilder()
+            .initialCapacity(1024)
+            .maximumSize(200_000)
+            .expireAfterWrite(SIGNATURE_TTL)
+            .build();
+
+    public SectionInfoDTO getSectionInfo(Long sectionId) {
+        return sectionCaches.get(sectionId, courseClient::sectionInfo);
+    }
+
+    public String getFileId(Long mediaId) {
+        String fileId = fileIdCaches.get(mediaId, id ->
+                Optional.ofNullable(mediaMapper.selectById(id)).map(Media::getFileId).orElse(null));
+        AssertUtils.isNotNull(fileId, MEDIA_NOT_EXISTS);
+        return fileId;
+    }
+
+    public String getPlaySignature(String fileId, Long userId, Integer freeDuration) {
+        String key = userId + ":" + fileId + ":" + freeDuration;
+        return signatureCaches.get(key, k -> mediaStorage.getPlaySignature(fileId, userId, freeDuration));
+    }
+
+    /**
+     * 判断用户是否购买了课程且课程有效
+     *
+     * @param userId 用户id
+     * @param courseId 课程id
+     * @return 是否有效
+     */
+    public boolean isLessonValid(Long userId, Long courseId) {
+        if (userId == null) {
+            return false;
+        }
+        // 1.查询用户有效课程集合，集合由学习服务在添加、删除课程时维护
+        try {
+            // 分数是成员的失效时间戳，已失效或已移除(负数)的成员都视为未命中
+            Double validUntil = redisTemplate.opsForZSet()
+                    .score(LessonConstants.VALID_LESSON_KEY_PREFIX + userId, courseId.toString());
+            if (validUntil != null && validUntil > System.currentTimeMillis()) {
+                return true;
+            }
+        } catch (Exception e) {
+            log.error("查询用户有效课程缓存失败，userId：{}，courseId：{}", userId, courseId, e);
+        }
+        // 2.未命中，查询学习服务，学习服务会把有效的课程写入集合
+        return learningClient.isLessonValid(courseId) != null;
+    }
+}
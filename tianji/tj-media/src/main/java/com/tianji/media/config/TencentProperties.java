@@ -25,6 +25,8 @@ public class TencentProperties {
         private String urlKey;
         /*播放器配置*/
         private String pfcg;
+        /*事件回调鉴权秘钥，为空则不接收推送回调*/
+        private String callbackKey;
     }
     @Data
     public static class CosProperties{
@@ -7,6 +7,7 @@ import com.tianji.media.domain.dto.MediaUploadResultDTO;
 import com.tianji.media.domain.query.MediaQuery;
 import com.tianji.media.domain.vo.MediaVO;
 import com.tianji.media.domain.vo.VideoPlayVO;
+import com.tianji.media.handler.VodEventHandler;
 import com.tianji.media.service.IMediaService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -32,6 +33,8 @@ public class MediaController {
 
     private final IMediaService mediaService;
 
+    private final VodEventHandler vodEventHandler;
+
     @ApiOperation("分页搜索已上传媒资信息")
     @GetMapping
     public PageDTO<MediaVO> queryMediaPage(MediaQuery query){
@@ -50,6 +53,15 @@ public class MediaController {
         return mediaService.getUploadSignature();
     }
 
+    @ApiOperation("接收VOD事件推送回调")
+    @PostMapping("/vod/events")
+    public void receiveVodEvent(
+            @RequestParam(value = "t", required = false) String t,
+            @RequestParam(value = "sign", required = false) String sign,
+            @RequestBody String body){
+        vodEventHandler.receive(t, sign, body);
+    }
+
     @ApiOperation("获取播放视频的授权签名")
     @GetMapping("/signature/play")
     public VideoPlayVO getPlaySignature(
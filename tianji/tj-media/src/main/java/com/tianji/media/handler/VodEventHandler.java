@@ -0,0 +1,245 @@
+package com.tianji.media.handler;
+
+import cn.hutool.crypto.SecureUtil;
+import com.tencentcloudapi.common.AbstractModel;
+import com.tencentcloudapi.vod.v20180717.models.*;
+import com.tianji.common.exceptions.BizIllegalException;
+import com.tianji.common.exceptions.ForbiddenException;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.media.config.TencentProperties;
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.enums.FileStatus;
+import com.tianji.media.service.IMediaService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * VOD事件处理器，推送回调和主动拉取的事件都交给这里处理。
+ * 事件按文件id分散到多个单线程的执行器，同一个媒资的事件串行处理，不同媒资之间并行处理。
+ */
+@Slf4j
+@Component
+public class VodEventHandler {
+
+    private static final String PROCEDURE_EVENT = "ProcedureStateChanged";
+    private static final String UPLOAD_EVENT = "NewFileUpload";
+    private static final String PROCEDURE_EVENT_FINISH = "FINISH";
+
+    // 执行器数量，即最大并行度
+    private static final int STRIPES = 8;
+    // 每个执行器的队列容量
+    private static final int STRIPE_QUEUE_CAPACITY = 2000;
+    // 一批拉取事件的最大等待时间，秒
+    private static final long BATCH_TIMEOUT_SECONDS = 30;
+
+    private final IMediaService mediaService;
+    private final TencentProperties tencentProperties;
+    private final ThreadPoolExecutor[] executors = new ThreadPoolExecutor[STRIPES];
+
+    public VodEventHandler(IMediaService mediaService, TencentProperties tencentProperties) {
+        this.mediaService = mediaService;
+        this.tencentProperties = tencentProperties;
+        for (int i = 0; i < STRIPES; i++) {
+            String name = "vod-event-" + i;
+            executors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(STRIPE_QUEUE_CAPACITY), r -> new Thread(r, name));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor executor : executors) {
+            executor.shutdown();
+        }
+        for (ThreadPoolExecutor executor : executors) {
+            executor.awaitTermination(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 接收VOD推送的事件回调，校验签名后放入处理队列，不等待处理结束
+     *
+     * @param t 回调地址中的过期时间，十六进制的unix时间戳，单位秒
+     * @param sign 回调地址中的签名，md5(回调秘钥 + t)
+     * @param body 事件内容
+     */
+    public void receive(String t, String sign, String body) {
+        // 1.校验签名
+        String callbackKey = tencentProperties.getVod().getCallbackKey();
+        if (StringUtils.isBlank(callbackKey) || StringUtils.isBlank(t) || StringUtils.isBlank(sign)
+                || !sign.equalsIgnoreCase(SecureUtil.md5(callbackKey + t))) {
+            throw new ForbiddenException("VOD回调签名错误");
+        }
+        // 2.校验有效期
+        long expireAt;
+        try {
+            expireAt = Long.parseLong(t, 16);
+        } catch (NumberFormatException e) {
+            throw new ForbiddenException("VOD回调签名错误");
+        }
+        if (expireAt < System.currentTimeMillis() / 1000) {
+            throw new ForbiddenException("VOD回调已过期");
+        }
+        // 3.放入处理队列，队列已满时返回错误，由VOD重新推送
+        EventContent ec = AbstractModel.fromJsonString(body, EventContent.class);
+        try {
+            submit(ec).whenComplete((r, e) -> {
+                if (e != null) {
+                    log.error("VOD回调事件处理失败，事件：{}", body, e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            throw new BizIllegalException("VOD事件处理繁忙");
+        }
+    }
+
+    /**
+     * 提交单个事件异步处理
+     *
+     * @param ec 事件
+     * @return 事件处理结果
+     * @throws RejectedExecutionException 处理队列已满
+     */
+    public CompletableFuture<Void> submit(EventContent ec) {
+        return CompletableFuture.runAsync(() -> handle(ec), executors[stripe(ec)]);
+    }
+
+    /**
+     * 并行处理一批事件，等待处理结束。同一个媒资的事件按顺序处理，其中一个失败后，
+     * 该媒资在本批中后续的事件不再处理，也不确认，等待与失败的事件一起重新投递
+     *
+     * @param events 事件
+     * @return 处理成功的事件句柄，用于确认事件
+     */
+    public List<String> handleBatch(EventContent[] events) {
+        // 1.按媒资分组，组内保持事件顺序，没有文件id的事件单独成组
+        Map<String, List<EventContent>> groups = new LinkedHashMap<>();
+        for (EventContent ec : events) {
+            String fileId = fileId(ec);
+            groups.computeIfAbsent(fileId == null ? ec.getEventHandle() : fileId, k -> new ArrayList<>()).add(ec);
+        }
+        // 2.每个媒资的事件作为一个任务提交
+        List<CompletableFuture<List<String>>> futures = new ArrayList<>(groups.size());
+        for (List<EventContent> group : groups.values()) {
+            CompletableFuture<List<String>> future;
+            try {
+                future = CompletableFuture.supplyAsync(() -> handleInOrder(group), executors[stripe(group.get(0))]);
+            } catch (RejectedExecutionException e) {
+                log.error("VOD事件处理繁忙，本批事件不确认，等待重新投递");
+                future = CompletableFuture.completedFuture(Collections.emptyList());
+            }
+            futures.add(future);
+        }
+        // 3.等待处理结束
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(BATCH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.error("VOD事件处理超时，未完成的事件不确认，等待重新投递", e);
+        }
+        // 4.收集处理成功的事件句柄
+        List<String> handles = new ArrayList<>(events.length);
+        for (CompletableFuture<List<String>> future : futures) {
+            handles.addAll(future.getNow(Collections.emptyList()));
+        }
+        return handles;
+    }
+
+    /**
+     * 按顺序处理同一个媒资的事件，遇到失败即停止
+     *
+     * @return 处理成功的事件句柄
+     */
+    private List<String> handleInOrder(List<EventContent> group) {
+        List<String> handles = new ArrayList<>(group.size());
+        for (EventContent ec : group) {
+            try {
+                handle(ec);
+            } catch (Exception e) {
+                log.error("VOD事件处理失败，该媒资后续的事件不处理，等待重新投递，事件：{}", ec.getEventHandle(), e);
+                break;
+            }
+            handles.add(ec.getEventHandle());
+        }
+        return handles;
+    }
+
+    private int stripe(EventContent ec) {
+        String fileId = fileId(ec);
+        return fileId == null ? 0 : Math.floorMod(fileId.hashCode(), STRIPES);
+    }
+
+    private String fileId(EventContent ec) {
+        if (ec.getProcedureStateChangeEvent() != null) {
+            return ec.getProcedureStateChangeEvent().getFileId();
+        }
+        if (ec.getFileUploadEvent() != null) {
+            return ec.getFileUploadEvent().getFileId();
+        }
+        return null;
+    }
+
+    private void handle(EventContent ec) {
+        // 1.获取事件类型
+        String eventType = ec.getEventType();
+        // 2.处理事件
+        if (PROCEDURE_EVENT.equals(eventType)) {
+            handleProcedureStateChangeEvent(ec);
+        } /*else if(UPLOAD_EVENT.equals(eventType)){
+            handleUploadEvent(ec);
+        }*/
+    }
+
+    private void handleUploadEvent(EventContent ec) {
+        // 1.文件上传事件
+        FileUploadTask fut = ec.getFileUploadEvent();
+        // 2.获取文件详情
+        MediaMetaData md = fut.getMetaData();
+        MediaBasicInfo info = fut.getMediaBasicInfo();
+        // 3.组织结果
+        Media media = new Media();
+        media.setFileId(fut.getFileId());
+        media.setFilename(info.getName());
+        media.setMediaUrl(info.getMediaUrl());
+        media.setCoverUrl(info.getCoverUrl());
+        media.setDuration(md.getDuration());
+        media.setSize(md.getSize());
+        media.setStatus(FileStatus.UPLOADED);
+        mediaService.updateMediaProcedureResult(media);
+    }
+
+    private void handleProcedureStateChangeEvent(EventContent ec) {
+        // 1.任务流状态变更，判断是否结束
+        ProcedureTask pt = ec.getProcedureStateChangeEvent();
+        if (!PROCEDURE_EVENT_FINISH.equals(pt.getStatus())) {
+            return;
+        }
+        // 2.任务流已经结束，获取视频元信息
+        MediaMetaData md = pt.getMetaData();
+        String coverUrl = null;
+        if (pt.getMediaProcessResultSet() != null) {
+            Optional<MediaProcessTaskResult> optional = Arrays.stream(pt.getMediaProcessResultSet())
+                    .filter(r -> "CoverBySnapshot".equals(r.getType()))
+                    .findFirst();
+            if (optional.isPresent()) {
+                coverUrl = optional.get().getCoverBySnapshotTask().getOutput().getCoverUrl();
+            }
+        }
+        // 3.保存到数据库
+        Media media = new Media();
+        media.setFileId(pt.getFileId());
+        media.setFilename(pt.getFileName());
+        media.setMediaUrl(pt.getFileUrl());
+        media.setCoverUrl(coverUrl);
+        media.setDuration(md.getDuration());
+        media.setSize(md.getSize());
+        media.setStatus(FileStatus.PROCESSED);
+        mediaService.updateMediaProcedureResult(media);
+    }
+}
@@ -5,7 +5,6 @@ import com.baomidou.mybatisplus.core.metadata.OrderItem;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.api.client.course.CourseClient;
-import com.tianji.api.client.learning.LearningClient;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.course.MediaQuoteDTO;
 import com.tianji.api.dto.course.SectionInfoDTO;
@@ -13,6 +12,7 @@ import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.exceptions.ForbiddenException;
 import com.tianji.common.utils.*;
+import com.tianji.media.cache.MediaPlayCache;
 import com.tianji.media.constants.FileErrorInfo;
 import com.tianji.media.domain.dto.MediaDTO;
 import com.tianji.media.domain.dto.MediaUploadResultDTO;
@@ -49,10 +49,10 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
 
     private final CourseClient courseClient;
 
-    private final LearningClient learningClient;
-
     private final UserClient userClient;
 
+    private final MediaPlayCache mediaPlayCache;
+
     @Override
     public String getUploadSignature() {
         return mediaStorage.getUploadSignature();
@@ -61,40 +61,30 @@ public class MediaServiceImpl extends ServiceImpl<MediaMapper, Media> implements
     @Override
     public VideoPlayVO getPlaySignatureBySectionId(Long sectionId) {
         // 1.根据sectionId查询媒课程信息
-        SectionInfoDTO sectionInfo = courseClient.sectionInfo(sectionId);
+        SectionInfoDTO sectionInfo = mediaPlayCache.getSectionInfo(sectionId);
+        AssertUtils.isNotNull(sectionInfo, MEDIA_NOT_EXISTS);
         Long courseId = sectionInfo.getCourseId();
+        Long userId = UserContext.getUser();
         // 2.查询用户课程表，是否是购买过的课程
-        Long lessonId = learningClient.isLessonValid(courseId);
-
-        if(lessonId != null){
-            // 2.1.是，查询媒资信息，直接获取签名
-            Media media = getById(sectionInfo.getMediaId());
-            AssertUtils.isNotNull(media, MEDIA_NOT_EXISTS);
-            // 1）获取签名
-            String signature =  mediaStorage.getPlaySignature(media.getFileId(), UserContext.getUser(), null);
-            // 2）返回
-            VideoPlayVO vo = new VideoPlayVO();
-            vo.setSignature(signature);
-            vo.setFileId(media.getFileId());
-            return vo;
-        }
-        // 2.2.否，判断课程章节是否免费
-        Boolean trailer = sectionInfo.getTrailer();
-        if(BooleanUtils.isFalse(trailer)) {
-            // 2.3.不免费，抛出异常
-            throw new ForbiddenException(FileErrorInfo.MEDIA_NOT_FREE);
+        Integer freeDuration = null;
+        if (!mediaPlayCache.isLessonValid(userId, courseId)) {
+            // 2.1.否，判断课程章节是否免费
+            Boolean trailer = sectionInfo.getTrailer();
+            if (BooleanUtils.isFalse(trailer)) {
+                // 2.2.不免费，抛出异常
+                throw new ForbiddenException(FileErrorInfo.MEDIA_NOT_FREE);
+            }
+            // 2.3.免费，只能试看
+            freeDuration = sectionInfo.getFreeDuration();
         }
-
-        // 3.免费，获取课程信息
-        Media media = getById(sectionInfo.getMediaId());
-        AssertUtils.isNotNull(media, MEDIA_NOT_EXISTS);
+        // 3.查询媒资信息
+        String fileId = mediaPlayCache.getFileId(sectionInfo.getMediaId());
         // 4.获取签名
-        String signature =  mediaStorage.getPlaySignature(
-                media.getFileId(), UserContext.getUser(), sectionInfo.getFreeDuration());
+        String signature = mediaPlayCache.getPlaySignature(fileId, userId, freeDuration);
         // 5.返回
         VideoPlayVO vo = new VideoPlayVO();
         vo.setSignature(signature);
-        vo.setFileId(media.getFileId());
+        vo.setFileId(fileId);
         return vo;
     }
 
@@ -0,0 +1,141 @@
+package com.tianji.media.task;
+
+import com.tencentcloudapi.common.Credential;
+import com.tencentcloudapi.common.exception.TencentCloudSDKException;
+import com.tencentcloudapi.vod.v20180717.VodClient;
+import com.tencentcloudapi.vod.v20180717.models.*;
+import com.tianji.media.config.TencentProperties;
+import com.tianji.media.domain.po.Media;
+import com.tianji.media.handler.VodEventHandler;
+import com.tianji.media.service.IMediaService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class PullEventTaskTest {
+
+    private static final int EVENT_NUM = 10_000;
+    private static final int MEDIA_NUM = 500;
+
+    private VodEventHandler handler;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        handler.shutdown();
+    }
+
+    @Test
+    void testPullAllEvents() {
+        // 1.本地模拟的VOD接口，每次最多返回16个事件
+        LocalVodClient vodClient = new LocalVodClient(EVENT_NUM, MEDIA_NUM, null);
+        // 2.记录每个媒资处理的事件顺序
+        Map<String, List<Integer>> handled = new ConcurrentHashMap<>();
+        IMediaService mediaService = mock(IMediaService.class);
+        doAnswer(invocation -> {
+            Media media = invocation.getArgument(0);
+            handled.computeIfAbsent(media.getFileId(), k -> Collections.synchronizedList(new ArrayList<>()))
+                    .add(media.getSize().intValue());
+            return null;
+        }).when(mediaService).updateMediaProcedureResult(any());
+        handler = new VodEventHandler(mediaService, new TencentProperties());
+        PullEventTask task = new PullEventTask(vodClient, handler);
+
+        task.pullEvent();
+
+        // 3.一次触发就拉取完所有事件，每个事件都被确认
+        assertEquals(EVENT_NUM, vodClient.confirmed.size());
+        assertEquals((EVENT_NUM + 15) / 16, vodClient.confirmTimes.get());
+        // 4.同一个媒资的事件按顺序处理
+        assertEquals(MEDIA_NUM, handled.size());
+        handled.values().forEach(seq -> {
+            List<Integer> sorted = new ArrayList<>(seq);
+            Collections.sort(sorted);
+            assertEquals(sorted, seq);
+        });
+    }
+
+    @Test
+    void testFailedEventNotConfirmed() {
+        // 1.第一个媒资的事件处理失败
+        LocalVodClient vodClient = new LocalVodClient(64, 8, null);
+        IMediaService mediaService = mock(IMediaService.class);
+        AtomicInteger failedMediaCalls = new AtomicInteger();
+        doAnswer(invocation -> {
+            Media media = invocation.getArgument(0);
+            if ("file-0".equals(media.getFileId())) {
+                failedMediaCalls.incrementAndGet();
+                throw new IllegalStateException("db error");
+            }
+            return null;
+        }).when(mediaService).updateMediaProcedureResult(any());
+        handler = new VodEventHandler(mediaService, new TencentProperties());
+        PullEventTask task = new PullEventTask(vodClient, handler);
+
+        task.pullEvent();
+
+        // 2.失败后停止本次拉取，失败的事件不确认
+        assertEquals(1, vodClient.confirmTimes.get());
+        assertEquals(14, vodClient.confirmed.size());
+        assertFalse(vodClient.confirmed.contains("handle-0"));
+        // 3.同一媒资在本批中后续的事件不再处理，也不确认
+        assertEquals(1, failedMediaCalls.get());
+        assertFalse(vodClient.confirmed.contains("handle-8"));
+    }
+
+    /**
+     * 本地模拟的VOD事件接口
+     */
+    private static class LocalVodClient extends VodClient {
+        private final Deque<EventContent> events = new ArrayDeque<>();
+        private final Set<String> confirmed = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger confirmTimes = new AtomicInteger();
+
+        LocalVodClient(int eventNum, int mediaNum, String region) {
+            super(new Credential("id", "key"), region);
+            for (int i = 0; i < eventNum; i++) {
+                ProcedureTask pt = new ProcedureTask();
+                pt.setStatus("FINISH");
+                pt.setFileId("file-" + (i % mediaNum));
+                MediaMetaData md = new MediaMetaData();
+                // 用大小记录事件序号，校验处理顺序
+                md.setSize((long) i);
+                md.setDuration(1F);
+                pt.setMetaData(md);
+                EventContent ec = new EventContent();
+                ec.setEventHandle("handle-" + i);
+                ec.setEventType("ProcedureStateChanged");
+                ec.setProcedureStateChangeEvent(pt);
+                events.add(ec);
+            }
+        }
+
+        @Override
+        public synchronized PullEventsResponse PullEvents(PullEventsRequest req) throws TencentCloudSDKException {
+            if (events.isEmpty()) {
+                throw new TencentCloudSDKException("no event");
+            }
+            List<EventContent> batch = new ArrayList<>(16);
+            while (batch.size() < 16 && !events.isEmpty()) {
+                batch.add(events.poll());
+            }
+            PullEventsResponse response = new PullEventsResponse();
+            response.setEventSet(batch.toArray(new EventContent[0]));
+            return response;
+        }
+
+        @Override
+        public ConfirmEventsResponse ConfirmEvents(ConfirmEventsRequest req) {
+            confirmTimes.incrementAndGet();
+            confirmed.addAll(Arrays.asList(req.getEventHandles()));
+            return new ConfirmEventsResponse();
+        }
+    }
+}
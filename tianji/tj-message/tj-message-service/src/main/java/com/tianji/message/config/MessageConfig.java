@@ -2,6 +2,7 @@ package com.tianji.message.config;
 
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.message.domain.po.MessageTemplate;
 import com.tianji.message.domain.po.SmsThirdPlatform;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -69,4 +70,16 @@ public class MessageConfig {
                 .expireAfterWrite(Duration.ofMinutes(30))
                 .build();
     }
+
+    /**
+     * 通知模板code到可用短信模板的缓存，短信模板已按平台优先级排序，管理端修改模板或平台后失效
+     */
+    @Bean
+    public Cache<String, List<MessageTemplate>> smsRouteCache(){
+        return Caffeine.newBuilder()
+                .initialCapacity(16)
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+    }
 }
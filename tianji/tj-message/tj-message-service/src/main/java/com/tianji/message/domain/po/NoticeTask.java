@@ -70,6 +70,11 @@ public class NoticeTask implements Serializable {
      */
     private Boolean finished;
 
+    /**
+     * 已处理的最后一个目标用户id，任务中断后从这里继续
+     */
+    private Long lastTargetId;
+
     /**
      * 创建人
      */
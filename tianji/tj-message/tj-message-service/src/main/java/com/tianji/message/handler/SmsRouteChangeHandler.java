@@ -0,0 +1,82 @@
+package com.tianji.message.handler;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.constants.MqConstants;
+import com.tianji.message.domain.po.MessageTemplate;
+import com.tianji.message.domain.po.SmsThirdPlatform;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * 短信模板路由缓存和短信平台缓存的失效通知
+ * <p>
+ * 1.通知模板、短信模板或平台变更后，在事务提交后清除本实例的缓存，并广播给其它实例
+ * 2.每个实例通过匿名队列收到广播，清除各自的缓存
+ * 3.广播发送失败时，其它实例的缓存最迟在过期(10分钟)后更新
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SmsRouteChangeHandler {
+
+    private final Cache<String, List<MessageTemplate>> smsRouteCache;
+    private final Cache<String, List<SmsThirdPlatform>> platformCache;
+    private final RabbitMqHelper mqHelper;
+
+    /**
+     * 短信模板路由发生变更，存在事务时在事务提交后生效
+     */
+    public void publishChange() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPublishChange();
+                }
+            });
+            return;
+        }
+        doPublishChange();
+    }
+
+    private void doPublishChange() {
+        // 1.清除本实例缓存
+        invalidateLocal();
+        // 2.通知其它实例
+        try {
+            mqHelper.send(MqConstants.Exchange.SMS_EXCHANGE, MqConstants.Key.SMS_ROUTE_CHANGED, System.currentTimeMillis());
+        } catch (Exception e) {
+            log.error("短信模板路由变更通知发送失败", e);
+        }
+    }
+
+    /**
+     * 匿名队列，每个实例都会收到路由变更消息
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(MqConstants.Exchange.SMS_EXCHANGE),
+            key = MqConstants.Key.SMS_ROUTE_CHANGED
+    ))
+    public void listenSmsRouteChanged(Message message) {
+        log.debug("监听到短信模板路由变更，清除本地缓存");
+        invalidateLocal();
+    }
+
+    private void invalidateLocal() {
+        // 路由由平台列表计算而来，两者一起失效
+        platformCache.invalidateAll();
+        smsRouteCache.invalidateAll();
+    }
+}
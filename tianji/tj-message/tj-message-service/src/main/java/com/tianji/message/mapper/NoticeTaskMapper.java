@@ -2,7 +2,9 @@ package com.tianji.message.mapper;
 
 import com.tianji.message.domain.po.NoticeTask;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -16,6 +18,18 @@ import java.util.List;
  */
 public interface NoticeTaskMapper extends BaseMapper<NoticeTask> {
 
-    @Select("SELECT user_id FROM notice_task_target WHERE task_id = #{task_id}")
-    List<Long> queryTaskTargetByTaskId(Long taskId);
+    /**
+     * 按目标用户id游标分批查询任务的目标用户
+     *
+     * @param taskId 任务id
+     * @param lastTargetId 上一批最后一个目标用户id，第一批传0
+     * @param size 每批数量
+     * @return 按id升序排列的目标用户id
+     */
+    @Select("SELECT target_id FROM notice_task_target WHERE task_id = #{taskId} AND target_id > #{lastTargetId} " +
+            "ORDER BY target_id LIMIT #{size}")
+    List<Long> queryTaskTargetAfter(@Param("taskId") Long taskId, @Param("lastTargetId") Long lastTargetId, @Param("size") int size);
+
+    @Update("UPDATE notice_task SET last_target_id = #{lastTargetId} WHERE id = #{taskId}")
+    int updateCheckpoint(@Param("taskId") Long taskId, @Param("lastTargetId") Long lastTargetId);
 }
@@ -9,10 +9,12 @@ import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.StringUtils;
 import com.tianji.message.domain.po.MessageTemplate;
+import com.tianji.message.handler.SmsRouteChangeHandler;
 import com.tianji.message.mapper.MessageTemplateMapper;
 import com.tianji.message.service.IMessageTemplateService;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.Resource;
 import java.util.List;
 
 /**
@@ -26,6 +28,9 @@ import java.util.List;
 @Service
 public class MessageTemplateServiceImpl extends ServiceImpl<MessageTemplateMapper, MessageTemplate> implements IMessageTemplateService {
 
+    @Resource
+    private SmsRouteChangeHandler smsRouteChangeHandler;
+
     @Override
     public List<MessageTemplate> queryByNoticeTemplateId(Long templateId) {
         return lambdaQuery()
@@ -39,6 +44,8 @@ public class MessageTemplateServiceImpl extends ServiceImpl<MessageTemplateMappe
         MessageTemplate messageTemplate = BeanUtils.copyBean(messageTemplateDTO, MessageTemplate.class);
         // 2.新增
         save(messageTemplate);
+        // 3.短信模板路由失效
+        smsRouteChangeHandler.publishChange();
         return messageTemplate.getId();
     }
 
@@ -48,6 +55,8 @@ public class MessageTemplateServiceImpl extends ServiceImpl<MessageTemplateMappe
         MessageTemplate messageTemplate = BeanUtils.copyBean(messageTemplateDTO, MessageTemplate.class);
         // 2.新增
         updateById(messageTemplate);
+        // 3.短信模板路由失效
+        smsRouteChangeHandler.publishChange();
     }
 
     @Override
@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.domain.dto.PageDTO;
+import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.common.utils.MarkedRunnable;
@@ -21,7 +22,7 @@ import com.tianji.message.service.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -40,12 +41,18 @@ import java.util.concurrent.Executor;
 @RequiredArgsConstructor
 public class NoticeTaskServiceImpl extends ServiceImpl<NoticeTaskMapper, NoticeTask> implements INoticeTaskService {
 
+    /**
+     * 每批处理的目标用户数量
+     */
+    private static final int TARGET_CHUNK_SIZE = 1000;
+
     private final Executor asyncNoticeExecutor;
     private final INoticeTemplateService noticeTemplateService;
     private final UserClient userClient;
     private final IPublicNoticeService publicNoticeService;
     private final IUserInboxService inboxService;
     private final ISmsService smsService;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public Long saveNoticeTask(NoticeTaskFormDTO noticeTaskFormDTO) {
@@ -63,7 +70,6 @@ public class NoticeTaskServiceImpl extends ServiceImpl<NoticeTaskMapper, NoticeT
     }
 
     @Override
-    @Transactional
     public void handleTask(NoticeTask task) {
         // 1.获取任务要发送的通知模板
         Long templateId = task.getTemplateId();
@@ -78,40 +84,74 @@ public class NoticeTaskServiceImpl extends ServiceImpl<NoticeTaskMapper, NoticeT
             log.error("通知任务无法执行，模板id【{}】，原因：{}", templateId, MessageErrorInfo.NOTICE_TEMPLATE_CANNOT_USE);
             return;
         }
-        // 2.获取通知对应的目标用户
-        List<UserDTO> users = null;
-        if (task.getPartial()) {
-            // 针对部分用户，需要查询用户信息
-            List<Long> userIds = getBaseMapper().queryTaskTargetByTaskId(task.getId());
-            if(CollUtils.isNotEmpty(userIds)){
-                users = userClient.queryUserByIds(userIds);
-            }
-        }
-
-        // 3.判断是全部用户还是部分
-        if (CollUtils.isEmpty(users)) {
-            // 3.1.全部用户，直接存入公告箱，用户查看消息时才拉取(pull mode)
+        // 2.判断是全部用户还是部分
+        boolean hasTarget = task.getPartial() && sendToTargetsByChunk(task, noticeTemplate);
+        if (!hasTarget) {
+            // 2.1.全部用户，直接存入公告箱，用户查看消息时才拉取(pull mode)
             publicNoticeService.saveNoticeOfTemplate(noticeTemplate);
-        }else{
-            // 3.2.部分用户，需要写入用户信箱
-            inboxService.saveNoticeToInbox(noticeTemplate, users);
-            // 3.3.判断是否需要发短信通知
-            if(noticeTemplate.getIsSmsTemplate()){
-                // 需要发送短信通知
-                smsService.sendMessageByTemplate(noticeTemplate, users);
-            }
         }
-        // 4.到这里说明任务完成，更新任务状态
+        // 3.到这里说明任务完成，更新任务状态，清除断点
         boolean shouldRepeat = task.getMaxTimes() > 0;
         lambdaUpdate()
                 .set(!shouldRepeat, NoticeTask::getFinished, true)
                 .set(shouldRepeat, NoticeTask::getPushTime, task.getPushTime().plusMinutes(task.getInterval()))
                 .setSql(shouldRepeat, "max_times = max_times - 1")
+                .set(NoticeTask::getLastTargetId, null)
                 .eq(NoticeTask::getId, task.getId())
                 .update();
         task = null;
     }
 
+    /**
+     * 按目标用户id游标分批发送通知，每批写入用户信箱后记录断点，任务中断后从断点继续
+     *
+     * @return 任务是否有目标用户
+     */
+    private boolean sendToTargetsByChunk(NoticeTask task, NoticeTemplate noticeTemplate) {
+        Long taskId = task.getId();
+        Long lastTargetId = task.getLastTargetId();
+        // 1.有断点说明上次执行中断，目标用户已经存在
+        boolean hasTarget = lastTargetId != null;
+        if (lastTargetId == null) {
+            lastTargetId = 0L;
+        } else {
+            log.info("通知任务从断点继续执行，任务id：{}，断点：{}", taskId, lastTargetId);
+        }
+        while (true) {
+            // 2.查询一批目标用户
+            List<Long> userIds = getBaseMapper().queryTaskTargetAfter(taskId, lastTargetId, TARGET_CHUNK_SIZE);
+            if (CollUtils.isEmpty(userIds)) {
+                break;
+            }
+            hasTarget = true;
+            Long chunkLastId = userIds.get(userIds.size() - 1);
+            // 3.查询这批用户信息，远程调用在事务之外
+            List<UserDTO> users = userClient.queryUserByIds(userIds);
+            if (users == null || users.size() < userIds.size()) {
+                // 用户服务降级时返回空集合，不能记录断点，否则这批用户永远收不到通知
+                throw new BizIllegalException("查询通知目标用户失败，任务id：" + taskId + "，断点：" + lastTargetId);
+            }
+            // 4.写入用户信箱，同一事务内记录断点，重新执行时不会重复写入
+            transactionTemplate.executeWithoutResult(status -> {
+                inboxService.saveNoticeToInbox(noticeTemplate, users);
+                getBaseMapper().updateCheckpoint(taskId, chunkLastId);
+            });
+            // 5.判断是否需要发短信通知，短信在信箱提交后发送，失败不影响后续批次
+            if (noticeTemplate.getIsSmsTemplate()) {
+                try {
+                    smsService.sendMessageByTemplate(noticeTemplate, users);
+                } catch (Exception e) {
+                    log.error("通知任务发送短信失败，任务id：{}，批次最后用户id：{}", taskId, chunkLastId, e);
+                }
+            }
+            lastTargetId = chunkLastId;
+            if (userIds.size() < TARGET_CHUNK_SIZE) {
+                break;
+            }
+        }
+        return hasTarget;
+    }
+
     @Override
     public void updateNoticeTask(NoticeTaskFormDTO noticeTaskFormDTO) {
         NoticeTask noticeTask = BeanUtils.copyBean(noticeTaskFormDTO, NoticeTask.class);
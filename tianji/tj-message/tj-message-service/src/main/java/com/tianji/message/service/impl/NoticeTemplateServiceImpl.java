@@ -15,6 +15,7 @@ import com.tianji.message.domain.po.MessageTemplate;
 import com.tianji.message.domain.po.NoticeTemplate;
 import com.tianji.message.domain.query.NoticeTemplatePageQuery;
 import com.tianji.message.enums.TemplateStatus;
+import com.tianji.message.handler.SmsRouteChangeHandler;
 import com.tianji.message.mapper.NoticeTemplateMapper;
 import com.tianji.message.service.IMessageTemplateService;
 import com.tianji.message.service.INoticeTemplateService;
@@ -40,6 +41,7 @@ import java.util.stream.Collectors;
 public class NoticeTemplateServiceImpl extends ServiceImpl<NoticeTemplateMapper, NoticeTemplate> implements INoticeTemplateService {
 
     private final IMessageTemplateService messageTemplateService;
+    private final SmsRouteChangeHandler smsRouteChangeHandler;
 
     @Override
     @Transactional
@@ -78,6 +80,8 @@ public class NoticeTemplateServiceImpl extends ServiceImpl<NoticeTemplateMapper,
         // 2.首先更新通知模板数据
         NoticeTemplate noticeTemplate = BeanUtils.copyBean(noticeTemplateDTO, NoticeTemplate.class);
         updateById(noticeTemplate);
+        // 2.1.通知模板的状态、短信模板都可能变化，事务提交后短信模板路由失效
+        smsRouteChangeHandler.publishChange();
         // 3.是否需要删除短信模板
         List<Long> deleteMessageTemplates = noticeTemplateDTO.getDeleteMessageTemplates();
         if(CollUtils.isNotEmpty(deleteMessageTemplates)){
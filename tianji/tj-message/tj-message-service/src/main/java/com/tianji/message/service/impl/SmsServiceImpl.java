@@ -1,5 +1,6 @@
 package com.tianji.message.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
 import com.tianji.api.dto.sms.SmsInfoDTO;
 import com.tianji.api.dto.user.UserDTO;
 import com.tianji.common.exceptions.CommonException;
@@ -13,13 +14,14 @@ import com.tianji.message.service.IMessageTemplateService;
 import com.tianji.message.service.INoticeTemplateService;
 import com.tianji.message.service.ISmsService;
 import com.tianji.message.service.ISmsThirdPlatformService;
-import com.tianji.message.thirdparty.ISmsHandler;
+import com.tianji.message.thirdparty.SmsDispatcher;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -32,7 +34,8 @@ import java.util.stream.Collectors;
 public class SmsServiceImpl implements ISmsService {
 
     @Resource
-    private Map<String, ISmsHandler> smsHandlers;
+    private Cache<String, List<MessageTemplate>> smsRouteCache;
+    private final SmsDispatcher smsDispatcher;
     private final Executor asyncSmsExecutor;
     private final ISmsThirdPlatformService platformService;
     private final INoticeTemplateService noticeTemplateService;
@@ -52,31 +55,26 @@ public class SmsServiceImpl implements ISmsService {
 
     @Override
     public void sendMessage(SmsInfoDTO smsInfoDTO) {
+        // 1.查询可用的短信模板，已按照平台优先级排序
+        List<MessageTemplate> sortedTemplates = smsRouteCache.get(smsInfoDTO.getTemplateCode(), this::loadMessageTemplates);
+        // 2.分批发送短信，平台失败时自动切换
+        smsDispatcher.dispatch(smsInfoDTO, sortedTemplates);
+    }
+
+    private List<MessageTemplate> loadMessageTemplates(String code) {
         // 1.获取通知模板信息
-        String code = smsInfoDTO.getTemplateCode();
         NoticeTemplate noticeTemplate = noticeTemplateService.queryByCode(code);
         AssertUtils.isNotNull(noticeTemplate, MessageErrorInfo.NOTICE_TEMPLATE_NOT_EXISTS);
         AssertUtils.isTrue(noticeTemplate.getIsSmsTemplate(), MessageErrorInfo.NOTICE_NOT_MESSAGE_TEMPLATE);
         // 2.查询短信模板
         List<MessageTemplate> messageTemplates = messageTemplateService.queryByNoticeTemplateId(noticeTemplate.getId());
         AssertUtils.isNotEmpty(messageTemplates, MessageErrorInfo.NOTICE_NOT_MESSAGE_TEMPLATE);
-
         // 3.按照平台优先级来排序并筛选模板
-        List<MessageTemplate> sortedTemplates =  sortMessageTemplate(messageTemplates);
+        List<MessageTemplate> sortedTemplates = sortMessageTemplate(messageTemplates);
         if (sortedTemplates.isEmpty()) {
             throw new CommonException(MessageErrorInfo.NO_SUITABLE_TEMPLATE);
         }
-        // 4.基于模板发送短信
-        for (MessageTemplate template : sortedTemplates) {
-            try {
-                ISmsHandler smsHandler = smsHandlers.get(template.getPlatformCode());
-                smsHandler.send(smsInfoDTO, template);
-                return;
-            } catch (Exception e) {
-                log.error("短信发送异常，平台{}, 原因{}, 稍后重试", template.getPlatformCode(), e.getMessage(), e);
-            }
-        }
-        log.error("短信发送失败，所有平台都已尝试，放弃发送");
+        return sortedTemplates;
     }
 
     private List<MessageTemplate> sortMessageTemplate(List<MessageTemplate> messageTemplates) {
@@ -94,7 +92,7 @@ public class SmsServiceImpl implements ISmsService {
                 list.add(mt);
             }
         }
-        return list;
+        return Collections.unmodifiableList(list);
     }
 
     @Override
@@ -10,6 +10,7 @@ import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.StringUtils;
 import com.tianji.message.domain.po.SmsThirdPlatform;
+import com.tianji.message.handler.SmsRouteChangeHandler;
 import com.tianji.message.mapper.SmsThirdPlatformMapper;
 import com.tianji.message.service.ISmsThirdPlatformService;
 import org.springframework.stereotype.Service;
@@ -31,6 +32,9 @@ public class SmsThirdPlatformServiceImpl extends ServiceImpl<SmsThirdPlatformMap
     @Resource
     private Cache<String, List<SmsThirdPlatform>> platformCache;
 
+    @Resource
+    private SmsRouteChangeHandler smsRouteChangeHandler;
+
     @Override
     public List<SmsThirdPlatform> queryAllPlatform(){
         return platformCache.get("PLATFORM", key -> lambdaQuery().orderByAsc(SmsThirdPlatform::getPriority).list());
@@ -40,12 +44,19 @@ public class SmsThirdPlatformServiceImpl extends ServiceImpl<SmsThirdPlatformMap
     public Long saveSmsThirdPlatform(SmsThirdPlatformFormDTO thirdPlatformDTO) {
         SmsThirdPlatform thirdPlatform = BeanUtils.copyBean(thirdPlatformDTO, SmsThirdPlatform.class);
         save(thirdPlatform);
+        invalidateCache();
         return thirdPlatform.getId();
     }
 
     @Override
     public void updateSmsThirdPlatform(SmsThirdPlatformFormDTO thirdPlatformDTO) {
         updateById(BeanUtils.copyBean(thirdPlatformDTO, SmsThirdPlatform.class));
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        // 平台优先级或状态变化，所有实例的平台缓存和短信模板路由都要重新计算
+        smsRouteChangeHandler.publishChange();
     }
 
     @Override
@@ -9,9 +9,21 @@ import com.tianji.message.domain.po.MessageTemplate;
 public interface ISmsHandler {
 
     /**
-     * 发送短信
+     * 发送短信，发送失败时抛出异常，由调用方切换到其它平台
      */
     void send(SmsInfoDTO platformSmsInfoDTO, MessageTemplate template);
 
+    /**
+     * 单次请求最多支持的手机号数量
+     */
+    default int maxBatchSize() {
+        return 100;
+    }
 
+    /**
+     * 同时进行中的请求数量上限
+     */
+    default int maxConcurrency() {
+        return 10;
+    }
 }
@@ -0,0 +1,209 @@
+package com.tianji.message.thirdparty;
+
+import com.tianji.api.dto.sms.SmsInfoDTO;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.message.domain.po.MessageTemplate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 短信分发器。
+ * <p>
+ * 把收件人按平台单次请求的上限分批，多个批次并行发送，每个平台的并发请求数受限。
+ * 平台按优先级排序，连续失败的平台会被暂时熔断，熔断期间优先使用其它健康的平台，
+ * 某个批次失败后换下一个平台重试，已经发送成功的部分不再重试。
+ */
+@Slf4j
+@Component
+public class SmsDispatcher {
+
+    // 连续失败多少次后熔断
+    private static final int FAILURE_THRESHOLD = 5;
+    // 熔断时长，毫秒
+    private static final long OPEN_MILLIS = 30_000;
+    // 分发线程数
+    private static final int DISPATCH_THREADS = 32;
+
+    private final Map<String, ISmsHandler> smsHandlers;
+    private final Map<String, PlatformState> states = new ConcurrentHashMap<>();
+    private final ExecutorService dispatchExecutor;
+
+    public SmsDispatcher(Map<String, ISmsHandler> smsHandlers) {
+        this.smsHandlers = smsHandlers;
+        AtomicInteger index = new AtomicInteger();
+        this.dispatchExecutor = new ThreadPoolExecutor(DISPATCH_THREADS, DISPATCH_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(DISPATCH_THREADS * 4),
+                r -> new Thread(r, "sms-dispatcher-" + index.incrementAndGet()),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatchExecutor.shutdown();
+    }
+
+    /**
+     * 分批并行发送短信，等待所有批次结束
+     *
+     * @param smsInfoDTO 短信内容和收件人
+     * @param templates 可用的短信模板，已按平台优先级排序
+     * @return 所有平台都发送失败的手机号数量
+     */
+    public int dispatch(SmsInfoDTO smsInfoDTO, List<MessageTemplate> templates) {
+        // 1.收件人去重
+        Set<String> phones = new LinkedHashSet<>();
+        if (smsInfoDTO.getPhones() != null) {
+            smsInfoDTO.getPhones().forEach(phones::add);
+        }
+        if (phones.isEmpty() || CollUtils.isEmpty(templates)) {
+            return 0;
+        }
+        // 2.按首选平台的单次上限分批
+        int batchSize = handlerOf(templates.get(0)).maxBatchSize();
+        List<CompletableFuture<Integer>> futures = new ArrayList<>(phones.size() / batchSize + 1);
+        List<String> batch = new ArrayList<>(batchSize);
+        for (String phone : phones) {
+            batch.add(phone);
+            if (batch.size() >= batchSize) {
+                futures.add(submit(smsInfoDTO, batch, templates));
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            futures.add(submit(smsInfoDTO, batch, templates));
+        }
+        // 3.等待所有批次结束，统计失败数量
+        int failed = 0;
+        for (CompletableFuture<Integer> future : futures) {
+            failed += future.join();
+        }
+        if (failed > 0) {
+            log.error("短信发送失败，所有平台都已尝试，放弃发送，数量：{}", failed);
+        }
+        return failed;
+    }
+
+    private CompletableFuture<Integer> submit(SmsInfoDTO smsInfoDTO, List<String> phones, List<MessageTemplate> templates) {
+        return CompletableFuture.supplyAsync(() -> sendBatch(smsInfoDTO, phones, templates), dispatchExecutor);
+    }
+
+    /**
+     * 发送一个批次，按健康状况依次尝试各个平台
+     *
+     * @return 发送失败的手机号数量
+     */
+    private int sendBatch(SmsInfoDTO smsInfoDTO, List<String> phones, List<MessageTemplate> templates) {
+        // 尚未发送成功的手机号，每个平台只重试上一个平台没有发出去的部分
+        List<String> pending = phones;
+        for (MessageTemplate template : route(templates)) {
+            ISmsHandler handler = handlerOf(template);
+            if (handler == null) {
+                continue;
+            }
+            PlatformState state = stateOf(template.getPlatformCode(), handler);
+            // 1.超过该平台单次上限的批次，拆分后逐个发送
+            List<List<String>> parts = CollUtils.split(pending, handler.maxBatchSize());
+            List<String> failed = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                if (!send(smsInfoDTO, parts.get(i), template, handler, state)) {
+                    // 2.失败的部分和还没发送的部分交给下一个平台
+                    for (int j = i; j < parts.size(); j++) {
+                        failed.addAll(parts.get(j));
+                    }
+                    break;
+                }
+            }
+            if (failed.isEmpty()) {
+                return 0;
+            }
+            pending = failed;
+        }
+        return pending.size();
+    }
+
+    private boolean send(SmsInfoDTO smsInfoDTO, List<String> phones, MessageTemplate template,
+                         ISmsHandler handler, PlatformState state) {
+        SmsInfoDTO info = new SmsInfoDTO();
+        info.setTemplateCode(smsInfoDTO.getTemplateCode());
+        info.setTemplateParams(smsInfoDTO.getTemplateParams());
+        info.setPhones(phones);
+        try {
+            // 1.获取平台并发许可
+            state.permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        try {
+            // 2.发送
+            handler.send(info, template);
+            state.success();
+            return true;
+        } catch (Exception e) {
+            state.failure();
+            log.error("短信发送异常，平台{}, 原因{}, 尝试其它平台", template.getPlatformCode(), e.getMessage(), e);
+            return false;
+        } finally {
+            state.permits.release();
+        }
+    }
+
+    /**
+     * 健康的平台按优先级在前，熔断中的平台排在最后兜底
+     */
+    private List<MessageTemplate> route(List<MessageTemplate> templates) {
+        long now = System.currentTimeMillis();
+        List<MessageTemplate> healthy = new ArrayList<>(templates.size());
+        List<MessageTemplate> open = new ArrayList<>(0);
+        for (MessageTemplate template : templates) {
+            PlatformState state = states.get(template.getPlatformCode());
+            if (state == null || state.isHealthy(now)) {
+                healthy.add(template);
+            } else {
+                open.add(template);
+            }
+        }
+        healthy.addAll(open);
+        return healthy;
+    }
+
+    private ISmsHandler handlerOf(MessageTemplate template) {
+        return smsHandlers.get(template.getPlatformCode());
+    }
+
+    private PlatformState stateOf(String platformCode, ISmsHandler handler) {
+        return states.computeIfAbsent(platformCode, k -> new PlatformState(handler.maxConcurrency()));
+    }
+
+    /**
+     * 平台的并发许可和健康状况
+     */
+    private static class PlatformState {
+        private final Semaphore permits;
+        private final AtomicInteger failures = new AtomicInteger();
+        private volatile long openUntil;
+
+        PlatformState(int concurrency) {
+            this.permits = new Semaphore(concurrency);
+        }
+
+        boolean isHealthy(long now) {
+            return now >= openUntil;
+        }
+
+        void success() {
+            failures.set(0);
+        }
+
+        void failure() {
+            if (failures.incrementAndGet() >= FAILURE_THRESHOLD) {
+                openUntil = System.currentTimeMillis() + OPEN_MILLIS;
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.aliyun.sdk.service.dysmsapi20170525.models.SendSmsRequest;
 import com.aliyun.sdk.service.dysmsapi20170525.models.SendSmsResponse;
 import com.aliyun.sdk.service.dysmsapi20170525.models.SendSmsResponseBody;
 import com.tianji.api.dto.sms.SmsInfoDTO;
+import com.tianji.common.exceptions.CommonException;
 import com.tianji.common.utils.JsonUtils;
 import com.tianji.common.utils.StringUtils;
 import com.tianji.message.domain.po.MessageTemplate;
@@ -13,13 +14,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 @Service("aliYun")
 @Slf4j
 @RequiredArgsConstructor
 public class AliSmsHandler implements ISmsHandler {
 
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
     private final AsyncClient asyncClient;
 
     @Override
@@ -33,22 +38,33 @@ public class AliSmsHandler implements ISmsHandler {
                 .signName(template.getSignName())
                 .templateParam(JsonUtils.toJsonStr(platformSmsInfoDTO.getTemplateParams()))
                 .build();
-        // 2.发送短信验证码
-        CompletableFuture<SendSmsResponse> responseFuture = asyncClient.sendSms(request);
-        log.info("aliYun平台，短信发送请求发出 ...");
+        // 2.发送短信，等待结果，失败时抛出异常由调用方切换平台
+        SendSmsResponse response;
+        try {
+            response = asyncClient.sendSms(request).get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommonException("aliYun短信发送被中断", e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new CommonException("aliYun短信发送异常", e);
+        }
         // 3.结果处理
-        responseFuture.thenAccept(response -> {
-            SendSmsResponseBody body = response.getBody();
-            String code = body.getCode();
-            if("OK".equals(code)){
-                log.debug("aliYun短信发送成功，手机号:{}", phones);
-            }else{
-                log.error("aliYun短信发送失败，code：{}， 原因：{}", code, body.getMessage());
-            }
-        });
-        responseFuture.exceptionally(e -> {
-            log.error("aliYun短信发送异常", e);
-            return null;
-        });
+        SendSmsResponseBody body = response.getBody();
+        String code = body.getCode();
+        if (!"OK".equals(code)) {
+            throw new CommonException("aliYun短信发送失败，code：" + code + "，原因：" + body.getMessage());
+        }
+        log.debug("aliYun短信发送成功，手机号:{}", phones);
+    }
+
+    @Override
+    public int maxBatchSize() {
+        // 阿里云单次最多支持1000个手机号
+        return 1000;
+    }
+
+    @Override
+    public int maxConcurrency() {
+        return 20;
     }
 }
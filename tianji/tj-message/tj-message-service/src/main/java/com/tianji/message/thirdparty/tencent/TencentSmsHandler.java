@@ -15,4 +15,10 @@ public class TencentSmsHandler implements ISmsHandler {
         log.info("tencent平台，短信发送成功 ...");
         log.info("platformSmsInfoDTO：{}", platformSmsInfoDTO);
     }
+
+    @Override
+    public int maxBatchSize() {
+        // 腾讯云单次最多支持200个手机号
+        return 200;
+    }
 }
@@ -0,0 +1,188 @@
+package com.tianji.message.service.impl;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.tianji.api.client.user.UserClient;
+import com.tianji.api.dto.user.UserDTO;
+import com.tianji.common.exceptions.BizIllegalException;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.message.domain.po.NoticeTask;
+import com.tianji.message.domain.po.NoticeTemplate;
+import com.tianji.message.mapper.NoticeTaskMapper;
+import com.tianji.message.service.*;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class NoticeTaskServiceImplTest {
+
+    private static final long TARGET_NUM = 2_000_000;
+    private static final long CRASH_AT = 1_000_001;
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), NoticeTask.class);
+    }
+
+    @Test
+    void testChunkedAndResumable() {
+        // 1.目标用户id为1~200万，按游标分批返回，不在内存中保存全部目标
+        AtomicLong checkpoint = new AtomicLong();
+        NoticeTaskMapper mapper = targetMapper(TARGET_NUM, checkpoint);
+        // 2.用户服务在第一次查询到指定用户时失败，模拟任务中断
+        UserClient userClient = mock(UserClient.class, withSettings().stubOnly());
+        boolean[] crashed = new boolean[1];
+        when(userClient.queryUserByIds(any())).thenAnswer(invocation -> {
+            Iterable<Long> ids = invocation.getArgument(0);
+            List<UserDTO> users = new ArrayList<>();
+            for (Long id : ids) {
+                if (id == CRASH_AT && !crashed[0]) {
+                    crashed[0] = true;
+                    throw new IllegalStateException("user service unavailable");
+                }
+                UserDTO user = new UserDTO();
+                user.setId(id);
+                user.setCellPhone(String.valueOf(13000000000L + id));
+                users.add(user);
+            }
+            return users;
+        });
+        // 3.记录写入信箱和发送短信的数量
+        LongAdder inboxRows = new LongAdder();
+        LongAdder smsUsers = new LongAdder();
+        int[] maxChunk = new int[1];
+        IUserInboxService inboxService = mock(IUserInboxService.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            List<UserDTO> users = invocation.getArgument(1);
+            inboxRows.add(users.size());
+            maxChunk[0] = Math.max(maxChunk[0], users.size());
+            return null;
+        }).when(inboxService).saveNoticeToInbox(any(), anyList());
+        ISmsService smsService = mock(ISmsService.class, withSettings().stubOnly());
+        doAnswer(invocation -> {
+            smsUsers.add(invocation.<List<UserDTO>>getArgument(1).size());
+            return null;
+        }).when(smsService).sendMessageByTemplate(any(), anyList());
+
+        IPublicNoticeService publicNoticeService = mock(IPublicNoticeService.class);
+        NoticeTaskServiceImpl service = newService(mapper, userClient, publicNoticeService, inboxService, smsService);
+        NoticeTask task = newTask();
+
+        // 4.第一次执行中断，断点停在中断批次之前
+        assertThrows(IllegalStateException.class, () -> service.handleTask(task));
+        assertEquals(CRASH_AT - 1, checkpoint.get());
+        assertEquals(CRASH_AT - 1, inboxRows.sum());
+
+        // 5.从断点继续执行，每个目标用户只写入一次
+        task.setLastTargetId(checkpoint.get());
+        service.handleTask(task);
+
+        assertEquals(TARGET_NUM, inboxRows.sum());
+        assertEquals(TARGET_NUM, smsUsers.sum());
+        assertEquals(TARGET_NUM, checkpoint.get());
+        assertTrue(maxChunk[0] <= 1000);
+        verify(publicNoticeService, never()).saveNoticeOfTemplate(any());
+    }
+
+    @Test
+    void testUserServiceFallbackKeepsCheckpoint() {
+        // 1.2500个目标用户，用户服务在第二批降级，返回空集合
+        AtomicLong checkpoint = new AtomicLong();
+        NoticeTaskMapper mapper = targetMapper(2500, checkpoint);
+        UserClient userClient = mock(UserClient.class);
+        int[] calls = new int[1];
+        when(userClient.queryUserByIds(any())).thenAnswer(invocation -> {
+            if (++calls[0] == 2) {
+                return CollUtils.emptyList();
+            }
+            List<UserDTO> users = new ArrayList<>();
+            for (Long id : invocation.<Iterable<Long>>getArgument(0)) {
+                UserDTO user = new UserDTO();
+                user.setId(id);
+                users.add(user);
+            }
+            return users;
+        });
+        LongAdder inboxRows = new LongAdder();
+        IUserInboxService inboxService = mock(IUserInboxService.class);
+        doAnswer(invocation -> {
+            inboxRows.add(invocation.<List<UserDTO>>getArgument(1).size());
+            return null;
+        }).when(inboxService).saveNoticeToInbox(any(), anyList());
+        NoticeTaskServiceImpl service = newService(mapper, userClient, mock(IPublicNoticeService.class), inboxService, mock(ISmsService.class));
+        NoticeTask task = newTask();
+
+        // 2.降级的批次抛出异常，断点停在第一批末尾，不会越过未收到通知的用户
+        assertThrows(BizIllegalException.class, () -> service.handleTask(task));
+        assertEquals(1000, checkpoint.get());
+        assertEquals(1000, inboxRows.sum());
+
+        // 3.用户服务恢复后从断点继续，所有用户都收到通知
+        task.setLastTargetId(checkpoint.get());
+        service.handleTask(task);
+        assertEquals(2500, checkpoint.get());
+        assertEquals(2500, inboxRows.sum());
+    }
+
+    /**
+     * 目标用户id为1~total，按游标分批返回，记录断点。
+     * 传递大批量参数的mock不记录调用，避免测试本身占用堆内存
+     */
+    private static NoticeTaskMapper targetMapper(long total, AtomicLong checkpoint) {
+        NoticeTaskMapper mapper = mock(NoticeTaskMapper.class, withSettings().stubOnly());
+        when(mapper.queryTaskTargetAfter(anyLong(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long last = invocation.getArgument(1);
+            int size = invocation.getArgument(2);
+            List<Long> ids = new ArrayList<>(size);
+            for (long id = last + 1; id <= total && ids.size() < size; id++) {
+                ids.add(id);
+            }
+            return ids;
+        });
+        when(mapper.updateCheckpoint(anyLong(), anyLong())).thenAnswer(invocation -> {
+            checkpoint.set(invocation.getArgument(1));
+            return 1;
+        });
+        return mapper;
+    }
+
+    private static NoticeTaskServiceImpl newService(
+            NoticeTaskMapper mapper, UserClient userClient, IPublicNoticeService publicNoticeService,
+            IUserInboxService inboxService, ISmsService smsService) {
+        INoticeTemplateService templateService = mock(INoticeTemplateService.class);
+        NoticeTemplate template = new NoticeTemplate();
+        template.setId(1L);
+        template.setStatus(1);
+        template.setIsSmsTemplate(true);
+        when(templateService.getById(1L)).thenReturn(template);
+        NoticeTaskServiceImpl service = new NoticeTaskServiceImpl(Runnable::run, templateService, userClient,
+                publicNoticeService, inboxService, smsService,
+                new TransactionTemplate(mock(PlatformTransactionManager.class)));
+        ReflectionTestUtils.setField(service, "baseMapper", mapper);
+        return service;
+    }
+
+    private static NoticeTask newTask() {
+        NoticeTask task = new NoticeTask();
+        task.setId(1L);
+        task.setTemplateId(1L);
+        task.setPartial(true);
+        task.setMaxTimes(0);
+        task.setInterval(60);
+        task.setPushTime(LocalDateTime.now());
+        return task;
+    }
+}
@@ -0,0 +1,181 @@
+package com.tianji.message.thirdparty;
+
+import com.tianji.api.dto.sms.SmsInfoDTO;
+import com.tianji.message.domain.po.MessageTemplate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SmsDispatcherTest {
+
+    private static final int CAMPAIGN_SIZE = 500_000;
+
+    private SmsDispatcher dispatcher;
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void testCampaignThroughput() {
+        // 1.本地模拟的平台，每次请求耗时20ms
+        StubSmsHandler ali = new StubSmsHandler(1000, 20, 20);
+        StubSmsHandler tencent = new StubSmsHandler(200, 10, 20);
+        dispatcher = new SmsDispatcher(handlers(ali, tencent));
+
+        int failed = dispatcher.dispatch(campaign(CAMPAIGN_SIZE), templates("aliYun", "tencent"));
+
+        // 2.全部由首选平台发送，每批不超过平台上限，并发不超过平台上限
+        assertEquals(0, failed);
+        assertEquals(CAMPAIGN_SIZE, ali.sent.sum());
+        assertEquals(0, tencent.sent.sum());
+        assertEquals(CAMPAIGN_SIZE / 1000, ali.requests.get());
+        assertTrue(ali.maxBatch <= 1000);
+        assertTrue(ali.maxInFlight.get() <= 20);
+    }
+
+    @Test
+    void testFailoverAndCircuitOpen() {
+        // 1.首选平台全部失败
+        StubSmsHandler ali = new StubSmsHandler(1000, 20, 0);
+        ali.failing = true;
+        StubSmsHandler tencent = new StubSmsHandler(200, 10, 0);
+        dispatcher = new SmsDispatcher(handlers(ali, tencent));
+
+        int failed = dispatcher.dispatch(campaign(20_000), templates("aliYun", "tencent"));
+
+        // 2.失败的批次按备用平台的上限重新拆分发送
+        assertEquals(0, failed);
+        assertEquals(20_000, tencent.sent.sum());
+        assertTrue(tencent.maxBatch <= 200);
+        // 3.首选平台连续失败后被熔断，后续批次直接走备用平台
+        int aliRequests = ali.requests.get();
+        dispatcher.dispatch(campaign(20_000), templates("aliYun", "tencent"));
+        assertEquals(aliRequests, ali.requests.get());
+        assertEquals(40_000, tencent.sent.sum());
+    }
+
+    @Test
+    void testRetryOnlyFailedParts() {
+        // 1.首选平台失败，备用平台单次上限200，1000个号码拆成5次发送，第3次失败
+        StubSmsHandler ali = new StubSmsHandler(1000, 20, 0);
+        ali.failing = true;
+        StubSmsHandler tencent = new StubSmsHandler(200, 1, 0);
+        tencent.failFrom = 3;
+        StubSmsHandler backup = new StubSmsHandler(1000, 1, 0);
+        Map<String, ISmsHandler> handlers = handlers(ali, tencent);
+        handlers.put("backup", backup);
+        dispatcher = new SmsDispatcher(handlers);
+
+        int failed = dispatcher.dispatch(campaign(1000), templates("aliYun", "tencent", "backup"));
+
+        // 2.已经发出的400个号码不会重发，只有失败和未发送的600个交给下一个平台
+        assertEquals(0, failed);
+        assertEquals(400, tencent.sent.sum());
+        assertEquals(600, backup.sent.sum());
+        assertEquals(1, backup.requests.get());
+    }
+
+    @Test
+    void testAllPlatformsFailed() {
+        StubSmsHandler ali = new StubSmsHandler(1000, 20, 0);
+        ali.failing = true;
+        dispatcher = new SmsDispatcher(handlers(ali, null));
+
+        assertEquals(1500, dispatcher.dispatch(campaign(1500), templates("aliYun")));
+    }
+
+    private static Map<String, ISmsHandler> handlers(StubSmsHandler ali, StubSmsHandler tencent) {
+        Map<String, ISmsHandler> handlers = new HashMap<>();
+        handlers.put("aliYun", ali);
+        if (tencent != null) {
+            handlers.put("tencent", tencent);
+        }
+        return handlers;
+    }
+
+    private static SmsInfoDTO campaign(int size) {
+        List<String> phones = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            phones.add(String.valueOf(13000000000L + i));
+        }
+        SmsInfoDTO info = new SmsInfoDTO();
+        info.setTemplateCode("NOTICE");
+        info.setPhones(phones);
+        return info;
+    }
+
+    private static List<MessageTemplate> templates(String... platformCodes) {
+        List<MessageTemplate> list = new ArrayList<>(platformCodes.length);
+        for (String code : platformCodes) {
+            MessageTemplate template = new MessageTemplate();
+            template.setPlatformCode(code);
+            list.add(template);
+        }
+        return list;
+    }
+
+    /**
+     * 本地模拟的短信平台
+     */
+    private static class StubSmsHandler implements ISmsHandler {
+        private final int maxBatchSize;
+        private final int maxConcurrency;
+        private final long latencyMillis;
+        private final LongAdder sent = new LongAdder();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private volatile int maxBatch;
+        private volatile boolean failing;
+        // 从第几次请求开始失败，0表示不失败
+        private volatile int failFrom;
+
+        StubSmsHandler(int maxBatchSize, int maxConcurrency, long latencyMillis) {
+            this.maxBatchSize = maxBatchSize;
+            this.maxConcurrency = maxConcurrency;
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public void send(SmsInfoDTO platformSmsInfoDTO, MessageTemplate template) {
+            int request = requests.incrementAndGet();
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+                if (failing || (failFrom > 0 && request >= failFrom)) {
+                    throw new IllegalStateException("stub platform unavailable");
+                }
+                int size = 0;
+                for (String ignored : platformSmsInfoDTO.getPhones()) {
+                    size++;
+                }
+                maxBatch = Math.max(maxBatch, size);
+                sent.add(size);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public int maxBatchSize() {
+            return maxBatchSize;
+        }
+
+        @Override
+        public int maxConcurrency() {
+            return maxConcurrency;
+        }
+    }
+}
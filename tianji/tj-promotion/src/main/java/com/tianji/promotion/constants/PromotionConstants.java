@@ -5,7 +5,11 @@ public interface PromotionConstants {
     String COUPON_CODE_MAP_KEY = "coupon:code:map";
     String COUPON_CACHE_KEY_PREFIX = "prs:coupon:";
     String USER_COUPON_CACHE_KEY_PREFIX = "prs:user:coupon:";
-    String COUPON_RANGE_KEY = "coupon:code:range";
+    /**
+     * 兑换码区间索引，每个区间定长：起始序列号(10位) + 结束序列号(10位) + 优惠券id(19位)，按起始序列号有序排列
+     */
+    String COUPON_RANGE_KEY = "coupon:code:ranges";
+    int CODE_RANGE_ENTRY_SIZE = 39;
 
     String[] RECEIVE_COUPON_ERROR_MSG = {
             "活动未开始",
@@ -0,0 +1,19 @@
+package com.tianji.promotion.domain.dto;
+
+import lombok.Data;
+
+@Data
+public class CodeRangeDTO {
+    /**
+     * 优惠券id
+     */
+    private Long couponId;
+    /**
+     * 兑换码的最小序列号
+     */
+    private Long minSerialNum;
+    /**
+     * 兑换码的最大序列号
+     */
+    private Long maxSerialNum;
+}
@@ -0,0 +1,24 @@
+package com.tianji.promotion.handler;
+
+import com.tianji.promotion.service.IExchangeCodeService;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ExchangeCodeJobHandler {
+
+    private final IExchangeCodeService codeService;
+
+    /**
+     * 按数据库重建兑换码区间索引，用于首次上线或Redis数据丢失后恢复
+     */
+    @XxlJob("codeRangeIndexJobHandler")
+    public void rebuildCodeRangeIndex() {
+        log.info("开始重建兑换码区间索引");
+        codeService.rebuildCodeRangeIndex();
+    }
+}
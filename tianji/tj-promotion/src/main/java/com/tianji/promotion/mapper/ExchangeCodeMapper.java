@@ -1,8 +1,11 @@
 package com.tianji.promotion.mapper;
 
+import com.tianji.promotion.domain.dto.CodeRangeDTO;
 import com.tianji.promotion.domain.po.ExchangeCode;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 
+import java.util.List;
+
 /**
  * <p>
  * 兑换码 Mapper 接口
@@ -12,4 +15,8 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface ExchangeCodeMapper extends BaseMapper<ExchangeCode> {
 
+    /**
+     * 按优惠券统计兑换码序列号区间，按最小序列号排序
+     */
+    List<CodeRangeDTO> queryCodeRanges();
 }
@@ -22,4 +22,6 @@ public interface IExchangeCodeService extends IService<ExchangeCode> {
     PageDTO<ExchangeCodeVO> queryCodePage(CodeQuery query);
 
     Long exchangeTargetId(long serialNum);
+
+    void rebuildCodeRangeIndex();
 }
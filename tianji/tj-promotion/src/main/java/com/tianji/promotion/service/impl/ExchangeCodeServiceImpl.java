@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.StringUtils;
+import com.tianji.promotion.domain.dto.CodeRangeDTO;
 import com.tianji.promotion.domain.po.Coupon;
 import com.tianji.promotion.domain.po.ExchangeCode;
 import com.tianji.promotion.domain.query.CodeQuery;
@@ -11,14 +13,15 @@ import com.tianji.promotion.domain.vo.ExchangeCodeVO;
 import com.tianji.promotion.mapper.ExchangeCodeMapper;
 import com.tianji.promotion.service.IExchangeCodeService;
 import com.tianji.promotion.utils.CodeUtil;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.redis.core.BoundValueOperations;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import static com.tianji.promotion.constants.PromotionConstants.*;
 
@@ -35,6 +38,11 @@ public class ExchangeCodeServiceImpl extends ServiceImpl<ExchangeCodeMapper, Exc
     private final StringRedisTemplate redisTemplate;
     private final BoundValueOperations<String, String> serialOps;
 
+    private static final RedisScript<Long> REGISTER_CODE_RANGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/register_code_range.lua"), Long.class);
+    private static final RedisScript<String> FIND_CODE_RANGE_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/find_code_range.lua"), String.class);
+
     public ExchangeCodeServiceImpl(StringRedisTemplate redisTemplate) {
         this.redisTemplate = redisTemplate;
         this.serialOps = redisTemplate.boundValueOps(COUPON_CODE_SERIAL_KEY);
@@ -65,8 +73,9 @@ public class ExchangeCodeServiceImpl extends ServiceImpl<ExchangeCodeMapper, Exc
         // 3.保存数据库
         saveBatch(list);
 
-        // 4.写入Redis缓存，member：couponId，score：兑换码的最大序列号
-        redisTemplate.opsForZSet().add(COUPON_RANGE_KEY, coupon.getId().toString(), maxSerialNum);
+        // 4.登记兑换码区间，兑换时按序列号二分查找优惠券
+        redisTemplate.execute(REGISTER_CODE_RANGE_SCRIPT, List.of(COUPON_RANGE_KEY),
+                String.valueOf(maxSerialNum - totalNum + 1), String.valueOf(maxSerialNum), coupon.getId().toString());
     }
 
     @Override
@@ -88,14 +97,25 @@ public class ExchangeCodeServiceImpl extends ServiceImpl<ExchangeCodeMapper, Exc
 
     @Override
     public Long exchangeTargetId(long serialNum) {
-        // 1.查询score值比当前序列号大的第一个优惠券
-        Set<String> results = redisTemplate.opsForZSet().rangeByScore(
-                COUPON_RANGE_KEY, serialNum, serialNum + 5000, 0L, 1L);
-        if (CollUtils.isEmpty(results)) {
-            return null;
+        // 在脚本中二分查找包含当前序列号的区间，一次往返
+        String couponId = redisTemplate.execute(FIND_CODE_RANGE_SCRIPT, List.of(COUPON_RANGE_KEY), String.valueOf(serialNum));
+        return StringUtils.isBlank(couponId) ? null : Long.valueOf(couponId);
+    }
+
+    @Override
+    public void rebuildCodeRangeIndex() {
+        // 1.按优惠券统计兑换码区间
+        List<CodeRangeDTO> ranges = getBaseMapper().queryCodeRanges();
+        if (CollUtils.isEmpty(ranges)) {
+            return;
+        }
+        // 2.拼接定长区间
+        StringBuilder sb = new StringBuilder(ranges.size() * CODE_RANGE_ENTRY_SIZE);
+        for (CodeRangeDTO range : ranges) {
+            sb.append(String.format("%010d%010d%019d",
+                    range.getMinSerialNum(), range.getMaxSerialNum(), range.getCouponId()));
         }
-        // 2.数据转换
-        String next = results.iterator().next();
-        return Long.parseLong(next);
+        // 3.整体覆盖
+        redisTemplate.opsForValue().set(COUPON_RANGE_KEY, sb.toString());
     }
 }
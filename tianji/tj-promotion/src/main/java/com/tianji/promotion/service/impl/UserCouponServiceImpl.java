@@ -1,6 +1,7 @@
 package com.tianji.promotion.service.impl;
 
 import cn.hutool.core.bean.copier.CopyOptions;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.baomidou.mybatisplus.core.metadata.OrderItem;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
@@ -39,6 +40,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -183,7 +185,7 @@ public class UserCouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCou
         String result = redisTemplate.execute(
                 EXCHANGE_COUPON_SCRIPT,
                 List.of(COUPON_CODE_MAP_KEY, COUPON_RANGE_KEY),
-                String.valueOf(serialNum), String.valueOf(serialNum + 5000), userId.toString());
+                String.valueOf(serialNum), userId.toString());
         long r = NumberUtils.parseLong(result);
         if (r < 10) {
             // 异常结果应该是在1~5之间
@@ -268,35 +270,30 @@ public class UserCouponServiceImpl extends ServiceImpl<UserCouponMapper, UserCou
         if (CollUtils.isEmpty(userCoupons)) {
             return;
         }
-        // 2.处理数据
-        List<UserCoupon> list = userCoupons.stream()
-                // 过滤无效券
-                .filter(coupon -> {
-                    if (coupon == null) {
-                        return false;
-                    }
-                    if (UserCouponStatus.UNUSED != coupon.getStatus()) {
-                        return false;
-                    }
-                    LocalDateTime now = LocalDateTime.now();
-                    return !now.isBefore(coupon.getTermBeginTime()) && !now.isAfter(coupon.getTermEndTime());
-                })
-                // 组织新增数据
-                .map(coupon -> {
-                    UserCoupon c = new UserCoupon();
-                    c.setId(coupon.getId());
-                    c.setStatus(UserCouponStatus.USED);
-                    return c;
-                })
-                .collect(Collectors.toList());
-
-        // 4.核销，修改优惠券状态
-        boolean success = updateBatchById(list);
-        if (!success) {
-            return;
+        // 2.校验券的状态和有效期，任意一张不可用则整体核销失败
+        if (userCoupons.size() != new HashSet<>(userCouponIds).size()) {
+            throw new BizIllegalException("优惠券不存在");
         }
-        // 5.更新已使用数量
-        List<Long> couponIds = userCoupons.stream().map(UserCoupon::getCouponId).collect(Collectors.toList());
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> couponIds = new ArrayList<>(userCoupons.size());
+        for (UserCoupon coupon : userCoupons) {
+            if (UserCouponStatus.UNUSED != coupon.getStatus()
+                    || now.isBefore(coupon.getTermBeginTime()) || now.isAfter(coupon.getTermEndTime())) {
+                throw new BizIllegalException("优惠券已使用或不在有效期内");
+            }
+            couponIds.add(coupon.getCouponId());
+        }
+        // 3.核销，只修改仍未使用的券，并发核销同一张券时只有一个成功
+        int updated = getBaseMapper().update(null, new LambdaUpdateWrapper<UserCoupon>()
+                .set(UserCoupon::getStatus, UserCouponStatus.USED)
+                .set(UserCoupon::getUsedTime, now)
+                .in(UserCoupon::getId, userCouponIds)
+                .eq(UserCoupon::getStatus, UserCouponStatus.UNUSED));
+        if (updated != userCoupons.size()) {
+            // 部分券已被其它订单核销，回滚
+            throw new BizIllegalException("优惠券已使用或不在有效期内");
+        }
+        // 4.更新已使用数量
         int c = couponMapper.incrUsedNum(couponIds, 1);
         if (c < 1) {
             throw new DbException("更新优惠券使用数量失败！");
@@ -1,8 +1,9 @@
 package com.tianji.promotion.utils;
 
-import com.tianji.common.constants.RegexConstants;
 import com.tianji.common.exceptions.BadRequestException;
 
+import java.util.Arrays;
+
 /**
  * <h1 style='font-weight:500'>1.兑换码算法说明：</h1>
  * <p>兑换码分为明文和密文，明文是50位二进制数，密文是长度为10的Base32编码的字符串 </p>
@@ -72,6 +73,26 @@ public class CodeUtil {
      * 序列号掩码，32位
      */
     private final static long SERIAL_NUM_MASK = 0xFFFFFFFFL;
+    /**
+     * 兑换码的最小、最大长度
+     */
+    private final static int CODE_MIN_LENGTH = 8;
+    private final static int CODE_MAX_LENGTH = 10;
+    /**
+     * Base32编码表，与{@link Base32}一致，每个字符表示5位，低位在前
+     */
+    private final static char[] ENCODE_TABLE = "6CSB7H8DAKXZF3N95RTMVUQG2YE4JWPL".toCharArray();
+    /**
+     * Base32解码表，下标是字符，值是5位数值，非法字符为-1
+     */
+    private final static byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < ENCODE_TABLE.length; i++) {
+            DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+        }
+    }
     /**
      * 序列号加权运算的秘钥表
      */
@@ -104,7 +125,7 @@ public class CodeUtil {
         // 1.计算新鲜值
         fresh = fresh & FRESH_MASK;
         // 2.拼接payload，fresh（4位） + serialNum（32位）
-        long payload = fresh << FRESH_BIT_OFFSET | serialNum;
+        long payload = fresh << FRESH_BIT_OFFSET | serialNum & SERIAL_NUM_MASK;
         // 3.计算验证码
         long checkCode = calcCheckCode(payload, (int) fresh);
         // 4.payload做大质数异或运算，混淆数据
@@ -112,7 +133,38 @@ public class CodeUtil {
         // 5.拼接兑换码明文: 校验码（14位） + payload（36位）
         long code = checkCode << CHECK_CODE_BIT_OFFSET | payload;
         // 6.转码
-        return Base32.encode(code);
+        return encode(code);
+    }
+
+    /**
+     * 查表编码，每5位一个字符，低位在前，高位的0不输出，与{@link Base32#encode(long)}结果一致
+     */
+    private static String encode(long code) {
+        char[] chars = new char[CODE_MAX_LENGTH];
+        int length = 0;
+        while (code != 0) {
+            chars[length++] = ENCODE_TABLE[(int) (code & 0b11111)];
+            code >>>= 5;
+        }
+        return new String(chars, 0, length);
+    }
+
+    /**
+     * 查表解码，同时校验字符
+     *
+     * @return 兑换码明文，包含非法字符时返回-1
+     */
+    private static long decode(String code) {
+        long num = 0;
+        for (int i = code.length() - 1; i >= 0; i--) {
+            char c = code.charAt(i);
+            int n = c < DECODE_TABLE.length ? DECODE_TABLE[c] : -1;
+            if (n < 0) {
+                return -1;
+            }
+            num = num << 5 | n;
+        }
+        return num;
     }
 
     private static long calcCheckCode(long payload, int fresh) {
@@ -129,12 +181,15 @@ public class CodeUtil {
     }
 
     public static long parseCode(String code) {
-        if (code == null || !code.matches(RegexConstants.COUPON_CODE_PATTERN)) {
+        // 1.Base32解码，同时校验字符，代替正则匹配
+        if (code == null || code.length() < CODE_MIN_LENGTH || code.length() > CODE_MAX_LENGTH) {
             // 兑换码格式错误
             throw new BadRequestException("无效兑换码");
         }
-        // 1.Base32解码
-        long num = Base32.decode(code);
+        long num = decode(code);
+        if (num < 0) {
+            throw new BadRequestException("无效兑换码");
+        }
         // 2.获取低36位，payload
         long payload = num & PAYLOAD_MASK;
         // 3.获取高14位，校验码
@@ -20,4 +20,9 @@ public @interface MyLock {
     MyLockType lockType() default MyLockType.RE_ENTRANT_LOCK;
 
     MyLockStrategy lockStrategy() default MyLockStrategy.FAIL_AFTER_RETRY_TIMEOUT;
+
+    /**
+     * 是否先获取本地锁，同一JVM内的竞争者在本地排队，只有获得本地锁的线程才访问Redis
+     */
+    boolean localLock() default false;
 }
@@ -1,5 +1,6 @@
 package com.tianji.promotion.utils;
 
+import com.tianji.common.utils.NamedLocks;
 import lombok.RequiredArgsConstructor;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
@@ -8,19 +9,49 @@ import org.redisson.api.RLock;
 import org.springframework.core.Ordered;
 import org.springframework.stereotype.Component;
 
+import java.util.concurrent.locks.ReentrantLock;
+
 @Component
 @Aspect
 @RequiredArgsConstructor
 public class MyLockAspect implements Ordered {
 
     private final MyLockFactory lockFactory;
+    /**
+     * 本地锁，与分布式锁同名
+     */
+    private final NamedLocks localLocks = new NamedLocks();
 
     @Around("@annotation(myLock)")
     public Object tryLock(ProceedingJoinPoint pjp, MyLock myLock) throws Throwable {
+        long waitNanos = myLock.unit().toNanos(myLock.waitTime());
+        if (!myLock.localLock()) {
+            return lockAndProceed(pjp, myLock, waitNanos);
+        }
+        // 先获取本地锁，同一JVM内的竞争者在本地排队
+        ReentrantLock localLock = localLocks.acquire(myLock.name());
+        try {
+            long begin = System.nanoTime();
+            if (!myLock.lockStrategy().tryLocalLock(localLock, myLock)) {
+                return null;
+            }
+            try {
+                // 扣除本地等待的时间，总等待时间不超过waitTime
+                long remain = Math.max(waitNanos - (System.nanoTime() - begin), 0);
+                return lockAndProceed(pjp, myLock, remain);
+            } finally {
+                localLock.unlock();
+            }
+        } finally {
+            localLocks.release(myLock.name());
+        }
+    }
+
+    private Object lockAndProceed(ProceedingJoinPoint pjp, MyLock myLock, long waitNanos) throws Throwable {
         // 1.创建锁对象
         RLock lock = lockFactory.getLock(myLock.lockType(), myLock.name());
         // 2.尝试获取锁
-        boolean isLock = myLock.lockStrategy().tryLock(lock, myLock);
+        boolean isLock = myLock.lockStrategy().tryLock(lock, myLock, waitNanos);
         // 3.判断是否成功
         if(!isLock) {
             // 3.1.失败，快速结束
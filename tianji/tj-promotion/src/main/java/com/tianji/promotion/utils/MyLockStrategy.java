@@ -3,47 +3,98 @@ package com.tianji.promotion.utils;
 import com.tianji.common.exceptions.BizIllegalException;
 import org.redisson.api.RLock;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 public enum MyLockStrategy {
     SKIP_FAST(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            return lock.tryLock(0, prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException {
+            return lock.tryLock(0, leaseNanos(prop), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, MyLock prop) {
+            return lock.tryLock();
         }
     },
     FAIL_FAST(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            boolean isLock = lock.tryLock(0, prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException {
+            boolean isLock = lock.tryLock(0, leaseNanos(prop), TimeUnit.NANOSECONDS);
             if (!isLock) {
                 throw new BizIllegalException("请求太频繁");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, MyLock prop) {
+            if (!lock.tryLock()) {
+                throw new BizIllegalException("请求太频繁");
+            }
+            return true;
+        }
     },
     KEEP_TRYING(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
+        public boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException {
             lock.lock( prop.leaseTime(), prop.unit());
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, MyLock prop) throws InterruptedException {
+            lock.lockInterruptibly();
+            return true;
+        }
     },
     SKIP_AFTER_RETRY_TIMEOUT(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            return lock.tryLock(prop.waitTime(), prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException {
+            return lock.tryLock(waitNanos, leaseNanos(prop), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, MyLock prop) throws InterruptedException {
+            return lock.tryLock(prop.waitTime(), prop.unit());
         }
     },
     FAIL_AFTER_RETRY_TIMEOUT(){
         @Override
-        public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
-            boolean isLock = lock.tryLock(prop.waitTime(), prop.leaseTime(), prop.unit());
+        public boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException {
+            boolean isLock = lock.tryLock(waitNanos, leaseNanos(prop), TimeUnit.NANOSECONDS);
             if (!isLock) {
                 throw new BizIllegalException("请求太频繁");
             }
             return true;
         }
+
+        @Override
+        public boolean tryLocalLock(ReentrantLock lock, MyLock prop) throws InterruptedException {
+            if (!lock.tryLock(prop.waitTime(), prop.unit())) {
+                throw new BizIllegalException("请求太频繁");
+            }
+            return true;
+        }
     },
     ;
 
-    public abstract boolean tryLock(RLock lock, MyLock prop) throws InterruptedException;
+    public boolean tryLock(RLock lock, MyLock prop) throws InterruptedException {
+        return tryLock(lock, prop, prop.unit().toNanos(prop.waitTime()));
+    }
+
+    /**
+     * 获取分布式锁
+     *
+     * @param waitNanos 剩余的等待时间，纳秒，先获取了本地锁时要扣除本地等待的时间
+     */
+    public abstract boolean tryLock(RLock lock, MyLock prop, long waitNanos) throws InterruptedException;
+
+    public abstract boolean tryLocalLock(ReentrantLock lock, MyLock prop) throws InterruptedException;
+
+    private static long leaseNanos(MyLock prop) {
+        // 小于等于0时由看门狗续期，保持原值
+        return prop.leaseTime() > 0 ? prop.unit().toNanos(prop.leaseTime()) : prop.leaseTime();
+    }
 }
@@ -1,27 +1,74 @@
 package com.tianji.promotion.utils;
 
-import com.tianji.common.utils.BooleanUtils;
-import lombok.RequiredArgsConstructor;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import lombok.Getter;
 
 import java.util.concurrent.TimeUnit;
 
-@RequiredArgsConstructor
+/**
+ * 基于Redis的轻量级可重入锁，锁中记录持有者标识，只有持有者才能释放。
+ * 每次首次获取锁都会生成一个单调递增的防护令牌，写入共享资源时带上令牌，资源方拒绝比已见过的令牌更小的请求，
+ * 避免持有者因停顿导致锁过期后，旧持有者的写入覆盖新持有者。
+ * 通过{@link RedisLockFactory#getLock(String)}创建
+ */
 public class RedisLock {
 
+    /**
+     * 获取锁失败时的重试间隔，毫秒
+     */
+    private static final long RETRY_INTERVAL = 50;
+
+    @Getter
     private final String key;
-    private final StringRedisTemplate redisTemplate;
-
-    public boolean tryLock(long leaseTime, TimeUnit unit){
-        // 1.获取线程名称
-        String value = Thread.currentThread().getName();
-        // 2.获取锁
-        Boolean success = redisTemplate.opsForValue().setIfAbsent(key, value, leaseTime, unit);
-        // 3.返回结果
-        return BooleanUtils.isTrue(success);
+    private final RedisLockFactory factory;
+
+    RedisLock(String key, RedisLockFactory factory) {
+        this.key = key;
+        this.factory = factory;
+    }
+
+    /**
+     * 尝试获取锁，不等待
+     *
+     * @param leaseTime 租期，-1表示由看门狗自动续期，直到释放锁
+     * @param unit 时间单位
+     * @return 防护令牌，获取失败返回0
+     */
+    public long tryLock(long leaseTime, TimeUnit unit) {
+        return factory.acquire(key, leaseTime, unit);
+    }
+
+    /**
+     * 尝试获取锁，在等待时间内重试
+     *
+     * @param waitTime 最长等待时间
+     * @param leaseTime 租期，-1表示由看门狗自动续期，直到释放锁
+     * @param unit 时间单位
+     * @return 防护令牌，获取失败返回0
+     */
+    public long tryLock(long waitTime, long leaseTime, TimeUnit unit) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + unit.toMillis(waitTime);
+        while (true) {
+            // 1.尝试获取锁
+            long fence = factory.acquire(key, leaseTime, unit);
+            if (fence > 0) {
+                return fence;
+            }
+            // 2.超时，获取失败
+            long remain = deadline - System.currentTimeMillis();
+            if (remain <= 0) {
+                return 0;
+            }
+            // 3.等待后重试
+            Thread.sleep(Math.min(remain, RETRY_INTERVAL));
+        }
     }
 
-    public void unlock(){
-        redisTemplate.delete(key);
+    /**
+     * 释放锁，重入多次时需要释放相同次数
+     *
+     * @throws IllegalMonitorStateException 当前线程不是锁的持有者，例如锁已过期被其它线程获取
+     */
+    public void unlock() {
+        factory.release(key);
     }
 }
@@ -0,0 +1,132 @@
+package com.tianji.promotion.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * 创建{@link RedisLock}，持有本实例的标识，并用一个共享的调度线程为所有未指定租期的锁续期
+ */
+@Slf4j
+@Component
+public class RedisLockFactory {
+
+    /**
+     * 看门狗模式的默认租期，毫秒，每隔1/3租期续期一次
+     */
+    private static final long WATCHDOG_LEASE_TIME = 30_000;
+    private static final String FENCE_KEY_SUFFIX = ":fence";
+
+    private static final RedisScript<Long> LOCK_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/lock.lua"), Long.class);
+    private static final RedisScript<Long> UNLOCK_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/unlock.lua"), Long.class);
+    private static final RedisScript<Long> RENEW_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/renew_lock.lua"), Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    /**
+     * 实例标识，与线程id拼接作为锁的持有者标识
+     */
+    private final String instanceId = UUID.randomUUID().toString();
+    /**
+     * 续期任务，key是锁的key和持有者标识
+     */
+    private final Map<String, ScheduledFuture<?>> renewals = new ConcurrentHashMap<>();
+    /**
+     * 锁的租期，毫秒，key是锁的key和持有者标识
+     */
+    private final Map<String, Long> leaseTimes = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService watchdog;
+
+    public RedisLockFactory(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "redis-lock-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public RedisLock getLock(String key) {
+        return new RedisLock(key, this);
+    }
+
+    long acquire(String key, long leaseTime, TimeUnit unit) {
+        // 1.计算租期
+        boolean useWatchdog = leaseTime <= 0;
+        long leaseMillis = useWatchdog ? WATCHDOG_LEASE_TIME : unit.toMillis(leaseTime);
+        String owner = currentOwner();
+        // 2.获取锁
+        Long fence = redisTemplate.execute(LOCK_SCRIPT, List.of(key, key + FENCE_KEY_SUFFIX),
+                owner, String.valueOf(leaseMillis));
+        if (fence == null || fence <= 0) {
+            return 0;
+        }
+        // 3.记录租期，释放重入的锁时按此续期
+        String holder = key + ":" + owner;
+        leaseTimes.put(holder, leaseMillis);
+        // 4.看门狗模式，首次获取时开始续期
+        if (useWatchdog) {
+            renewals.computeIfAbsent(holder, k -> watchdog.scheduleAtFixedRate(
+                    () -> renew(key, owner, holder), WATCHDOG_LEASE_TIME / 3, WATCHDOG_LEASE_TIME / 3,
+                    TimeUnit.MILLISECONDS));
+        }
+        return fence;
+    }
+
+    void release(String key) {
+        String owner = currentOwner();
+        String holder = key + ":" + owner;
+        Long leaseMillis = leaseTimes.getOrDefault(holder, WATCHDOG_LEASE_TIME);
+        // 1.比较持有者后释放
+        Long result = redisTemplate.execute(UNLOCK_SCRIPT, List.of(key), owner, String.valueOf(leaseMillis));
+        if (result != null && result > 0) {
+            // 2.仍有重入次数
+            return;
+        }
+        // 3.已完全释放或已不是持有者，停止续期
+        stopRenewal(holder);
+        if (result == null || result < 0) {
+            throw new IllegalMonitorStateException("锁已不属于当前线程，key：" + key);
+        }
+    }
+
+    private void renew(String key, String owner, String holder) {
+        try {
+            Long result = redisTemplate.execute(RENEW_SCRIPT, List.of(key), owner, String.valueOf(WATCHDOG_LEASE_TIME));
+            if (result == null || result == 0) {
+                // 锁已释放或已过期
+                stopRenewal(holder);
+            }
+        } catch (Exception e) {
+            // 下次继续尝试，租期内恢复不会丢锁
+            log.error("锁续期失败，key：{}", key, e);
+        }
+    }
+
+    private void stopRenewal(String holder) {
+        leaseTimes.remove(holder);
+        ScheduledFuture<?> future = renewals.remove(holder);
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    private String currentOwner() {
+        return instanceId + ":" + Thread.currentThread().getId();
+    }
+
+    @PreDestroy
+    public void destroy() {
+        watchdog.shutdownNow();
+    }
+}
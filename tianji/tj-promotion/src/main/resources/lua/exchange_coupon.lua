@@ -1,11 +1,27 @@
 if(redis.call('GETBIT', KEYS[1], ARGV[1]) == 1) then
     return "1"
 end
-local arr = redis.call('ZRANGEBYSCORE', KEYS[2], ARGV[1], ARGV[2], 'LIMIT', 0, 1);
-if(#arr == 0) then
+-- 兑换码区间按起始序列号有序排列，每个区间定长：起始序列号(10位) + 结束序列号(10位) + 优惠券id(19位)
+local size = 39
+local serial = tonumber(ARGV[1])
+local lo = 0
+local hi = math.floor(redis.call('STRLEN', KEYS[2]) / size) - 1
+local cid
+while(lo <= hi) do
+    local mid = math.floor((lo + hi) / 2)
+    local entry = redis.call('GETRANGE', KEYS[2], mid * size, mid * size + size - 1)
+    if(serial < tonumber(string.sub(entry, 1, 10))) then
+        hi = mid - 1
+    elseif(serial > tonumber(string.sub(entry, 11, 20))) then
+        lo = mid + 1
+    else
+        cid = string.match(string.sub(entry, 21), '^0*(%d+)$')
+        break
+    end
+end
+if(cid == nil) then
     return "2"
 end
-local cid = arr[1]
 local _k1 = "prs:coupon:" .. cid
 local _k2 = "prs:user:coupon:" .. cid
 if(redis.call('EXISTS', _k1) == 0) then
@@ -14,7 +30,7 @@ end
 if(tonumber(redis.call('time')[1]) > tonumber(redis.call('HGET', _k1, 'issueEndTime'))) then
     return "4"
 end
-if(tonumber(redis.call('HGET', _k1, 'userLimit')) < redis.call('HINCRBY', _k2, ARGV[3], 1)) then
+if(tonumber(redis.call('HGET', _k1, 'userLimit')) < redis.call('HINCRBY', _k2, ARGV[2], 1)) then
     return "5"
 end
 redis.call('SETBIT', KEYS[1], ARGV[1], "1")
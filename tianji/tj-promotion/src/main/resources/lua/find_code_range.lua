@@ -0,0 +1,19 @@
+-- 查找包含序列号的兑换码区间，ARGV: 序列号，找到返回优惠券id的字符串，否则返回nil
+-- 优惠券id是19位的雪花id，Lua数字会丢失精度，以字符串返回
+local size = 39
+local serial = tonumber(ARGV[1])
+local lo = 0
+local hi = math.floor(redis.call('STRLEN', KEYS[1]) / size) - 1
+-- 二分查找，只在服务端访问redis，调用方一次往返
+while(lo <= hi) do
+    local mid = math.floor((lo + hi) / 2)
+    local entry = redis.call('GETRANGE', KEYS[1], mid * size, mid * size + size - 1)
+    if(serial < tonumber(string.sub(entry, 1, 10))) then
+        hi = mid - 1
+    elseif(serial > tonumber(string.sub(entry, 11, 20))) then
+        lo = mid + 1
+    else
+        return string.sub(entry, 21)
+    end
+end
+return nil
@@ -0,0 +1,17 @@
+-- KEYS[1]: 锁，KEYS[2]: 防护令牌计数器；ARGV[1]: 持有者标识，ARGV[2]: 租期(毫秒)
+-- 获取成功返回防护令牌，失败返回0
+local owner = redis.call('HGET', KEYS[1], 'owner')
+if(owner == false) then
+    -- 首次获取，生成新的防护令牌
+    local fence = redis.call('INCR', KEYS[2])
+    redis.call('HSET', KEYS[1], 'owner', ARGV[1], 'count', 1, 'fence', fence)
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return fence
+end
+if(owner == ARGV[1]) then
+    -- 重入，沿用原来的防护令牌
+    redis.call('HINCRBY', KEYS[1], 'count', 1)
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return tonumber(redis.call('HGET', KEYS[1], 'fence'))
+end
+return 0
\ No newline at end of file
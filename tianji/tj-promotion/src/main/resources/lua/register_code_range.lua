@@ -0,0 +1,30 @@
+-- 登记兑换码区间，ARGV: 起始序列号、结束序列号、优惠券id，区间按起始序列号有序插入
+local size = 39
+local entry = string.rep('0', 10 - #ARGV[1]) .. ARGV[1]
+        .. string.rep('0', 10 - #ARGV[2]) .. ARGV[2]
+        .. string.rep('0', 19 - #ARGV[3]) .. ARGV[3]
+local start = tonumber(ARGV[1])
+local n = math.floor(redis.call('STRLEN', KEYS[1]) / size)
+-- 二分查找第一个起始序列号不小于start的位置
+local lo = 0
+local hi = n
+while(lo < hi) do
+    local mid = math.floor((lo + hi) / 2)
+    if(tonumber(redis.call('GETRANGE', KEYS[1], mid * size, mid * size + 9)) < start) then
+        lo = mid + 1
+    else
+        hi = mid
+    end
+end
+if(lo == n) then
+    redis.call('APPEND', KEYS[1], entry)
+    return n + 1
+end
+if(tonumber(redis.call('GETRANGE', KEYS[1], lo * size, lo * size + 9)) == start) then
+    -- 重复登记，覆盖原区间
+    redis.call('SETRANGE', KEYS[1], lo * size, entry)
+    return n
+end
+local tail = redis.call('GETRANGE', KEYS[1], lo * size, -1)
+redis.call('SETRANGE', KEYS[1], lo * size, entry .. tail)
+return n + 1
\ No newline at end of file
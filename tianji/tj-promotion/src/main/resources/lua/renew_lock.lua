@@ -0,0 +1,6 @@
+-- KEYS[1]: 锁；ARGV[1]: 持有者标识，ARGV[2]: 租期(毫秒)
+if(redis.call('HGET', KEYS[1], 'owner') == ARGV[1]) then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return 1
+end
+return 0
\ No newline at end of file
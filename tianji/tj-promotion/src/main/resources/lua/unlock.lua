@@ -0,0 +1,12 @@
+-- KEYS[1]: 锁；ARGV[1]: 持有者标识，ARGV[2]: 租期(毫秒)
+-- 不是持有者返回-1，仍有重入次数返回剩余次数并续期，完全释放返回0
+if(redis.call('HGET', KEYS[1], 'owner') ~= ARGV[1]) then
+    return -1
+end
+local count = redis.call('HINCRBY', KEYS[1], 'count', -1)
+if(count > 0) then
+    redis.call('PEXPIRE', KEYS[1], ARGV[2])
+    return count
+end
+redis.call('DEL', KEYS[1])
+return 0
\ No newline at end of file
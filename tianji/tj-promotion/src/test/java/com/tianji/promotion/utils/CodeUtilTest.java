@@ -1,7 +1,13 @@
 package com.tianji.promotion.utils;
 
+import com.tianji.common.constants.RegexConstants;
+import com.tianji.common.exceptions.BadRequestException;
 import org.junit.jupiter.api.Test;
 
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 class CodeUtilTest {
 
     @Test
@@ -16,4 +22,67 @@ class CodeUtilTest {
 
     }
 
-}
\ No newline at end of file
+    @Test
+    void testParseInvalidCode() {
+        String code = CodeUtil.generateCode(4000, 1000);
+        assertEquals(4000, CodeUtil.parseCode(code));
+        // 非法字符、小写、长度不符都视为无效兑换码
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(null));
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(code.substring(0, 7)));
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(code + "AB"));
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(code.replace(code.charAt(0), '1')));
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(code.toLowerCase()));
+        assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(code.substring(0, 9) + "中"));
+    }
+
+    @Test
+    void testCompatibleWithExistingCodes() {
+        // 旧版本生成的兑换码
+        assertEquals("5QNSFBG9C", CodeUtil.generateCode(1, 0));
+        assertEquals("BUAWAZMTZQ", CodeUtil.generateCode(4000, 1000));
+        assertEquals("QFR83245ZU", CodeUtil.generateCode(9999, 1000));
+        assertEquals("6C94D882UQ", CodeUtil.generateCode(123456789, 1548));
+        assertEquals("6GFSAP8SL8", CodeUtil.generateCode(4294967295L, 15));
+        assertEquals("4YB3H5FC3N", CodeUtil.generateCode(65536, 7));
+        assertEquals("F4FSAPVE9Y", CodeUtil.generateCode(2147483647L, 1234567890123L));
+    }
+
+    @Test
+    void testRandomRoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2_000_000; i++) {
+            long serialNum = random.nextInt() & 0xFFFFFFFFL;
+            long fresh = random.nextLong();
+            String code = CodeUtil.generateCode(serialNum, fresh);
+            // 与通用Base32编码结果一致
+            assertEquals(code, Base32.encode(Base32.decode(code)));
+            if (code.length() < 8) {
+                // 明文高位全为0时长度不足8位，与旧版本一样视为无效
+                continue;
+            }
+            assertEquals(serialNum, CodeUtil.parseCode(code));
+        }
+    }
+
+    @Test
+    void testMatchesRegexAndBase32() {
+        // 旧版本生成的兑换码及其序列号
+        String[] codes = {"5QNSFBG9C", "BUAWAZMTZQ", "QFR83245ZU", "6C94D882UQ", "6GFSAP8SL8", "4YB3H5FC3N", "F4FSAPVE9Y"};
+        long[] serialNums = {1, 4000, 9999, 123456789, 4294967295L, 65536, 2147483647L};
+        for (int i = 0; i < codes.length; i++) {
+            String code = codes[i];
+            // 1.查表解码与正则校验+通用Base32的结果一致
+            assertTrue(code.matches(RegexConstants.COUPON_CODE_PATTERN));
+            assertEquals(code, Base32.encode(Base32.decode(code)));
+            assertEquals(serialNums[i], CodeUtil.parseCode(code));
+            // 2.正则不接受的字符，查表校验同样拒绝
+            for (int j = 0; j < code.length(); j++) {
+                for (char c : "01IOa-".toCharArray()) {
+                    String invalid = code.substring(0, j) + c + code.substring(j + 1);
+                    assertFalse(invalid.matches(RegexConstants.COUPON_CODE_PATTERN));
+                    assertThrows(BadRequestException.class, () -> CodeUtil.parseCode(invalid));
+                }
+            }
+        }
+    }
+}
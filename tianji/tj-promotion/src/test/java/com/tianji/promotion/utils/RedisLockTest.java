@@ -0,0 +1,93 @@
+package com.tianji.promotion.utils;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+class RedisLockTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 500;
+
+    @Autowired
+    private RedisLockFactory lockFactory;
+
+    @Test
+    void testOwnerSafeAndReentrant() throws Exception {
+        RedisLock lock = lockFactory.getLock("lock:test:owner");
+        // 1.重入时沿用同一个防护令牌
+        long fence = lock.tryLock(-1, TimeUnit.SECONDS);
+        assertTrue(fence > 0);
+        assertEquals(fence, lock.tryLock(-1, TimeUnit.SECONDS));
+        // 2.其它线程既拿不到锁，也不能释放锁
+        ExecutorService other = Executors.newSingleThreadExecutor();
+        assertEquals(0, other.submit(() -> lock.tryLock(-1, TimeUnit.SECONDS)).get());
+        ExecutionException e = assertThrows(ExecutionException.class, () -> other.submit(lock::unlock).get());
+        assertTrue(e.getCause() instanceof IllegalMonitorStateException);
+        // 3.释放两次后其它线程获取，令牌递增
+        lock.unlock();
+        lock.unlock();
+        long next = other.submit(() -> lock.tryLock(-1, TimeUnit.SECONDS)).get();
+        assertTrue(next > fence);
+        other.submit(lock::unlock).get();
+        other.shutdown();
+    }
+
+    @Test
+    void testMutualExclusionAndFencingOrder() throws Exception {
+        RedisLock lock = lockFactory.getLock("lock:test:contend");
+        AtomicInteger holders = new AtomicInteger();
+        AtomicLong lastFence = new AtomicLong();
+        int[] counter = new int[1];
+
+        contend(() -> {
+            long fence = lock.tryLock(10, -1, TimeUnit.SECONDS);
+            assertTrue(fence > 0);
+            try {
+                // 1.同一时刻只有一个持有者
+                assertEquals(1, holders.incrementAndGet());
+                // 2.令牌按获取顺序严格递增
+                assertTrue(fence > lastFence.get());
+                lastFence.set(fence);
+                counter[0]++;
+            } finally {
+                holders.decrementAndGet();
+                lock.unlock();
+            }
+        });
+
+        // 3.没有丢失的更新
+        assertEquals(THREADS * ROUNDS, counter[0]);
+    }
+
+    private void contend(LockTask task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        Future<?>[] futures = new Future[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            futures[i] = pool.submit(() -> {
+                start.await();
+                for (int j = 0; j < ROUNDS; j++) {
+                    task.run();
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+    }
+
+    private interface LockTask {
+        void run() throws Exception;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tianji.search.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.Set;
+
+@Configuration
+public class SearchCacheConfig {
+    /**
+     * 教师名称的本地缓存，key是教师id，value是教师名称
+     */
+    @Bean
+    public Cache<Long, String> teacherNameCaches(){
+        return Caffeine.newBuilder()
+                .initialCapacity(256)
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(10))
+                .build();
+    }
+
+    /**
+     * 用户兴趣的本地缓存，key是用户id，value是感兴趣的二级分类id
+     */
+    @Bean
+    public Cache<Long, Set<Long>> interestsCaches(){
+        return Caffeine.newBuilder()
+                .initialCapacity(1024)
+                .maximumSize(200_000)
+                .expireAfterWrite(Duration.ofMinutes(5))
+                .build();
+    }
+}
@@ -1,14 +1,17 @@
 package com.tianji.search.domain.po;
 
 import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
 import com.baomidou.mybatisplus.annotation.TableName;
+import com.tianji.search.utils.LongSetTypeHandler;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.experimental.Accessors;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
+import java.util.Set;
 
 /**
  * <p>
@@ -21,7 +24,7 @@ import java.time.LocalDateTime;
 @Data
 @EqualsAndHashCode(callSuper = false)
 @Accessors(chain = true)
-@TableName("interests")
+@TableName(value = "interests", autoResultMap = true)
 public class Interests implements Serializable {
 
     private static final long serialVersionUID = 1L;
@@ -33,9 +36,10 @@ public class Interests implements Serializable {
     private Long id;
 
     /**
-     * 感兴趣的二级分类id，以逗号分隔，例如：120,220,330
+     * 感兴趣的二级分类id，数据库中以逗号分隔，例如：120,220,330
      */
-    private String interests;
+    @TableField(typeHandler = LongSetTypeHandler.class)
+    private Set<Long> interests;
 
     /**
      * 创建时间
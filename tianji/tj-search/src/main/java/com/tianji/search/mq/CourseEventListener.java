@@ -1,8 +1,10 @@
 package com.tianji.search.mq;
 
 import com.tianji.search.service.ICourseService;
+import com.tianji.search.service.ISearchService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.Exchange;
 import org.springframework.amqp.rabbit.annotation.Queue;
 import org.springframework.amqp.rabbit.annotation.QueueBinding;
@@ -10,6 +12,10 @@ import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import static com.tianji.common.constants.MqConstants.Exchange.COURSE_EXCHANGE;
 import static com.tianji.common.constants.MqConstants.Key.*;
 
@@ -20,6 +26,9 @@ public class CourseEventListener {
     @Autowired
     private ICourseService courseService;
 
+    @Autowired
+    private ISearchService searchService;
+
     @RabbitListener(bindings = @QueueBinding(
             value = @Queue(name = "search.course.up.queue", durable = "true"),
             exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
@@ -48,4 +57,29 @@ public class CourseEventListener {
     public void listenCourseExpire(Long courseId){
         courseService.handleCourseDelete(courseId);
     }
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = "search.course.expire.batch.queue", durable = "true"),
+            exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = COURSE_EXPIRE_BATCH_KEY
+    ))
+    public void listenCourseExpireBatch(List<Long> courseIds){
+        log.debug("监听到课程{}完结", courseIds);
+        courseService.handleCourseDeletes(courseIds);
+    }
+
+    /**
+     * 匿名队列，每个实例都会收到课程上下架消息，用于刷新各自的TopN缓存
+     */
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue,
+            exchange = @Exchange(name = COURSE_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = {COURSE_UP_KEY, COURSE_DOWN_KEY, COURSE_EXPIRE_KEY, COURSE_EXPIRE_BATCH_KEY}
+    ))
+    public void listenCourseChangeForTopN(Message message){
+        log.debug("监听到课程上下架，刷新TopN缓存");
+        // 延迟刷新，等待索引变更在ES中可见
+        CompletableFuture.runAsync(searchService::refreshTopNCaches,
+                CompletableFuture.delayedExecutor(3, TimeUnit.SECONDS));
+    }
 }
@@ -19,4 +19,9 @@ public interface ISearchService {
     PageDTO<CourseVO> queryCoursesForPortal(CoursePageQuery query);
 
     List<Long> queryCoursesIdByName(String keyword);
+
+    /**
+     * 课程上下架后刷新TopN缓存
+     */
+    void refreshTopNCaches();
 }
@@ -1,10 +1,10 @@
 package com.tianji.search.service.impl;
 
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
 import com.tianji.api.cache.CategoryCache;
 import com.tianji.api.dto.course.CategoryBasicDTO;
 import com.tianji.common.utils.CollUtils;
-import com.tianji.common.utils.StringUtils;
 import com.tianji.common.utils.UserContext;
 import com.tianji.search.domain.po.Interests;
 import com.tianji.search.mapper.InterestsMapper;
@@ -12,9 +12,7 @@ import com.tianji.search.service.IInterestsService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.stream.Collectors;
+import java.util.*;
 
 /**
  * <p>
@@ -30,22 +28,32 @@ public class InterestsServiceImpl extends ServiceImpl<InterestsMapper, Interests
     @Autowired
     private CategoryCache categoryCache;
 
+    @Autowired
+    private Cache<Long, Set<Long>> interestsCaches;
+
     @Override
     public void saveInterests(List<Long> interestedIds) {
         // 1.获取当前用户
         Long userId = UserContext.getUser();
-        String ids = CollUtils.joinIgnoreNull(interestedIds, ",");
-        if(StringUtils.isBlank(ids)){
+        Set<Long> ids = new LinkedHashSet<>();
+        if (interestedIds != null) {
+            interestedIds.stream().filter(Objects::nonNull).forEach(ids::add);
+        }
+        if(ids.isEmpty()){
             // 说明没有兴趣爱好，直接删除
             removeById(userId);
+            // 写库之后再清除缓存，避免并发读取把旧数据重新写回缓存
+            interestsCaches.invalidate(userId);
             return;
         }
         // 2.封装数据
         Interests interests = new Interests();
         interests.setId(userId);
-        interests.setInterests(CollUtils.join(interestedIds, ","));
+        interests.setInterests(ids);
         // 3.保存
         saveOrUpdate(interests);
+        // 4.清除缓存
+        interestsCaches.invalidate(userId);
     }
 
     @Override
@@ -60,22 +68,12 @@ public class InterestsServiceImpl extends ServiceImpl<InterestsMapper, Interests
     public List<Long> queryMyInterestsIds() {
         // 1.获取当前用户
         Long userId = UserContext.getUser();
-        // 2.查询兴趣爱好
-        Interests interests = getById(userId);
-        if (interests == null || StringUtils.isBlank(interests.getInterests())) {
-            return CollUtils.emptyList();
-        }
-        // 3.获取分类信息
-        String[] ids = interests.getInterests().split(",");
-        if (ids.length == 0) {
-            return CollUtils.emptyList();
-        }
-        try {
-            // 4.转换并返回
-            return Arrays.stream(ids).map(Long::valueOf).collect(Collectors.toList());
-        } catch (Exception e) {
-            // 5.数据转换异常，返回空
-            return CollUtils.emptyList();
-        }
+        // 2.查询兴趣爱好，优先读取本地缓存
+        Set<Long> ids = interestsCaches.get(userId, id -> {
+            Interests interests = getById(id);
+            return interests == null || interests.getInterests() == null ?
+                    CollUtils.emptySet() : interests.getInterests();
+        });
+        return new ArrayList<>(ids);
     }
 }
@@ -1,9 +1,12 @@
 package com.tianji.search.service.impl;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.tianji.api.cache.CategoryCache;
 import com.tianji.api.client.user.UserClient;
 import com.tianji.api.dto.user.UserDTO;
-import com.tianji.common.constants.ErrorInfo;
 import com.tianji.common.domain.dto.PageDTO;
 import com.tianji.common.exceptions.CommonException;
 import com.tianji.common.utils.*;
@@ -15,7 +18,11 @@ import com.tianji.search.domain.vo.CourseVO;
 import com.tianji.search.repository.CourseRepository;
 import com.tianji.search.service.IInterestsService;
 import com.tianji.search.service.ISearchService;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.search.SearchRequest;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.RequestOptions;
@@ -32,8 +39,12 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 import static com.tianji.search.repository.CourseRepository.PUBLISH_TIME;
@@ -56,6 +67,37 @@ public class SearchServiceImpl implements ISearchService {
     @Autowired
     private InterestsProperties interestsProperties;
 
+    @Autowired
+    private Cache<Long, String> teacherNameCaches;
+
+    /**
+     * 与用户无关的TopN查询结果缓存，过期前异步刷新，同一个key同时只有一个刷新请求。
+     * 已登录用户的个性化推荐由各兴趣分类的缓存结果在内存中合并得到
+     */
+    private final LoadingCache<TopNQuery, List<RankedCourse>> topNCaches = Caffeine.newBuilder()
+            .maximumSize(1_000)
+            .refreshAfterWrite(Duration.ofSeconds(10))
+            .expireAfterWrite(Duration.ofSeconds(60))
+            .build(new CacheLoader<>() {
+                @Override
+                public List<RankedCourse> load(TopNQuery q) {
+                    return parseTopNResponse(join(searchTopN(q.categoryIds, q.isFree, q.sortBy, q.isASC, q.n)));
+                }
+
+                @Override
+                public Map<TopNQuery, List<RankedCourse>> loadAll(Iterable<? extends TopNQuery> keys) {
+                    // 多个分类同时未命中时，并行发出查询，响应全部返回后再在当前线程解析、查询教师，
+                    // 不占用ES客户端的IO线程
+                    Map<TopNQuery, CompletableFuture<SearchResponse>> futures = new HashMap<>();
+                    for (TopNQuery q : keys) {
+                        futures.put(q, searchTopN(q.categoryIds, q.isFree, q.sortBy, q.isASC, q.n));
+                    }
+                    Map<TopNQuery, List<RankedCourse>> result = new HashMap<>(futures.size());
+                    futures.forEach((q, f) -> result.put(q, parseTopNResponse(join(f))));
+                    return result;
+                }
+            });
+
     @Override
     public List<CourseVO> queryCourseByCateId(Long cateLv2Id) {
         return queryTopNByCategoryIdLv2sAndFree(
@@ -95,16 +137,50 @@ public class SearchServiceImpl implements ISearchService {
                 courses = queryTopNByCategoryIdLv2sAndFree(
                         null, isFree, sortBy, false, interestsProperties.getTopNumber());
             } else {
-                // 4.2.有爱好.查询爱好课程中报名人数最多的
-                courses = queryTopNByCategoryIdLv2sAndFree(
-                        categoryIds, isFree, sortBy, false, interestsProperties.getTopNumber());
+                // 4.2.有爱好.合并各个爱好分类的TopN缓存，取其中排名最高的
+                courses = mergeTopNOfCategories(
+                        categoryIds, isFree, sortBy, interestsProperties.getTopNumber());
             }
         }
         return courses;
     }
 
+    private List<CourseVO> mergeTopNOfCategories(List<Long> categoryIds, Boolean isFree, String sortBy, int n) {
+        // 1.读取每个分类的TopN，每个分类各自取N条，合并后的前N条一定在其中
+        List<TopNQuery> keys = new ArrayList<>(categoryIds.size());
+        for (Long categoryId : categoryIds) {
+            keys.add(new TopNQuery(CollUtils.singletonList(categoryId), isFree, sortBy, false, n));
+        }
+        Map<TopNQuery, List<RankedCourse>> lists = topNCaches.getAll(keys);
+        // 2.合并、去重、倒序排序，取前N条
+        return lists.values().stream()
+                .flatMap(List::stream)
+                .filter(distinctById())
+                .sorted(Comparator.comparingLong(RankedCourse::getSortValue).reversed())
+                .limit(n)
+                .map(RankedCourse::getCourse)
+                .collect(Collectors.toList());
+    }
+
+    private static Predicate<RankedCourse> distinctById() {
+        Set<Long> ids = new HashSet<>();
+        return r -> ids.add(r.getCourse().getId());
+    }
+
     private List<CourseVO> queryTopNByCategoryIdLv2sAndFree(
             List<Long> categoryIds, Boolean isFree, String sortBy, boolean isASC, int n) {
+        List<RankedCourse> list = topNCaches.get(new TopNQuery(categoryIds, isFree, sortBy, isASC, n));
+        return list.stream().map(RankedCourse::getCourse).collect(Collectors.toList());
+    }
+
+    @Override
+    public void refreshTopNCaches() {
+        // 异步刷新所有已缓存的TopN，刷新完成前继续使用旧数据
+        topNCaches.asMap().keySet().forEach(topNCaches::refresh);
+    }
+
+    private CompletableFuture<SearchResponse> searchTopN(
+            List<Long> categoryIds, Boolean isFree, String sortBy, boolean isASC, int n) {
         // 1.准备Request
         SearchRequest request = new SearchRequest(CourseRepository.INDEX_NAME);
         BoolQueryBuilder queryBuilder = QueryBuilders.boolQuery();
@@ -126,47 +202,90 @@ public class SearchServiceImpl implements ISearchService {
         // 1.3.TopN
         request.source().size(n).sort(sortBy, isASC ? SortOrder.ASC : SortOrder.DESC);
         // 2.发送请求
-        SearchResponse response = null;
-        try {
-            response = restClient.search(request, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            throw new CommonException(SearchErrorInfo.QUERY_COURSE_ERROR, e);
-        }
+        return searchAsync(request);
+    }
+
+    private List<RankedCourse> parseTopNResponse(SearchResponse response) {
         // 3.解析
         SearchHits searchHits = response.getHits();
         SearchHit[] hits = searchHits.getHits();
         if (hits == null || hits.length == 0) {
             return CollUtils.emptyList();
         }
-        List<CourseVO> courses = new ArrayList<>(hits.length);
+        List<RankedCourse> courses = new ArrayList<>(hits.length);
         Set<Long> teacherIds = new HashSet<>(hits.length);
         for (SearchHit hit : hits) {
             // 3.1.数据转换
             CourseVO vo = JsonUtils.toBean(hit.getSourceAsString(), CourseVO.class);
             // 3.2.获取分类id
             teacherIds.add(Long.valueOf(vo.getTeacher()));
-            // 3.3.保存
-            courses.add(vo);
+            // 3.3.保存，同时记录排序字段的值，用于合并多个分类的结果
+            Object[] sortValues = hit.getSortValues();
+            long sortValue = sortValues.length > 0 && sortValues[0] instanceof Number ?
+                    ((Number) sortValues[0]).longValue() : 0L;
+            courses.add(new RankedCourse(vo, sortValue));
         }
         teacherIds.remove(0L);
         if (teacherIds.size() == 0) {
             return courses;
         }
         // 4.查询教师
-        List<UserDTO> teachers = userClient.queryUserByIds(teacherIds);
-        AssertUtils.isNotEmpty(teachers, SearchErrorInfo.TEACHER_NOT_EXISTS);
-        Map<String, String> tMap = teachers.stream()
-                .collect(Collectors.toMap(t -> t.getId().toString(), UserDTO::getName));
-        for (CourseVO c : courses) {
-            c.setTeacher(tMap.getOrDefault(c.getTeacher(), "匿名"));
+        Map<Long, String> tMap = queryTeacherNames(teacherIds);
+        for (RankedCourse r : courses) {
+            CourseVO c = r.getCourse();
+            c.setTeacher(tMap.getOrDefault(Long.valueOf(c.getTeacher()), "匿名"));
         }
         return courses;
     }
 
+    /**
+     * 查询教师名称，优先读取本地缓存，缓存中没有的合并为一次远程查询
+     */
+    private Map<Long, String> queryTeacherNames(Collection<Long> teacherIds) {
+        Map<Long, String> tMap = teacherNameCaches.getAll(teacherIds, ids -> {
+            List<Long> missingIds = new ArrayList<>();
+            ids.forEach(missingIds::add);
+            List<UserDTO> teachers = userClient.queryUserByIds(missingIds);
+            if (CollUtils.isEmpty(teachers)) {
+                return CollUtils.emptyMap();
+            }
+            return teachers.stream().collect(Collectors.toMap(UserDTO::getId, UserDTO::getName));
+        });
+        AssertUtils.isNotEmpty(tMap, SearchErrorInfo.TEACHER_NOT_EXISTS);
+        return tMap;
+    }
+
+    private SearchResponse search(SearchRequest request) {
+        try {
+            return restClient.search(request, RequestOptions.DEFAULT);
+        } catch (IOException e) {
+            throw new CommonException(SearchErrorInfo.QUERY_COURSE_ERROR, e);
+        }
+    }
+
+    private CompletableFuture<SearchResponse> searchAsync(SearchRequest request) {
+        CompletableFuture<SearchResponse> future = new CompletableFuture<>();
+        restClient.searchAsync(request, RequestOptions.DEFAULT, ActionListener.wrap(
+                future::complete,
+                e -> future.completeExceptionally(new CommonException(SearchErrorInfo.QUERY_COURSE_ERROR, e))));
+        return future;
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
     @Override
     public PageDTO<CourseVO> queryCoursesForPortal(CoursePageQuery query) {
         // 1.搜索数据
-        SearchResponse response = searchForResponse(query, CourseVO.EXCLUDE_FIELDS);
+        SearchResponse response = search(buildSearchRequest(query, CourseVO.EXCLUDE_FIELDS));
         // 2.解析响应
         PageDTO<Course> result = handleSearchResponse(response, query.getPageSize());
         // 3.处理VO
@@ -175,11 +294,8 @@ public class SearchServiceImpl implements ISearchService {
             return PageDTO.empty(result.getTotal(), result.getPages());
         }
         // 3.1.查询教师信息
-        List<Long> teacherIds = list.stream().map(Course::getTeacher).collect(Collectors.toList());
-        List<UserDTO> teachers = userClient.queryUserByIds(teacherIds);
-        AssertUtils.isNotEmpty(teachers, SearchErrorInfo.TEACHER_NOT_EXISTS);
-        Map<Long, String> teacherMap = teachers.stream()
-                .collect(Collectors.toMap(UserDTO::getId, UserDTO::getName));
+        Set<Long> teacherIds = list.stream().map(Course::getTeacher).collect(Collectors.toSet());
+        Map<Long, String> teacherMap = queryTeacherNames(teacherIds);
         // 3.2.转换VO
         List<CourseVO> vos = new ArrayList<>(list.size());
         for (Course c : list) {
@@ -220,7 +336,7 @@ public class SearchServiceImpl implements ISearchService {
     }
 
 
-    private SearchResponse searchForResponse(CoursePageQuery query, String[] excludeFields) {
+    private SearchRequest buildSearchRequest(CoursePageQuery query, String[] excludeFields) {
         // 1.创建Request
         SearchRequest request = new SearchRequest(CourseRepository.INDEX_NAME);
         // 2.构建DSL
@@ -237,14 +353,7 @@ public class SearchServiceImpl implements ISearchService {
         request.source().highlighter(new HighlightBuilder().field(CourseRepository.DEFAULT_QUERY_NAME));
         // 2.5.source处理
         request.source().fetchSource(null, excludeFields);
-        // 3.发送请求
-        SearchResponse response = null;
-        try {
-            response = restClient.search(request, RequestOptions.DEFAULT);
-        } catch (IOException e) {
-            throw new CommonException(ErrorInfo.Msg.SERVER_INTER_ERROR, e);
-        }
-        return response;
+        return request;
     }
 
     private void buildBasicQuery(SearchRequest request, CoursePageQuery query) {
@@ -321,4 +430,27 @@ public class SearchServiceImpl implements ISearchService {
         }
         return new PageDTO<>(total, totalPages, list);
     }
+
+    /**
+     * TopN查询条件，作为缓存的key
+     */
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static class TopNQuery {
+        private final List<Long> categoryIds;
+        private final Boolean isFree;
+        private final String sortBy;
+        private final boolean isASC;
+        private final int n;
+    }
+
+    /**
+     * 带排序值的课程，排序值取自ES返回的sort字段
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class RankedCourse {
+        private final CourseVO course;
+        private final long sortValue;
+    }
 }
@@ -0,0 +1,58 @@
+package com.tianji.search.utils;
+
+import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.StringUtils;
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.MappedJdbcTypes;
+import org.apache.ibatis.type.MappedTypes;
+
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * 把以逗号分隔的id字符串，例如：120,220,330，与Long集合互相转换，非法的id会被忽略
+ */
+@MappedTypes(Set.class)
+@MappedJdbcTypes(JdbcType.VARCHAR)
+public class LongSetTypeHandler extends BaseTypeHandler<Set<Long>> {
+
+    @Override
+    public void setNonNullParameter(PreparedStatement ps, int i, Set<Long> parameter, JdbcType jdbcType) throws SQLException {
+        ps.setString(i, CollUtils.joinIgnoreNull(parameter, ","));
+    }
+
+    @Override
+    public Set<Long> getNullableResult(ResultSet rs, String columnName) throws SQLException {
+        return parse(rs.getString(columnName));
+    }
+
+    @Override
+    public Set<Long> getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        return parse(rs.getString(columnIndex));
+    }
+
+    @Override
+    public Set<Long> getNullableResult(CallableStatement cs, int columnIndex) throws SQLException {
+        return parse(cs.getString(columnIndex));
+    }
+
+    private static Set<Long> parse(String value) {
+        Set<Long> ids = new LinkedHashSet<>();
+        if (StringUtils.isBlank(value)) {
+            return ids;
+        }
+        for (String id : value.split(",")) {
+            try {
+                ids.add(Long.valueOf(id.trim()));
+            } catch (NumberFormatException ignored) {
+                // 非法数据，忽略
+            }
+        }
+        return ids;
+    }
+}
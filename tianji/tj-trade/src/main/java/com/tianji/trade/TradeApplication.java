@@ -6,12 +6,14 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
 @MapperScan("com.tianji.trade.mapper")
 @SpringBootApplication
+@EnableScheduling
 @Slf4j
 public class TradeApplication {
     public static void main(String[] args) throws UnknownHostException {
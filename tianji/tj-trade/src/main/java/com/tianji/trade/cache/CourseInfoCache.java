@@ -0,0 +1,46 @@
+package com.tianji.trade.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.common.utils.CollUtils;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+@RequiredArgsConstructor
+public class CourseInfoCache {
+
+    private final Cache<Long, CourseSimpleInfoDTO> courseSimpleInfoCaches;
+
+    private final CourseClient courseClient;
+
+    /**
+     * 批量查询课程简单信息，缓存中没有的课程合并为一次远程调用
+     * @param courseIds 课程id集合
+     * @return 课程id到课程信息的映射，不存在的课程不会出现在结果中
+     */
+    public Map<Long, CourseSimpleInfoDTO> getCourseInfos(Collection<Long> courseIds) {
+        if (CollUtils.isEmpty(courseIds)) {
+            return CollUtils.emptyMap();
+        }
+        return courseSimpleInfoCaches.getAll(courseIds, ids -> {
+            List<Long> missingIds = new ArrayList<>();
+            ids.forEach(missingIds::add);
+            List<CourseSimpleInfoDTO> list = courseClient.getSimpleInfoList(missingIds);
+            if (CollUtils.isEmpty(list)) {
+                return CollUtils.emptyMap();
+            }
+            return list.stream().collect(Collectors.toMap(CourseSimpleInfoDTO::getId, Function.identity()));
+        });
+    }
+
+    public CourseSimpleInfoDTO getCourseInfo(Long courseId) {
+        return getCourseInfos(CollUtils.singletonList(courseId)).get(courseId);
+    }
+}
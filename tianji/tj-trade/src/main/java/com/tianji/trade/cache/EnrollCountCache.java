@@ -0,0 +1,236 @@
+package com.tianji.trade.cache;
+
+import com.tianji.api.dto.IdAndNumDTO;
+import com.tianji.common.exceptions.BizIllegalException;
+import com.tianji.common.utils.CollUtils;
+import com.tianji.trade.domain.po.OrderDetail;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RReadWriteLock;
+import org.redisson.api.RedissonClient;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static com.tianji.trade.constants.RedisConstants.*;
+
+/**
+ * 报名计数缓存，课程报名人数和学员报名课程数分别存放在两个hash中。
+ * 报名、支付成功、申请退款时增量更新，由定时任务定期按数据库校准，校准完成前查询返回null，由调用方查询数据库。
+ * 增量更新从事务提交到写入缓存期间持有校准锁的读锁，校准时持有写锁，统计和覆盖之间不会有增量更新丢失或重复计入
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class EnrollCountCache {
+
+    // 增量更新等待校准锁的最长时间，超时后不加锁直接更新，偏差由下次校准修复
+    private static final long INCREMENT_LOCK_WAIT_SECONDS = 3;
+    // 校准等待写锁的最长时间
+    private static final long RECONCILE_LOCK_WAIT_SECONDS = 10;
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedissonClient redissonClient;
+
+    /**
+     * 批量查询课程报名人数
+     *
+     * @param courseIds 课程id
+     * @return 课程id到报名人数的映射，没有报名的课程不在结果中；计数尚未校准时返回null
+     */
+    public Map<Long, Integer> getEnrollNumOfCourses(List<Long> courseIds) {
+        return getCounts(ENROLL_NUM_OF_COURSE_KEY, courseIds);
+    }
+
+    /**
+     * 批量查询学员报名的课程数
+     *
+     * @param studentIds 学员id
+     * @return 学员id到报名课程数的映射，没有报名的学员不在结果中；计数尚未校准时返回null
+     */
+    public Map<Long, Integer> getEnrollCourseOfStudents(List<Long> studentIds) {
+        return getCounts(ENROLL_COURSE_OF_STUDENT_KEY, studentIds);
+    }
+
+    /**
+     * 事务提交后增量更新报名计数
+     *
+     * @param details 报名状态发生变化的订单明细
+     * @param delta 每条明细的变化量，报名为1，退款为-1
+     */
+    public void incrementAfterCommit(List<OrderDetail> details, int delta) {
+        if (CollUtils.isEmpty(details)) {
+            return;
+        }
+        // 1.合并同一课程、同一学员的变化量
+        Map<String, Long> courseDeltas = new HashMap<>();
+        Map<String, Long> studentDeltas = new HashMap<>();
+        for (OrderDetail detail : details) {
+            courseDeltas.merge(detail.getCourseId().toString(), (long) delta, Long::sum);
+            studentDeltas.merge(detail.getUserId().toString(), (long) delta, Long::sum);
+        }
+        RLock readLock = redissonClient.getReadWriteLock(ENROLL_RECONCILE_LOCK_KEY).readLock();
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            boolean locked = tryLock(readLock, INCREMENT_LOCK_WAIT_SECONDS);
+            try {
+                increment(courseDeltas, studentDeltas);
+            } finally {
+                unlock(readLock, locked);
+            }
+            return;
+        }
+        // 2.提交前加读锁，事务提交后再写入，避免回滚导致计数错误，写入后释放
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean locked;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                locked = tryLock(readLock, INCREMENT_LOCK_WAIT_SECONDS);
+            }
+
+            @Override
+            public void afterCommit() {
+                increment(courseDeltas, studentDeltas);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                unlock(readLock, locked);
+            }
+        });
+    }
+
+    /**
+     * 持有写锁，用数据库统计结果覆盖课程报名人数
+     *
+     * @param counter 统计一批课程的报名人数
+     * @return 统计结果
+     */
+    public List<IdAndNumDTO> reconcileEnrollNumOfCourses(Supplier<List<IdAndNumDTO>> counter) {
+        return reconcile(ENROLL_NUM_OF_COURSE_KEY, counter);
+    }
+
+    /**
+     * 持有写锁，用数据库统计结果覆盖学员报名课程数
+     *
+     * @param counter 统计一批学员的报名课程数
+     * @return 统计结果
+     */
+    public List<IdAndNumDTO> reconcileEnrollCourseOfStudents(Supplier<List<IdAndNumDTO>> counter) {
+        return reconcile(ENROLL_COURSE_OF_STUDENT_KEY, counter);
+    }
+
+    /**
+     * 全部数据校准结束后标记计数可用
+     */
+    public void markLoaded() {
+        redisTemplate.opsForHash().put(ENROLL_NUM_OF_COURSE_KEY, ENROLL_LOADED_FIELD, "");
+        redisTemplate.opsForHash().put(ENROLL_COURSE_OF_STUDENT_KEY, ENROLL_LOADED_FIELD, "");
+    }
+
+    private Map<Long, Integer> getCounts(String key, List<Long> ids) {
+        if (CollUtils.isEmpty(ids)) {
+            return CollUtils.emptyMap();
+        }
+        // 1.一次HMGET查询标记和所有计数
+        List<Object> fields = new ArrayList<>(ids.size() + 1);
+        fields.add(ENROLL_LOADED_FIELD);
+        for (Long id : ids) {
+            fields.add(id.toString());
+        }
+        List<Object> values;
+        try {
+            values = redisTemplate.opsForHash().multiGet(key, fields);
+        } catch (Exception e) {
+            log.error("查询报名计数缓存失败，key：{}", key, e);
+            return null;
+        }
+        // 2.尚未校准，由调用方查询数据库
+        if (values.get(0) == null) {
+            return null;
+        }
+        // 3.组织结果，与数据库分组统计一致，不包含数量为0的数据
+        Map<Long, Integer> map = new HashMap<>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Object value = values.get(i + 1);
+            if (value == null) {
+                continue;
+            }
+            int num = Integer.parseInt(value.toString());
+            if (num > 0) {
+                map.put(ids.get(i), num);
+            }
+        }
+        return map;
+    }
+
+    private void increment(Map<String, Long> courseDeltas, Map<String, Long> studentDeltas) {
+        try {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                StringRedisConnection src = (StringRedisConnection) connection;
+                courseDeltas.forEach((field, d) -> src.hIncrBy(ENROLL_NUM_OF_COURSE_KEY, field, d));
+                studentDeltas.forEach((field, d) -> src.hIncrBy(ENROLL_COURSE_OF_STUDENT_KEY, field, d));
+                return null;
+            });
+        } catch (Exception e) {
+            // 计数偏差由校准任务修复
+            log.error("更新报名计数缓存失败，课程：{}，学员：{}", courseDeltas, studentDeltas, e);
+        }
+    }
+
+    private List<IdAndNumDTO> reconcile(String key, Supplier<List<IdAndNumDTO>> counter) {
+        // 1.加写锁，等待进行中的增量更新写入缓存，新的增量更新在释放后才能提交
+        RLock writeLock = redissonClient.getReadWriteLock(ENROLL_RECONCILE_LOCK_KEY).writeLock();
+        if (!tryLock(writeLock, RECONCILE_LOCK_WAIT_SECONDS)) {
+            throw new BizIllegalException("报名计数校准获取锁失败");
+        }
+        try {
+            // 2.统计并覆盖缓存
+            List<IdAndNumDTO> counts = counter.get();
+            if (CollUtils.isEmpty(counts)) {
+                return counts;
+            }
+            Map<String, String> map = new HashMap<>(counts.size());
+            for (IdAndNumDTO count : counts) {
+                map.put(count.getId().toString(), String.valueOf(count.getNum()));
+            }
+            redisTemplate.opsForHash().putAll(key, map);
+            return counts;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private boolean tryLock(RLock lock, long waitSeconds) {
+        try {
+            if (lock.tryLock(waitSeconds, -1, TimeUnit.SECONDS)) {
+                return true;
+            }
+            log.warn("获取报名计数校准锁超时，锁：{}", lock.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("获取报名计数校准锁失败，锁：{}", lock.getName(), e);
+        }
+        return false;
+    }
+
+    private void unlock(RLock lock, boolean locked) {
+        if (!locked) {
+            return;
+        }
+        try {
+            lock.unlock();
+        } catch (Exception e) {
+            log.error("释放报名计数校准锁失败，锁：{}", lock.getName(), e);
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.tianji.trade.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tianji.api.client.course.CourseClient;
+import com.tianji.api.dto.course.CourseSimpleInfoDTO;
+import com.tianji.trade.cache.CourseInfoCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CourseCacheConfig {
+    /**
+     * 购物车展示用的课程信息缓存，只用于展示，下单时仍然实时查询课程价格
+     */
+    @Bean
+    public Cache<Long, CourseSimpleInfoDTO> courseSimpleInfoCaches(){
+        return Caffeine.newBuilder()
+                .initialCapacity(256)
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMinutes(1))
+                .build();
+    }
+
+    @Bean
+    public CourseInfoCache courseInfoCache(
+            Cache<Long, CourseSimpleInfoDTO> courseSimpleInfoCaches, CourseClient courseClient){
+        return new CourseInfoCache(courseSimpleInfoCaches, courseClient);
+    }
+}
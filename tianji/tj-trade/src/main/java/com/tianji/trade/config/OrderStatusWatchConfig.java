@@ -0,0 +1,25 @@
+package com.tianji.trade.config;
+
+import com.tianji.trade.constants.RedisConstants;
+import com.tianji.trade.handler.OrderStatusWatcher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+@Configuration
+public class OrderStatusWatchConfig {
+
+    /**
+     * 订阅订单状态变更频道，唤醒本实例上等待支付结果的请求
+     */
+    @Bean
+    public RedisMessageListenerContainer orderStatusListenerContainer(
+            RedisConnectionFactory connectionFactory, OrderStatusWatcher orderStatusWatcher) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(orderStatusWatcher, new ChannelTopic(RedisConstants.ORDER_STATUS_CHANGED_CHANNEL));
+        return container;
+    }
+}
@@ -13,11 +13,13 @@ public class ThreadPoolConfig {
     public ThreadPoolTaskExecutor sendRefundRequestExecutor(){
         ThreadPoolTaskExecutor refundExecutor = new ThreadPoolTaskExecutor();
         //配置核心线程数
-        refundExecutor.setCorePoolSize(4);
+        refundExecutor.setCorePoolSize(20);
         //配置最大线程数
         refundExecutor.setMaxPoolSize(20);
         //配置队列大小
         refundExecutor.setQueueCapacity(10000);
+        //空闲时回收核心线程
+        refundExecutor.setAllowCoreThreadTimeOut(true);
         //配置线程池中的线程的名称前缀
         refundExecutor.setThreadNamePrefix("pd-user-async-service-");
         // 由调用者线程执行
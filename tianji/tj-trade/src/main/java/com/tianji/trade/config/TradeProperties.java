@@ -16,4 +16,16 @@ public class TradeProperties {
      * 订单支付的最大等待时间，单位分钟
      */
     private int payOrderTTLMinutes = 30;
+    /**
+     * 退款任务每批查询的退款申请数量
+     */
+    private int refundPageSize = 100;
+    /**
+     * 退款任务同时发往支付服务的最大请求数
+     */
+    private int refundConcurrency = 20;
+    /**
+     * 等待订单支付结果的最长时间，单位秒，超时后客户端重新发起等待
+     */
+    private int orderStatusWaitSeconds = 30;
 }
@@ -51,4 +51,11 @@ public enum OrderStatus implements BaseEnum {
     public static boolean canRefund(Integer value) {
         return PAYED.equalsValue(value);
     }
+
+    /**
+     * 是否计入报名人数：已支付、已完成、已报名
+     */
+    public static boolean isEnrolled(Integer value) {
+        return PAYED.equalsValue(value) || FINISHED.equalsValue(value) || ENROLLED.equalsValue(value);
+    }
 }
@@ -0,0 +1,40 @@
+package com.tianji.trade.constants;
+
+public interface RedisConstants {
+    /**
+     * 用户购物车缓存的KEY模板，hash结构，field是课程id，value是购物车条目快照
+     */
+    String CART_KEY_TEMPLATE = "trade:cart:{}";
+    /**
+     * 购物车缓存已加载的标记field，课程id不会为0，值是缓存版本，每次变更+1
+     */
+    String CART_LOADED_FIELD = "0";
+    /**
+     * 购物车有变更，等待写回数据库的用户id集合
+     */
+    String CART_DIRTY_USERS_KEY = "trade:cart:dirty";
+    /**
+     * 购物车缓存有效期，单位秒
+     */
+    long CART_TTL_SECONDS = 7 * 24 * 3600;
+    /**
+     * 课程报名人数的KEY，hash结构，field是课程id，value是报名人数
+     */
+    String ENROLL_NUM_OF_COURSE_KEY = "trade:enroll:course";
+    /**
+     * 学员报名课程数的KEY，hash结构，field是学员id，value是报名的课程数
+     */
+    String ENROLL_COURSE_OF_STUDENT_KEY = "trade:enroll:student";
+    /**
+     * 报名计数已经完整校准过的标记field，课程id和学员id不会为0
+     */
+    String ENROLL_LOADED_FIELD = "0";
+    /**
+     * 报名计数校准锁，读写锁：增量更新从事务提交到写入缓存期间持有读锁，校准统计和覆盖期间持有写锁
+     */
+    String ENROLL_RECONCILE_LOCK_KEY = "trade:enroll:lock";
+    /**
+     * 订单状态变更的通知频道，消息内容为：订单id:新状态
+     */
+    String ORDER_STATUS_CHANGED_CHANNEL = "trade:order:status:changed";
+}
@@ -9,6 +9,7 @@ import com.tianji.trade.domain.vo.OrderConfirmVO;
 import com.tianji.trade.domain.vo.OrderPageVO;
 import com.tianji.trade.domain.vo.OrderVO;
 import com.tianji.trade.domain.vo.PlaceOrderResultVO;
+import com.tianji.trade.handler.OrderStatusWatcher;
 import com.tianji.trade.service.IOrderService;
 import io.swagger.annotations.Api;
 import io.swagger.annotations.ApiOperation;
@@ -16,6 +17,7 @@ import io.swagger.annotations.ApiParam;
 import lombok.RequiredArgsConstructor;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.List;
 
@@ -34,6 +36,7 @@ import java.util.List;
 public class OrderController {
 
     private final IOrderService orderService;
+    private final OrderStatusWatcher orderStatusWatcher;
 
     @ApiOperation("分页查询我的订单")
     @GetMapping("page")
@@ -53,6 +56,12 @@ public class OrderController {
         return orderService.queryOrderStatus(orderId);
     }
 
+    @ApiOperation("等待订单支付状态变化，订单不是待支付状态时立刻返回，否则挂起直到状态变化或超时")
+    @GetMapping("/{id}/status/watch")
+    public DeferredResult<PlaceOrderResultVO> watchOrderStatus(@ApiParam("订单id") @PathVariable("id") Long orderId) {
+        return orderStatusWatcher.watch(orderId, () -> orderService.queryOrderStatus(orderId));
+    }
+
     @ApiOperation("预下单接口，生成订单id，确认订单可用优惠券信息")
     @GetMapping("prePlaceOrder")
     public OrderConfirmVO prePlaceOrder(@RequestParam("courseIds")List<Long> courseIds) {
@@ -0,0 +1,35 @@
+package com.tianji.trade.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+
+/**
+ * <p>
+ * 购物车写回版本，记录每个用户已写回数据库的缓存版本
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("cart_version")
+public class CartVersion implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 用户id
+     */
+    @TableId(value = "user_id", type = IdType.INPUT)
+    private Long userId;
+
+    /**
+     * 已写回数据库的购物车缓存版本
+     */
+    private Long version;
+}
@@ -0,0 +1,79 @@
+package com.tianji.trade.domain.po;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.experimental.Accessors;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * <p>
+ * 订单本地消息表，与订单在同一事务中写入，由中继任务投递到MQ
+ * </p>
+ */
+@Data
+@EqualsAndHashCode(callSuper = false)
+@Accessors(chain = true)
+@TableName("order_outbox")
+public class OrderOutbox implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 待投递
+     */
+    public static final int PENDING = 0;
+    /**
+     * 已投递
+     */
+    public static final int SENT = 1;
+    /**
+     * 投递失败，重试次数达到上限，需要人工处理
+     */
+    public static final int FAILED = 2;
+
+    /**
+     * 消息id
+     */
+    @TableId(value = "id", type = IdType.ASSIGN_ID)
+    private Long id;
+
+    /**
+     * 订单id
+     */
+    private Long orderId;
+
+    /**
+     * 消息的RoutingKey，交换机固定为order.topic
+     */
+    private String routingKey;
+
+    /**
+     * 消息内容，json格式
+     */
+    private String payload;
+
+    /**
+     * 投递状态，0：待投递，1：已投递，2：投递失败
+     */
+    private Integer status;
+
+    /**
+     * 投递失败次数
+     */
+    private Integer retryTimes;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -1,10 +1,14 @@
 package com.tianji.trade.domain.query;
 
 import com.tianji.common.domain.query.PageQuery;
+import com.tianji.common.utils.DateUtils;
 import io.swagger.annotations.ApiModel;
 import io.swagger.annotations.ApiModelProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
@@ -12,4 +16,9 @@ import lombok.EqualsAndHashCode;
 public class OrderPageQuery extends PageQuery {
     @ApiModelProperty("订单状态")
     private Integer status;
+    @ApiModelProperty(value = "上一页最后一条订单的创建时间，与lastId同时传入时按游标查询下一页，忽略页码", example = "2022-7-18 19:52:36")
+    @DateTimeFormat(pattern = DateUtils.DEFAULT_DATE_TIME_FORMAT)
+    private LocalDateTime lastCreateTime;
+    @ApiModelProperty("上一页最后一条订单的id")
+    private Long lastId;
 }
@@ -0,0 +1,24 @@
+package com.tianji.trade.handler;
+
+import com.tianji.common.utils.StringUtils;
+import com.tianji.trade.service.IOrderDetailService;
+import com.xxl.job.core.context.XxlJobHelper;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+@Component
+@RequiredArgsConstructor
+public class EnrollCountJobHandler {
+
+    private final IOrderDetailService detailService;
+
+    @XxlJob("enrollCountReconcileJob")
+    public void reconcileEnrollCounts(){
+        // 1.jobParam作为每批统计的数量，默认1000
+        String jobParam = XxlJobHelper.getJobParam();
+        int batchSize = StringUtils.isNumeric(jobParam) ? Integer.parseInt(jobParam) : 1000;
+        // 2.按数据库统计结果校准报名计数缓存，修复增量更新的偏差
+        detailService.reconcileEnrollCounts(batchSize);
+    }
+}
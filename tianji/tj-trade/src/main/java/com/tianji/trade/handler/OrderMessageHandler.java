@@ -0,0 +1,32 @@
+package com.tianji.trade.handler;
+
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.common.constants.MqConstants;
+import com.tianji.trade.service.ICartService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.ExchangeTypes;
+import org.springframework.amqp.rabbit.annotation.Exchange;
+import org.springframework.amqp.rabbit.annotation.Queue;
+import org.springframework.amqp.rabbit.annotation.QueueBinding;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderMessageHandler {
+
+    private final ICartService cartService;
+
+    @RabbitListener(bindings = @QueueBinding(
+            value = @Queue(name = "trade.order.place.cart.queue", durable = "true"),
+            exchange = @Exchange(name = MqConstants.Exchange.ORDER_EXCHANGE, type = ExchangeTypes.TOPIC),
+            key = MqConstants.Key.ORDER_PLACE_KEY
+    ))
+    public void listenOrderPlaced(OrderBasicDTO order){
+        log.debug("收到下单成功通知：{}", order);
+        // 删除购物车中已下单的课程，重复消费时删除不到数据，天然幂等
+        cartService.deleteCartByUserAndCourseIds(order.getUserId(), order.getCourseIds());
+    }
+}
@@ -0,0 +1,52 @@
+package com.tianji.trade.handler;
+
+import com.tianji.common.utils.CollUtils;
+import com.tianji.trade.domain.po.OrderOutbox;
+import com.tianji.trade.service.IOrderOutboxService;
+import com.xxl.job.core.context.XxlJobHelper;
+import com.xxl.job.core.handler.annotation.XxlJob;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 订单本地消息中继任务，兜底投递下单后未能立即投递成功的消息
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderOutboxJobHandler {
+
+    /**
+     * 刚写入的消息由下单线程自己投递，中继任务只处理超过这个时间仍未投递的
+     */
+    private static final long RELAY_DELAY_SECONDS = 5;
+    private static final int RELAY_PAGE_SIZE = 100;
+
+    private final IOrderOutboxService outboxService;
+
+    @XxlJob("orderOutboxRelayJobHandler")
+    public void relayPendingMessages(){
+        // 1.获取分片信息，每个分片只处理 order_id % 分片总数 = 分片序号 的消息，各实例不会重复投递
+        int shardIndex = Math.max(XxlJobHelper.getShardIndex(), 0);
+        int shardTotal = Math.max(XxlJobHelper.getShardTotal(), 1);
+        LocalDateTime before = LocalDateTime.now().minusSeconds(RELAY_DELAY_SECONDS);
+        long lastId = 0;
+        while (true) {
+            // 2.按id游标查询待投递的消息，本次失败的消息留到下次任务重试
+            List<OrderOutbox> list = outboxService.queryPending(lastId, before, shardIndex, shardTotal, RELAY_PAGE_SIZE);
+            if (CollUtils.isEmpty(list)) {
+                break;
+            }
+            lastId = list.get(list.size() - 1).getId();
+            // 3.逐条投递，保证同一订单的消息先后顺序
+            for (OrderOutbox outbox : list) {
+                outboxService.relay(outbox);
+            }
+            if (list.size() < RELAY_PAGE_SIZE) {
+                break;
+            }
+        }
+    }
+}
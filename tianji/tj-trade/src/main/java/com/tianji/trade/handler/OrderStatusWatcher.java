@@ -0,0 +1,143 @@
+package com.tianji.trade.handler;
+
+import com.tianji.trade.config.TradeProperties;
+import com.tianji.trade.constants.OrderStatus;
+import com.tianji.trade.constants.RedisConstants;
+import com.tianji.trade.domain.vo.PlaceOrderResultVO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 订单状态推送，等待支付结果的请求挂起在这里，订单状态变更时通过redis频道通知所有实例，直接返回新状态，
+ * 订阅时查询一次数据库，之后不再查询
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OrderStatusWatcher implements MessageListener {
+
+    private final StringRedisTemplate redisTemplate;
+    private final TradeProperties tradeProperties;
+
+    /**
+     * 等待中的请求，key是订单id
+     */
+    private final Map<Long, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * 等待订单状态变化，订单已经不是待支付状态时立刻返回，超时返回订阅时的状态
+     *
+     * @param orderId 订单id
+     * @param query 查询订单当前状态
+     * @return 订单状态
+     */
+    public DeferredResult<PlaceOrderResultVO> watch(Long orderId, Supplier<PlaceOrderResultVO> query) {
+        DeferredResult<PlaceOrderResultVO> result =
+                new DeferredResult<>(tradeProperties.getOrderStatusWaitSeconds() * 1000L);
+        Waiter waiter = new Waiter(result);
+        // 1.先登记再查询，避免查询之后、登记之前的状态变更被错过
+        waiters.computeIfAbsent(orderId, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        result.onCompletion(() -> remove(orderId, waiter));
+        // 2.查询一次订单当前状态
+        PlaceOrderResultVO current;
+        try {
+            current = query.get();
+        } catch (RuntimeException e) {
+            remove(orderId, waiter);
+            throw e;
+        }
+        waiter.current = current;
+        // 3.已经不是待支付状态，直接返回
+        if (!OrderStatus.NO_PAY.equalsValue(current.getStatus())) {
+            result.setResult(current);
+            return result;
+        }
+        // 4.超时返回订阅时的状态，客户端重新等待，不查询数据库
+        result.onTimeout(() -> result.setResult(current));
+        return result;
+    }
+
+    /**
+     * 事务提交后通知所有实例订单状态已变更
+     */
+    public void publishAfterCommit(Long orderId, int status) {
+        String message = orderId + ":" + status;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(message);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publish(message);
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        // 1.解析订单id和新状态
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int index = body.indexOf(':');
+        if (index <= 0) {
+            return;
+        }
+        Long orderId = Long.valueOf(body.substring(0, index));
+        int status = Integer.parseInt(body.substring(index + 1));
+        // 2.唤醒本实例上等待该订单的请求
+        Set<Waiter> set = waiters.remove(orderId);
+        if (set == null) {
+            return;
+        }
+        for (Waiter waiter : set) {
+            PlaceOrderResultVO current = waiter.current;
+            waiter.result.setResult(PlaceOrderResultVO.builder()
+                    .orderId(orderId)
+                    .payAmount(current == null ? null : current.getPayAmount())
+                    .status(status)
+                    .build());
+        }
+    }
+
+    int waitingSize() {
+        return waiters.values().stream().mapToInt(Set::size).sum();
+    }
+
+    private void publish(String message) {
+        try {
+            redisTemplate.convertAndSend(RedisConstants.ORDER_STATUS_CHANGED_CHANNEL, message);
+        } catch (Exception e) {
+            // 等待的请求超时后会重新查询
+            log.error("发布订单状态变更通知失败，消息：{}", message, e);
+        }
+    }
+
+    private void remove(Long orderId, Waiter waiter) {
+        waiters.computeIfPresent(orderId, (k, set) -> {
+            set.remove(waiter);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static class Waiter {
+        private final DeferredResult<PlaceOrderResultVO> result;
+        private volatile PlaceOrderResultVO current;
+
+        Waiter(DeferredResult<PlaceOrderResultVO> result) {
+            this.result = result;
+        }
+    }
+}
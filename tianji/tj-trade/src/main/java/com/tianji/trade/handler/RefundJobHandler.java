@@ -1,36 +1,72 @@
 package com.tianji.trade.handler;
 
+import com.tianji.common.utils.CollUtils;
+import com.tianji.pay.sdk.dto.RefundResultDTO;
+import com.tianji.trade.config.TradeProperties;
 import com.tianji.trade.domain.po.RefundApply;
 import com.tianji.trade.service.IRefundApplyService;
 import com.xxl.job.core.context.XxlJobHelper;
 import com.xxl.job.core.handler.annotation.XxlJob;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class RefundJobHandler {
 
     private final IRefundApplyService refundApplyService;
+    private final ThreadPoolTaskExecutor sendRefundRequestExecutor;
+    private final TradeProperties tradeProperties;
 
     @XxlJob("refundRequestJobHandler")
     public void handleRefundRequest(){
-        // 1.获取分片信息，作为页码，每页最多查询 2条，避免退款申请过于频繁
-        int index = XxlJobHelper.getShardIndex() + 1;
-        int size = 2;
-        // 2.分页查询审批通过的退款申请
-        List<RefundApply> list = refundApplyService.queryApplyToSend(index, size);
-        // 3.循环处理退款申请
-        for (RefundApply refundApply : list) {
-            // 3.1.检查退款单状态，是否已经退款结束
-            boolean refundFinished = refundApplyService.checkRefundStatus(refundApply);
-            if(refundFinished){
-                continue;
+        // 1.获取分片信息，每个分片只处理 id % 分片总数 = 分片序号 的退款申请
+        int shardIndex = Math.max(XxlJobHelper.getShardIndex(), 0);
+        int shardTotal = Math.max(XxlJobHelper.getShardTotal(), 1);
+        int size = tradeProperties.getRefundPageSize();
+        // 2.限制同时发往支付服务的请求数
+        Semaphore window = new Semaphore(tradeProperties.getRefundConcurrency());
+        long lastId = 0;
+        while (true) {
+            // 3.按id游标查询审批通过的退款申请
+            List<RefundApply> list = refundApplyService.queryApplyToSend(lastId, shardIndex, shardTotal, size);
+            if (CollUtils.isEmpty(list)) {
+                break;
+            }
+            lastId = list.get(list.size() - 1).getId();
+            // 4.并发查询退款状态，未退款的发送退款申请
+            List<CompletableFuture<RefundResultDTO>> futures = new ArrayList<>(list.size());
+            for (RefundApply refundApply : list) {
+                window.acquireUninterruptibly();
+                futures.add(CompletableFuture
+                        .supplyAsync(() -> refundApplyService.requestRefund(refundApply), sendRefundRequestExecutor)
+                        .whenComplete((r, e) -> window.release()));
+            }
+            // 5.收集结果，失败的申请状态不变，下次任务重试
+            List<RefundResultDTO> results = new ArrayList<>(list.size());
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    RefundResultDTO result = futures.get(i).join();
+                    if (result != null) {
+                        results.add(result);
+                    }
+                } catch (Exception e) {
+                    log.error("发送退款请求失败，退款申请id：{}", list.get(i).getId(), e);
+                }
+            }
+            // 6.批量更新退款结果
+            refundApplyService.handleRefundResults(results);
+            if (list.size() < size) {
+                break;
             }
-            // 3.2.发送退款申请
-            refundApplyService.sendRefundRequest(refundApply);
         }
     }
 }
@@ -2,6 +2,11 @@ package com.tianji.trade.mapper;
 
 import com.tianji.trade.domain.po.Cart;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 /**
  * <p>
@@ -13,4 +18,25 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
  */
 public interface CartMapper extends BaseMapper<Cart> {
 
+    /**
+     * 删除指定用户的全部购物车条目
+     *
+     * @param userIds 用户id
+     * @return 影响行数
+     */
+    @Delete("<script>DELETE FROM cart WHERE user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach></script>")
+    int deleteByUserIds(@Param("userIds") List<Long> userIds);
+
+    /**
+     * 批量新增购物车条目
+     *
+     * @param carts 购物车条目
+     * @return 影响行数
+     */
+    @Insert("<script>INSERT INTO cart (id, user_id, course_id, cover_url, course_name, price, create_time) VALUES " +
+            "<foreach collection='carts' item='c' separator=','>" +
+            "(#{c.id}, #{c.userId}, #{c.courseId}, #{c.coverUrl}, #{c.courseName}, #{c.price}, #{c.createTime})" +
+            "</foreach></script>")
+    int insertBatch(@Param("carts") List<Cart> carts);
 }
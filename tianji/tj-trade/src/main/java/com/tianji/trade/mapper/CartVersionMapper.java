@@ -0,0 +1,49 @@
+package com.tianji.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tianji.trade.domain.po.CartVersion;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
+
+/**
+ * <p>
+ * 购物车写回版本 Mapper 接口
+ * </p>
+ */
+public interface CartVersionMapper extends BaseMapper<CartVersion> {
+
+    /**
+     * 初始化用户的写回版本，已存在的忽略
+     *
+     * @param userIds 用户id，按id升序，保证多个实例按相同顺序加锁
+     * @return 影响行数
+     */
+    @Insert("<script>INSERT IGNORE INTO cart_version (user_id, version) VALUES " +
+            "<foreach collection='userIds' item='id' separator=','>(#{id}, 0)</foreach></script>")
+    int insertIgnore(@Param("userIds") List<Long> userIds);
+
+    /**
+     * 查询并锁定用户的写回版本，同一用户的写回在事务内串行
+     *
+     * @param userIds 用户id，按id升序
+     * @return 写回版本
+     */
+    @Select("<script>SELECT user_id, version FROM cart_version WHERE user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            " ORDER BY user_id FOR UPDATE</script>")
+    List<CartVersion> queryForUpdate(@Param("userIds") List<Long> userIds);
+
+    /**
+     * 批量更新写回版本
+     *
+     * @param versions 写回版本
+     * @return 影响行数
+     */
+    @Insert("<script>INSERT INTO cart_version (user_id, version) VALUES " +
+            "<foreach collection='versions' item='v' separator=','>(#{v.userId}, #{v.version})</foreach>" +
+            " ON DUPLICATE KEY UPDATE version = VALUES(version)</script>")
+    int upsertBatch(@Param("versions") List<CartVersion> versions);
+}
@@ -6,6 +6,7 @@ import com.tianji.api.dto.IdAndNumDTO;
 import com.tianji.trade.domain.po.OrderDetail;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.List;
 
@@ -26,6 +27,45 @@ public interface OrderDetailMapper extends BaseMapper<OrderDetail> {
 
     List<IdAndNumDTO> countEnrollCourseOfStudent(@Param("ew") QueryWrapper<OrderDetail> wrapper);
 
+    /**
+     * 按课程id游标分批统计课程报名人数，包含报名人数为0的课程
+     */
+    List<IdAndNumDTO> countEnrollNumOfCourseAfter(
+            @Param("lastId") Long lastId, @Param("size") int size, @Param("statuses") List<Integer> statuses);
+
+    /**
+     * 按学员id游标分批统计学员报名课程数，包含报名课程数为0的学员
+     */
+    List<IdAndNumDTO> countEnrollCourseOfStudentAfter(
+            @Param("lastId") Long lastId, @Param("size") int size, @Param("statuses") List<Integer> statuses);
+
+    /**
+     * 未计入报名人数的明细标记为已支付，已经计入的不更新，并发的重复支付通知只有一个能更新成功
+     *
+     * @param d 明细id、新状态、支付渠道、课程过期时间
+     * @param statuses 计入报名人数的状态
+     * @return 影响行数，1表示本次新计入报名人数
+     */
+    @Update("<script>UPDATE order_detail SET status = #{d.status}, pay_channel = #{d.payChannel}, " +
+            "course_expire_time = #{d.courseExpireTime} WHERE id = #{d.id} AND status NOT IN " +
+            "<foreach collection='statuses' item='s' open='(' separator=',' close=')'>#{s}</foreach></script>")
+    int markPayedIfNotEnrolled(@Param("d") OrderDetail d, @Param("statuses") List<Integer> statuses);
+
+    /**
+     * 计入报名人数的明细标记为已退款，重复的退款申请只有一个能更新成功
+     *
+     * @param id 明细id
+     * @param status 新状态
+     * @param refundStatus 退款状态
+     * @param statuses 计入报名人数的状态
+     * @return 影响行数，1表示本次从报名人数中扣除
+     */
+    @Update("<script>UPDATE order_detail SET status = #{status}, refund_status = #{refundStatus} " +
+            "WHERE id = #{id} AND status IN " +
+            "<foreach collection='statuses' item='s' open='(' separator=',' close=')'>#{s}</foreach></script>")
+    int markRefundedIfEnrolled(@Param("id") Long id, @Param("status") int status,
+                               @Param("refundStatus") Integer refundStatus, @Param("statuses") List<Integer> statuses);
+
     @Select("SELECT SUM(real_pay_amount) FROM order_detail WHERE course_id = #{courseId}")
     int countRealPayAmountByCourseId(Long courseId);
 }
@@ -2,6 +2,10 @@ package com.tianji.trade.mapper;
 
 import com.tianji.trade.domain.po.Order;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
 
 /**
  * <p>
@@ -14,4 +18,19 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 public interface OrderMapper extends BaseMapper<Order> {
 
     Order getById(Long id);
+
+    /**
+     * 按创建时间倒序查询用户未删除的订单id，只扫描(user_id, deleted, create_time, id, status)索引，不回表
+     *
+     * @param userId 用户id
+     * @param status 订单状态，可以为空
+     * @param lastCreateTime 游标：上一页最后一条订单的创建时间，为空时按offset分页
+     * @param lastId 游标：上一页最后一条订单的id
+     * @param offset 跳过的数量，按游标查询时为0
+     * @param size 查询数量
+     * @return 订单id
+     */
+    List<Long> queryMyOrderIds(@Param("userId") Long userId, @Param("status") Integer status,
+                               @Param("lastCreateTime") LocalDateTime lastCreateTime, @Param("lastId") Long lastId,
+                               @Param("offset") int offset, @Param("size") int size);
 }
@@ -0,0 +1,34 @@
+package com.tianji.trade.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.tianji.trade.domain.po.OrderOutbox;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+/**
+ * <p>
+ * 订单本地消息表 Mapper 接口
+ * </p>
+ */
+public interface OrderOutboxMapper extends BaseMapper<OrderOutbox> {
+
+    /**
+     * 标记为已投递，只修改待投递的消息
+     *
+     * @param id 消息id
+     * @return 影响行数
+     */
+    @Update("UPDATE order_outbox SET status = 1 WHERE id = #{id} AND status = 0")
+    int markSent(@Param("id") Long id);
+
+    /**
+     * 投递失败次数+1，达到上限后标记为投递失败，不再重试
+     *
+     * @param id 消息id
+     * @param maxRetryTimes 最大失败次数
+     * @return 影响行数
+     */
+    @Update("UPDATE order_outbox SET status = IF(retry_times + 1 >= #{maxRetryTimes}, 2, status), " +
+            "retry_times = retry_times + 1 WHERE id = #{id} AND status = 0")
+    int incrRetryTimes(@Param("id") Long id, @Param("maxRetryTimes") int maxRetryTimes);
+}
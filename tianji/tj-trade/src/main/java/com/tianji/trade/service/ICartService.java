@@ -25,4 +25,10 @@ public interface ICartService extends IService<Cart> {
     void deleteCartByIds(List<Long> ids);
 
     void deleteCartByUserAndCourseIds(Long userId, List<Long> courseIds);
+
+    /**
+     * 将缓存中有变更的购物车批量写回数据库
+     * @param size 本次最多写回的用户数量
+     */
+    void flushDirtyCarts(int size);
 }
@@ -41,6 +41,14 @@ public interface IOrderDetailService extends IService<OrderDetail> {
 
     void updateRefundStatusById(Long orderDetailId, int status);
 
+    /**
+     * 申请退款，明细标记为已退款，之前计入报名人数的扣减报名计数
+     *
+     * @param detail 订单明细
+     * @param refundStatus 退款状态
+     */
+    void markDetailRefunded(OrderDetail detail, Integer refundStatus);
+
     List<Long> queryCourseIdsByOrderId(Long orderId);
 
     Boolean checkCourseOrderInfo(Long courseId);
@@ -49,5 +57,12 @@ public interface IOrderDetailService extends IService<OrderDetail> {
 
     Map<Long, Integer> countEnrollCourseOfStudent(List<Long> studentIds);
 
+    /**
+     * 按数据库统计结果校准报名计数缓存
+     *
+     * @param batchSize 每批统计的课程或学员数量
+     */
+    void reconcileEnrollCounts(int batchSize);
+
     CoursePurchaseInfoDTO getPurchaseInfoOfCourse(Long courseId);
 }
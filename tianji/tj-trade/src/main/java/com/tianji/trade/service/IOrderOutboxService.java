@@ -0,0 +1,37 @@
+package com.tianji.trade.service;
+
+import com.baomidou.mybatisplus.extension.service.IService;
+import com.tianji.trade.domain.po.OrderOutbox;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * <p>
+ * 订单本地消息表 服务类
+ * </p>
+ */
+public interface IOrderOutboxService extends IService<OrderOutbox> {
+
+    /**
+     * 写入一条待投递的消息，需要与订单数据在同一事务中调用
+     */
+    OrderOutbox saveOutbox(Long orderId, String routingKey, Object message);
+
+    /**
+     * 投递一条消息到MQ，成功后标记为已投递，失败则留给中继任务重试，失败次数达到上限后标记为投递失败
+     */
+    void relay(OrderOutbox outbox);
+
+    /**
+     * 按id游标查询分片内创建时间早于指定时间的待投递消息
+     *
+     * @param lastId 上一批最后一条消息id，第一批传0
+     * @param before 只查询在此之前创建的消息
+     * @param shardIndex 分片序号
+     * @param shardTotal 分片总数
+     * @param size 每批数量
+     * @return 按id升序排列的消息
+     */
+    List<OrderOutbox> queryPending(Long lastId, LocalDateTime before, int shardIndex, int shardTotal, int size);
+}
@@ -41,9 +41,31 @@ public interface IRefundApplyService extends IService<RefundApply> {
 
     void handleRefundResult(RefundResultDTO refundResult);
 
-    List<RefundApply> queryApplyToSend(int page, int size);
+    /**
+     * 按id游标查询分片内审批通过、待发送的退款申请
+     *
+     * @param lastId 上一批最后一个申请id，第一批传0
+     * @param shardIndex 分片序号
+     * @param shardTotal 分片总数
+     * @param size 每批数量
+     * @return 按id升序排列的退款申请
+     */
+    List<RefundApply> queryApplyToSend(Long lastId, int shardIndex, int shardTotal, int size);
 
     void sendRefundRequest(RefundApply refundApply);
 
-    boolean checkRefundStatus(RefundApply refundApply);
+    /**
+     * 查询退款结果，退款尚未完成时向支付服务发送退款请求，只做远程调用，不更新数据库
+     *
+     * @param refundApply 退款申请
+     * @return 退款结果
+     */
+    RefundResultDTO requestRefund(RefundApply refundApply);
+
+    /**
+     * 批量处理退款结果
+     *
+     * @param results 退款结果
+     */
+    void handleRefundResults(List<RefundResultDTO> results);
 }
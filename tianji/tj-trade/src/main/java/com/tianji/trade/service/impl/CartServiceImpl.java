@@ -3,37 +3,44 @@ package com.tianji.trade.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.IdWorker;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
-import com.tianji.api.client.course.CourseClient;
-import com.tianji.api.dto.course.CourseFullInfoDTO;
 import com.tianji.api.dto.course.CourseSimpleInfoDTO;
 import com.tianji.common.exceptions.BadRequestException;
 import com.tianji.common.exceptions.BizIllegalException;
 import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.CollUtils;
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.common.utils.NumberUtils;
 import com.tianji.common.utils.StringUtils;
 import com.tianji.common.utils.UserContext;
+import com.tianji.trade.cache.CourseInfoCache;
 import com.tianji.trade.config.TradeProperties;
 import com.tianji.trade.domain.po.Cart;
+import com.tianji.trade.domain.po.CartVersion;
 import com.tianji.trade.domain.vo.CartVO;
 import com.tianji.trade.mapper.CartMapper;
+import com.tianji.trade.mapper.CartVersionMapper;
 import com.tianji.trade.service.ICartService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.tianji.trade.constants.RedisConstants.*;
 import static com.tianji.trade.constants.TradeErrorInfo.*;
 
 /**
  * <p>
  * 购物车条目信息，也就是购物车中的课程 服务实现类
  * </p>
+ * 购物车数据以redis为准，每个用户一个hash，变更的用户记录到待写回集合，由定时任务批量写回数据库，
+ * 每次变更都会递增缓存版本，写回时只用比数据库更新的快照覆盖
  *
  * @author 虎哥
  * @since 2022-08-28
@@ -43,59 +50,124 @@ import static com.tianji.trade.constants.TradeErrorInfo.*;
 @RequiredArgsConstructor
 public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements ICartService {
 
-    private final CourseClient courseClient;
+    private static final RedisScript<Long> ADD_CART_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/add_cart.lua"), Long.class);
+    private static final RedisScript<Long> REMOVE_CART_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/remove_cart.lua"), Long.class);
+    private static final RedisScript<Long> LOAD_CART_SCRIPT =
+            RedisScript.of(new ClassPathResource("lua/load_cart.lua"), Long.class);
+
+    private final CourseInfoCache courseInfoCache;
     private final TradeProperties tradeProperties;
+    private final StringRedisTemplate redisTemplate;
+    private final CartVersionMapper cartVersionMapper;
+    private final TransactionTemplate transactionTemplate;
 
     @Override
     public void addCourse2Cart(Long courseId) {
         Long userId = UserContext.getUser();
         log.debug("加入购物车请求：用户：{}，课程：{}", userId, courseId);
+        String key = StringUtils.format(CART_KEY_TEMPLATE, userId);
         // 1.查询该课程是否已经在购物车
-        if (checkCourseExists(courseId, userId)) {
+        if (Boolean.TRUE.equals(redisTemplate.opsForHash().hasKey(key, courseId.toString()))) {
             return;
         }
-        // 2.查询购物车中课程是否超出上限
-        checkCartsFull(userId);
-
-        // 3.根据id查询课程信息
-        CourseFullInfoDTO courseInfo = courseClient.getCourseInfoById(courseId, false, false);
+        // 2.根据id查询课程信息
+        CourseSimpleInfoDTO courseInfo = courseInfoCache.getCourseInfo(courseId);
 
-        // 4.判断是否为空
+        // 3.判断是否为空
         if (courseInfo == null) {
             throw new BadRequestException(COURSE_NOT_EXISTS);
         }
 
-        // 5.判断是否过期
+        // 4.判断是否过期
         if (courseInfo.getPurchaseEndTime().isBefore(LocalDateTime.now())) {
             // 已经过期，无法购买
             throw new BadRequestException(COURSE_EXPIRED);
         }
-        // 5.写入购物车
+        // 5.写入购物车，是否已存在、是否超出上限的判断和写入在脚本中原子完成
         Cart cart = new Cart();
         cart.setId(IdWorker.getId()); //购物车中的id
         cart.setCourseId(courseId); //课程id
         cart.setCourseName(courseInfo.getName());
-        cart.setUserId(UserContext.getUser());
+        cart.setUserId(userId);
         cart.setCoverUrl(courseInfo.getCoverUrl());
         cart.setPrice(courseInfo.getPrice());
-        save(cart);
+        cart.setCreateTime(LocalDateTime.now());
+        int result = executeAddScript(key, cart);
+        if (result == 3) {
+            // 缓存未加载，从数据库加载后重试
+            loadCartCache(userId);
+            result = executeAddScript(key, cart);
+        }
+        if (result == 2) {
+            throw new BizIllegalException(
+                    StringUtils.format(CARTS_FULL, tradeProperties.getMaxCourseAmount()));
+        }
         log.debug("加入购物车成功！用户：{}，课程：{}", userId, courseId);
     }
 
-    private void checkCartsFull(Long userId) {
-        int count = lambdaQuery().eq(Cart::getUserId, userId).count();
-        if (count >= tradeProperties.getMaxCourseAmount()) {
-            throw new BizIllegalException(
-                    StringUtils.format(CARTS_FULL, tradeProperties.getMaxCourseAmount()));
+    private int executeAddScript(String key, Cart cart) {
+        Long r = redisTemplate.execute(ADD_CART_SCRIPT, List.of(key, CART_DIRTY_USERS_KEY),
+                cart.getCourseId().toString(),
+                JsonUtils.toJsonStr(cart),
+                String.valueOf(tradeProperties.getMaxCourseAmount()),
+                String.valueOf(CART_TTL_SECONDS),
+                cart.getUserId().toString());
+        return NumberUtils.null2Zero(r).intValue();
+    }
+
+    /**
+     * 查询用户购物车，缓存未加载时从数据库加载
+     */
+    private List<Cart> queryCarts(Long userId) {
+        String key = StringUtils.format(CART_KEY_TEMPLATE, userId);
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+        if (CollUtils.isEmpty(entries)) {
+            return loadCartCache(userId);
+        }
+        return parseCarts(entries);
+    }
+
+    private List<Cart> parseCarts(Map<Object, Object> entries) {
+        List<Cart> carts = new ArrayList<>(entries.size());
+        for (Map.Entry<Object, Object> entry : entries.entrySet()) {
+            if (CART_LOADED_FIELD.equals(entry.getKey())) {
+                // 已加载的标记
+                continue;
+            }
+            carts.add(JsonUtils.toBean(entry.getValue().toString(), Cart.class));
         }
+        return carts;
     }
 
-    private boolean checkCourseExists(Long courseId, Long userId) {
-        int count = lambdaQuery()
-                .eq(Cart::getUserId, userId)
-                .eq(Cart::getCourseId, courseId)
-                .count();
-        return count > 0;
+    private static long parseVersion(Object value) {
+        // 旧版本的已加载标记值为空串，视为版本0
+        return value == null || StringUtils.isBlank(value.toString()) ? 0L : Long.parseLong(value.toString());
+    }
+
+    private List<Cart> loadCartCache(Long userId) {
+        // 1.查询数据库
+        CartVersion cartVersion = cartVersionMapper.selectById(userId);
+        List<Cart> carts = lambdaQuery().eq(Cart::getUserId, userId).list();
+        // 2.写入缓存，空购物车也写入已加载标记，避免反复查询数据库
+        List<String> args = new ArrayList<>(carts.size() * 2 + 2);
+        args.add(String.valueOf(CART_TTL_SECONDS));
+        args.add(String.valueOf(cartVersion == null ? 0L : cartVersion.getVersion()));
+        for (Cart cart : carts) {
+            args.add(cart.getCourseId().toString());
+            args.add(JsonUtils.toJsonStr(cart));
+        }
+        String key = StringUtils.format(CART_KEY_TEMPLATE, userId);
+        Long r = redisTemplate.execute(LOAD_CART_SCRIPT, List.of(key), args.toArray());
+        if (NumberUtils.null2Zero(r) == 0) {
+            // 3.缓存已经被其它请求加载，之后可能已有变更，以缓存为准
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+            if (CollUtils.isNotEmpty(entries)) {
+                return parseCarts(entries);
+            }
+        }
+        return carts;
     }
 
     @Override
@@ -103,15 +175,13 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
         // 1.获取用户
         Long userId = UserContext.getUser();
         // 2.查询我的购物车
-        List<Cart> carts = lambdaQuery().eq(Cart::getUserId, userId).list();
+        List<Cart> carts = queryCarts(userId);
         if (CollUtils.isEmpty(carts)) {
             return CollUtils.emptyList();
         }
         // 3.查询购物车中的课程
         List<Long> courseIds = carts.stream().map(Cart::getCourseId).collect(Collectors.toList());
-        List<CourseSimpleInfoDTO> courseSimpleInfos = courseClient.getSimpleInfoList(courseIds);
-        Map<Long, CourseSimpleInfoDTO> map = courseSimpleInfos.stream()
-                .collect(Collectors.toMap(CourseSimpleInfoDTO::getId, c -> c));
+        Map<Long, CourseSimpleInfoDTO> map = courseInfoCache.getCourseInfos(courseIds);
         // 4.组织 vo
         List<CartVO> list = new ArrayList<>(carts.size());
         for (Cart cart : carts) {
@@ -133,22 +203,23 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
 
     @Override
     public void deleteCartById(Long id) {
-        // 1.获取用户
-        Long userId = UserContext.getUser();
-        // 2.删除
-        remove(new LambdaQueryWrapper<Cart>()
-                .eq(Cart::getId, id)
-                .eq(Cart::getUserId, userId)
-        );
+        deleteCartByIds(CollUtils.singletonList(id));
     }
 
     @Override
     public void deleteCartByIds(List<Long> ids) {
         Long userId = UserContext.getUser();
-        remove(new LambdaQueryWrapper<Cart>()
-                .eq(Cart::getUserId, userId)
-                .in(Cart::getId, ids)
-        );
+        if (CollUtils.isEmpty(ids)) {
+            return;
+        }
+        // 1.根据条目id找到对应的课程
+        Set<Long> idSet = new HashSet<>(ids);
+        List<Long> courseIds = queryCarts(userId).stream()
+                .filter(c -> idSet.contains(c.getId()))
+                .map(Cart::getCourseId)
+                .collect(Collectors.toList());
+        // 2.删除
+        removeCartCache(userId, courseIds);
     }
 
     @Override
@@ -158,12 +229,92 @@ public class CartServiceImpl extends ServiceImpl<CartMapper, Cart> implements IC
             if(CollUtils.isEmpty(courseIds) || userId == null){
                 return;
             }
+            removeCartCache(userId, courseIds);
+        } catch (Exception e) {
+            log.error("从购物车删除用户已购买的课程发生异常，用户id：{}，课程id：{}", userId, courseIds, e);
+        }
+    }
+
+    private void removeCartCache(Long userId, List<Long> courseIds) {
+        if (CollUtils.isEmpty(courseIds)) {
+            return;
+        }
+        // 1.删除缓存并标记待写回，在脚本中原子完成，写回任务不会读到删除前的数据
+        String key = StringUtils.format(CART_KEY_TEMPLATE, userId);
+        List<String> args = new ArrayList<>(courseIds.size() + 1);
+        args.add(userId.toString());
+        courseIds.forEach(id -> args.add(id.toString()));
+        Long r = redisTemplate.execute(REMOVE_CART_SCRIPT, List.of(key, CART_DIRTY_USERS_KEY), args.toArray());
+        if (NumberUtils.null2Zero(r) == 0) {
+            // 2.缓存未加载，直接删除数据库
             remove(new LambdaQueryWrapper<Cart>()
                     .eq(Cart::getUserId, userId)
                     .in(Cart::getCourseId, courseIds)
             );
-        } catch (Exception e) {
-            log.error("从购物车删除用户已购买的课程发生异常，用户id：{}，课程id：{}", userId, courseIds, e);
         }
     }
+
+    @Override
+    public void flushDirtyCarts(int size) {
+        // 1.取出待写回的用户
+        List<String> members = redisTemplate.opsForSet().pop(CART_DIRTY_USERS_KEY, size);
+        if (CollUtils.isEmpty(members)) {
+            return;
+        }
+        try {
+            // 2.读取这些用户的购物车快照和缓存版本，hgetall是原子的，快照和版本一致；缓存已失效的用户跳过，以数据库为准
+            Map<Long, Long> versions = new TreeMap<>();
+            Map<Long, List<Cart>> snapshots = new HashMap<>(members.size());
+            for (String member : members) {
+                Long userId = Long.valueOf(member);
+                String key = StringUtils.format(CART_KEY_TEMPLATE, userId);
+                Map<Object, Object> entries = redisTemplate.opsForHash().entries(key);
+                if (CollUtils.isEmpty(entries)) {
+                    continue;
+                }
+                versions.put(userId, parseVersion(entries.get(CART_LOADED_FIELD)));
+                snapshots.put(userId, parseCarts(entries));
+            }
+            if (versions.isEmpty()) {
+                return;
+            }
+            // 3.在事务中覆盖数据库，提交失败也会进入下面的重试
+            transactionTemplate.executeWithoutResult(status -> writeCarts(versions, snapshots));
+        } catch (RuntimeException e) {
+            // 4.写回失败，放回待写回集合，等待下次重试
+            log.error("购物车写回数据库失败，用户id：{}", members, e);
+            redisTemplate.opsForSet().add(CART_DIRTY_USERS_KEY, members.toArray(new String[0]));
+            throw e;
+        }
+    }
+
+    private void writeCarts(Map<Long, Long> versions, Map<Long, List<Cart>> snapshots) {
+        // 1.按用户id升序锁定写回版本，多个实例写回同一用户时在这里串行
+        List<Long> userIds = new ArrayList<>(versions.keySet());
+        cartVersionMapper.insertIgnore(userIds);
+        Map<Long, Long> flushed = cartVersionMapper.queryForUpdate(userIds).stream()
+                .collect(Collectors.toMap(CartVersion::getUserId, CartVersion::getVersion));
+        // 2.丢弃不比数据库新的快照，说明其它实例已经用更新的快照写回了
+        List<Long> newerUserIds = new ArrayList<>(userIds.size());
+        List<CartVersion> newerVersions = new ArrayList<>(userIds.size());
+        List<Cart> carts = new ArrayList<>();
+        for (Long userId : userIds) {
+            Long version = versions.get(userId);
+            if (version <= flushed.getOrDefault(userId, 0L)) {
+                continue;
+            }
+            newerUserIds.add(userId);
+            newerVersions.add(new CartVersion().setUserId(userId).setVersion(version));
+            carts.addAll(snapshots.get(userId));
+        }
+        if (newerUserIds.isEmpty()) {
+            return;
+        }
+        // 3.整体覆盖这些用户的购物车数据，并记录写回版本
+        getBaseMapper().deleteByUserIds(newerUserIds);
+        if (CollUtils.isNotEmpty(carts)) {
+            getBaseMapper().insertBatch(carts);
+        }
+        cartVersionMapper.upsertBatch(newerVersions);
+    }
 }
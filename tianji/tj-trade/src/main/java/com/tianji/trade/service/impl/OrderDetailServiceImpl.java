@@ -16,6 +16,7 @@ import com.tianji.common.utils.*;
 import com.tianji.pay.sdk.client.PayClient;
 import com.tianji.pay.sdk.constants.PayChannel;
 import com.tianji.pay.sdk.constants.RefundChannelEnum;
+import com.tianji.trade.cache.EnrollCountCache;
 import com.tianji.trade.constants.OrderStatus;
 import com.tianji.trade.constants.RefundStatus;
 import com.tianji.trade.domain.po.Order;
@@ -52,6 +53,12 @@ import static com.tianji.trade.constants.TradeErrorInfo.ORDER_NOT_EXISTS;
 @RequiredArgsConstructor
 public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, OrderDetail> implements IOrderDetailService {
 
+    /**
+     * 计入报名人数的订单状态
+     */
+    private static final List<Integer> ENROLLED_STATUSES =
+            Arrays.asList(PAYED.getValue(), FINISHED.getValue(), ENROLLED.getValue());
+
     private final UserClient userClient;
 
     private final OrderMapper orderMapper;
@@ -62,6 +69,8 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
 
     private final RoleCache roleCache;
 
+    private final EnrollCountCache enrollCountCache;
+
     @Override
     @Transactional
     public void updateStatusByOrderId(Long orderId, Integer status) {
@@ -250,12 +259,21 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
     @Override
     public void markDetailSuccessByOrderId(Long id, String payChannel, LocalDateTime successTime) {
         List<OrderDetail> details = queryByOrderId(id);
+        List<OrderDetail> newEnrolled = new ArrayList<>(details.size());
         for (OrderDetail detail : details) {
+            // 1.已经计入报名人数，说明是重复的支付通知
+            if (OrderStatus.isEnrolled(detail.getStatus())) {
+                continue;
+            }
+            // 2.按状态条件更新，并发的重复通知只有一个能更新成功，只有更新成功的明细计入报名人数
             detail.setStatus(PAYED.getValue());
             detail.setPayChannel(payChannel);
             detail.setCourseExpireTime(successTime.plusMinutes(detail.getValidDuration()));
+            if (baseMapper.markPayedIfNotEnrolled(detail, ENROLLED_STATUSES) > 0) {
+                newEnrolled.add(detail);
+            }
         }
-        updateBatchById(details);
+        enrollCountCache.incrementAfterCommit(newEnrolled, 1);
     }
 
     @Override
@@ -266,6 +284,23 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
                 .update();
     }
 
+    @Override
+    public void markDetailRefunded(OrderDetail detail, Integer refundStatus) {
+        // 1.按状态条件更新，之前计入报名人数的才扣减，重复的退款申请不会重复扣减
+        int count = baseMapper.markRefundedIfEnrolled(
+                detail.getId(), OrderStatus.REFUNDED.getValue(), refundStatus, ENROLLED_STATUSES);
+        if (count > 0) {
+            enrollCountCache.incrementAfterCommit(CollUtils.singletonList(detail), -1);
+            return;
+        }
+        // 2.未计入报名人数，只更新状态
+        OrderDetail d = new OrderDetail();
+        d.setId(detail.getId());
+        d.setStatus(OrderStatus.REFUNDED.getValue());
+        d.setRefundStatus(refundStatus);
+        updateById(d);
+    }
+
     @Override
     public List<Long> queryCourseIdsByOrderId(Long orderId) {
         return baseMapper.queryCourseIdsByOrderId(orderId);
@@ -295,39 +330,83 @@ public class OrderDetailServiceImpl extends ServiceImpl<OrderDetailMapper, Order
 
     @Override
     public Map<Long, Integer> countEnrollNumOfCourse(List<Long> courseIdList) {
-        // 1.条件构造
+        // 1.查询缓存
+        Map<Long, Integer> cached = enrollCountCache.getEnrollNumOfCourses(courseIdList);
+        if (cached != null) {
+            return cached;
+        }
+        // 2.缓存尚未校准，条件构造
         QueryWrapper<OrderDetail> wrapper = new QueryWrapper<>();
         wrapper.lambda()
                 .in(OrderDetail::getCourseId, courseIdList)
-                .in(OrderDetail::getStatus, PAYED.getValue(), FINISHED.getValue(), ENROLLED.getValue());
+                .in(OrderDetail::getStatus, ENROLLED_STATUSES);
 
-        // 2.统计
+        // 3.统计
         List<IdAndNumDTO> list = baseMapper.countEnrollNumOfCourse(wrapper);
 
-        // 3.转换返回
+        // 4.转换返回
         return IdAndNumDTO.toMap(list);
     }
 
     @Override
     public Map<Long, Integer> countEnrollCourseOfStudent(List<Long> studentIds) {
-        // 1.条件构造
+        // 1.查询缓存
+        Map<Long, Integer> cached = enrollCountCache.getEnrollCourseOfStudents(studentIds);
+        if (cached != null) {
+            return cached;
+        }
+        // 2.缓存尚未校准，条件构造
         QueryWrapper<OrderDetail> wrapper = new QueryWrapper<>();
         wrapper.lambda()
                 .in(OrderDetail::getUserId, studentIds)
-                .in(OrderDetail::getStatus, PAYED.getValue(), FINISHED.getValue(), ENROLLED.getValue());
-        // 2.统计
+                .in(OrderDetail::getStatus, ENROLLED_STATUSES);
+        // 3.统计
         List<IdAndNumDTO> list = baseMapper.countEnrollCourseOfStudent(wrapper);
 
-        // 3.转换返回
+        // 4.转换返回
         return IdAndNumDTO.toMap(list);
     }
 
+    @Override
+    public void reconcileEnrollCounts(int batchSize) {
+        // 1.按课程id分批统计报名人数，覆盖缓存
+        long lastId = 0;
+        while (true) {
+            long cursor = lastId;
+            List<IdAndNumDTO> list = enrollCountCache.reconcileEnrollNumOfCourses(
+                    () -> baseMapper.countEnrollNumOfCourseAfter(cursor, batchSize, ENROLLED_STATUSES));
+            if (CollUtils.isEmpty(list)) {
+                break;
+            }
+            lastId = list.get(list.size() - 1).getId();
+            if (list.size() < batchSize) {
+                break;
+            }
+        }
+        // 2.按学员id分批统计报名课程数，覆盖缓存
+        lastId = 0;
+        while (true) {
+            long cursor = lastId;
+            List<IdAndNumDTO> list = enrollCountCache.reconcileEnrollCourseOfStudents(
+                    () -> baseMapper.countEnrollCourseOfStudentAfter(cursor, batchSize, ENROLLED_STATUSES));
+            if (CollUtils.isEmpty(list)) {
+                break;
+            }
+            lastId = list.get(list.size() - 1).getId();
+            if (list.size() < batchSize) {
+                break;
+            }
+        }
+        // 3.全部校准完成，缓存可以直接使用
+        enrollCountCache.markLoaded();
+    }
+
     @Override
     public CoursePurchaseInfoDTO getPurchaseInfoOfCourse(Long courseId) {
         // 1.统计报名人数
         Integer enrollNum = lambdaQuery()
                 .eq(OrderDetail::getCourseId, courseId)
-                .in(OrderDetail::getStatus, PAYED.getValue(), FINISHED.getValue(), ENROLLED.getValue())
+                .in(OrderDetail::getStatus, ENROLLED_STATUSES)
                 .count();
         // 2.统计退款人数
         Integer refundNum = lambdaQuery()
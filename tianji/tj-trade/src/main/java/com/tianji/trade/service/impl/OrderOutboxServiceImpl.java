@@ -0,0 +1,84 @@
+package com.tianji.trade.service.impl;
+
+import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.constants.MqConstants;
+import com.tianji.common.exceptions.DbException;
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.trade.constants.TradeErrorInfo;
+import com.tianji.trade.domain.po.OrderOutbox;
+import com.tianji.trade.mapper.OrderOutboxMapper;
+import com.tianji.trade.service.IOrderOutboxService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * <p>
+ * 订单本地消息表 服务实现类
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderOutboxServiceImpl extends ServiceImpl<OrderOutboxMapper, OrderOutbox> implements IOrderOutboxService {
+
+    /**
+     * 最大投递失败次数，达到后不再重试
+     */
+    static final int MAX_RETRY_TIMES = 10;
+
+    private final RabbitMqHelper rabbitMqHelper;
+
+    @Override
+    public OrderOutbox saveOutbox(Long orderId, String routingKey, Object message) {
+        OrderOutbox outbox = new OrderOutbox()
+                .setOrderId(orderId)
+                .setRoutingKey(routingKey)
+                .setPayload(JsonUtils.toJsonStr(message))
+                .setStatus(OrderOutbox.PENDING)
+                .setRetryTimes(0);
+        if (!save(outbox)) {
+            throw new DbException(TradeErrorInfo.PLACE_ORDER_FAILED);
+        }
+        return outbox;
+    }
+
+    @Override
+    public void relay(OrderOutbox outbox) {
+        try {
+            // 1.投递消息，消费者需要保证幂等，因为中继任务与下单线程可能重复投递
+            rabbitMqHelper.send(
+                    MqConstants.Exchange.ORDER_EXCHANGE,
+                    outbox.getRoutingKey(),
+                    JsonUtils.toBean(outbox.getPayload(), OrderBasicDTO.class));
+        } catch (Exception e) {
+            log.error("订单消息投递失败，等待中继任务重试，消息id：{}", outbox.getId(), e);
+            baseMapper.incrRetryTimes(outbox.getId(), MAX_RETRY_TIMES);
+            if (outbox.getRetryTimes() != null && outbox.getRetryTimes() + 1 >= MAX_RETRY_TIMES) {
+                log.error("订单消息投递失败次数达到上限，不再重试，需人工处理，消息id：{}，订单id：{}",
+                        outbox.getId(), outbox.getOrderId());
+            }
+            return;
+        }
+        // 2.标记为已投递
+        baseMapper.markSent(outbox.getId());
+    }
+
+    @Override
+    public List<OrderOutbox> queryPending(Long lastId, LocalDateTime before, int shardIndex, int shardTotal, int size) {
+        // 按订单id分片，同一订单的消息由同一个分片按id正序投递
+        return lambdaQuery()
+                .eq(OrderOutbox::getStatus, OrderOutbox.PENDING)
+                .lt(OrderOutbox::getCreateTime, before)
+                .gt(OrderOutbox::getId, lastId)
+                .apply(shardTotal > 1, "MOD(order_id, {0}) = {1}", shardTotal, shardIndex)
+                .orderByAsc(OrderOutbox::getId)
+                .last("LIMIT " + size)
+                .list();
+    }
+}
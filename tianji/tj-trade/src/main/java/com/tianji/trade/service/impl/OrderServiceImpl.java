@@ -21,6 +21,7 @@ import com.tianji.common.utils.BeanUtils;
 import com.tianji.common.utils.CollUtils;
 import com.tianji.common.utils.UserContext;
 import com.tianji.pay.sdk.dto.PayResultDTO;
+import com.tianji.trade.cache.EnrollCountCache;
 import com.tianji.trade.config.TradeProperties;
 import com.tianji.trade.constants.OrderCancelReason;
 import com.tianji.trade.constants.OrderStatus;
@@ -29,20 +30,25 @@ import com.tianji.trade.constants.TradeErrorInfo;
 import com.tianji.trade.domain.dto.PlaceOrderDTO;
 import com.tianji.trade.domain.po.Order;
 import com.tianji.trade.domain.po.OrderDetail;
+import com.tianji.trade.domain.po.OrderOutbox;
 import com.tianji.trade.domain.query.OrderPageQuery;
 import com.tianji.trade.domain.vo.*;
+import com.tianji.trade.handler.OrderStatusWatcher;
 import com.tianji.trade.mapper.OrderMapper;
-import com.tianji.trade.service.ICartService;
 import com.tianji.trade.service.IOrderDetailService;
+import com.tianji.trade.service.IOrderOutboxService;
 import com.tianji.trade.service.IOrderService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import static com.tianji.common.constants.ErrorInfo.Msg.OPERATE_FAILED;
@@ -57,22 +63,26 @@ import static com.tianji.trade.constants.TradeErrorInfo.ORDER_NOT_EXISTS;
  * @author 虎哥
  * @since 2022-08-29
  */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements IOrderService {
 
     private final CourseClient courseClient;
     private final IOrderDetailService detailService;
-    private final ICartService cartService;
     private final TradeProperties tradeProperties;
     private final RabbitMqHelper rabbitMqHelper;
     private final PromotionClient promotionClient;
+    private final IOrderOutboxService outboxService;
+    private final TransactionTemplate transactionTemplate;
+    private final EnrollCountCache enrollCountCache;
+    private final OrderStatusWatcher orderStatusWatcher;
 
     @Override
-    @Transactional
     public PlaceOrderResultVO placeOrder(PlaceOrderDTO placeOrderDTO) {
         Long userId = UserContext.getUser();
         // 1.查询课程费用信息，如果不可购买，这里直接报错
+        // 远程调用都在事务之外完成，避免调用期间长时间占用数据库连接
         List<CourseSimpleInfoDTO> courseInfos = getOnShelfCourse(placeOrderDTO.getCourseIds());
         // 2.封装订单信息
         Order order = new Order();
@@ -112,14 +122,32 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             orderDetails.add(packageOrderDetail(courseInfo, order, discountValue));
         }
 
-        // 4.写入数据库
-        saveOrderAndDetails(order, orderDetails);
+        // 4.同步核销优惠券，券已被使用时核销失败，下单终止，避免同一张券用于多个订单
+        List<Long> usedCouponIds = order.getCouponIds();
+        if (CollUtils.isNotEmpty(usedCouponIds)) {
+            promotionClient.writeOffCoupon(usedCouponIds);
+        }
 
-        // 5.删除购物车数据
-        cartService.deleteCartByUserAndCourseIds(userId, placeOrderDTO.getCourseIds());
+        // 5.写入数据库，订单、订单详情和下单消息在同一个事务中
+        OrderBasicDTO message = OrderBasicDTO.builder()
+                .orderId(orderId)
+                .userId(userId)
+                .courseIds(placeOrderDTO.getCourseIds())
+                .build();
+        OrderOutbox outbox;
+        try {
+            outbox = transactionTemplate.execute(status -> {
+                saveOrderAndDetails(order, orderDetails);
+                return outboxService.saveOutbox(orderId, MqConstants.Key.ORDER_PLACE_KEY, message);
+            });
+        } catch (RuntimeException e) {
+            // 订单未写入，退还已核销的优惠券
+            refundCouponQuietly(orderId, usedCouponIds);
+            throw e;
+        }
 
-        // 6.核销优惠券
-        promotionClient.writeOffCoupon(couponIds);
+        // 6.事务提交后投递下单消息，由消费者删除购物车数据，投递失败由中继任务重试
+        outboxService.relay(outbox);
 
         // 7.构建下单结果
         return PlaceOrderResultVO.builder()
@@ -130,6 +158,17 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
                 .build();
     }
 
+    private void refundCouponQuietly(Long orderId, List<Long> couponIds) {
+        if (CollUtils.isEmpty(couponIds)) {
+            return;
+        }
+        try {
+            promotionClient.refundCoupon(couponIds);
+        } catch (Exception e) {
+            log.error("下单失败后退还优惠券失败，订单id：{}，优惠券id：{}", orderId, couponIds, e);
+        }
+    }
+
     private List<CourseSimpleInfoDTO> getOnShelfCourse(List<Long> courseIds) {
         // 1.查询课程
         List<CourseSimpleInfoDTO> courseInfos = courseClient.getSimpleInfoList(courseIds);
@@ -182,8 +221,9 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         // 3.订单详情
         OrderDetail detail = packageOrderDetail(courseInfo, order, 0);
 
-        // 4.写入数据库
+        // 4.写入数据库，事务提交后更新报名计数
         saveOrderAndDetails(order, CollUtils.singletonList(detail));
+        enrollCountCache.incrementAfterCommit(CollUtils.singletonList(detail), 1);
 
         // 5.发送MQ消息，通知报名成功
 
@@ -297,6 +337,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         }
         // 5.更新订单条目的状态
         detailService.updateStatusByOrderId(orderId, OrderStatus.CLOSED.getValue());
+        orderStatusWatcher.publishAfterCommit(orderId, OrderStatus.CLOSED.getValue());
 
         // 6.退还优惠券
         promotionClient.refundCoupon(order.getCouponIds());
@@ -326,30 +367,41 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
     @Override
     public PageDTO<OrderPageVO> queryMyOrderPage(OrderPageQuery pageQuery) {
         Long userId = UserContext.getUser();
-        // 1.分页排序条件
-        Page<Order> p = pageQuery.toMpPageDefaultSortByCreateTimeDesc();
-        // 2.分页查询订单
         Integer status = pageQuery.getStatus();
-        Page<Order> page = lambdaQuery()
+        int size = pageQuery.getPageSize();
+        // 1.统计订单总数
+        long total = lambdaQuery()
                 .eq(status != null, Order::getStatus, status)
                 .eq(Order::getUserId, userId)
-                .page(p);
-        // 3.数据判断
-        List<Order> records = page.getRecords();
-        if (CollUtils.isEmpty(records)) {
-            return PageDTO.empty(p);
+                .count();
+        long pages = (total + size - 1) / size;
+        if (total == 0) {
+            return PageDTO.empty(total, pages);
+        }
+        // 2.按创建时间倒序查询本页订单id，传入游标时从游标处继续，否则按页码跳过，都只扫描索引
+        boolean byCursor = pageQuery.getLastCreateTime() != null && pageQuery.getLastId() != null;
+        List<Long> orderIds = getBaseMapper().queryMyOrderIds(userId, status,
+                pageQuery.getLastCreateTime(), pageQuery.getLastId(), byCursor ? 0 : pageQuery.from(), size);
+        if (CollUtils.isEmpty(orderIds)) {
+            return PageDTO.empty(total, pages);
         }
+        // 3.根据id查询订单
+        Map<Long, Order> orderMap = listByIds(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
         // 4.查询订单明细信息
-        List<Long> orderIds = records.stream().map(Order::getId).collect(Collectors.toList());
-        // 4.1.根据订单id查询订单明细
+        // 4.1.一次查询本页所有订单的明细
         List<OrderDetail> details = detailService.queryByOrderIds(orderIds);
         // 4.2.将订单明细分组，key是订单id，值是订单下的所有detail
         Map<Long, List<OrderDetailVO>> detailMap = details.stream()
                 .map(od -> BeanUtils.copyBean(od, OrderDetailVO.class))
                 .collect(Collectors.groupingBy(OrderDetailVO::getOrderId));
-        // 5.转换VO
+        // 5.转换VO，按订单id的查询顺序排列
         List<OrderPageVO> list = new ArrayList<>(orderIds.size());
-        for (Order record : records) {
+        for (Long orderId : orderIds) {
+            Order record = orderMap.get(orderId);
+            if (record == null) {
+                continue;
+            }
             // 5.1.转换订单
             OrderPageVO v = BeanUtils.toBean(record, OrderPageVO.class);
             list.add(v);
@@ -357,7 +409,7 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
             v.setDetails(detailMap.get(record.getId()));
             v.setStatusDesc(OrderStatus.desc(v.getStatus()));
         }
-        return PageDTO.of(page, list);
+        return new PageDTO<>(total, pages, list);
     }
 
     @Override
@@ -427,6 +479,8 @@ public class OrderServiceImpl extends ServiceImpl<OrderMapper, Order> implements
         updateById(o);
         // 3.更新订单条目
         detailService.markDetailSuccessByOrderId(o.getId(), payResult.getPayChannel(), payResult.getSuccessTime());
+        // 3.1.通知等待支付结果的客户端
+        orderStatusWatcher.publishAfterCommit(o.getId(), OrderStatus.PAYED.getValue());
         // 4.查询订单包含的课程信息
         List<Long> cIds = detailService.queryCourseIdsByOrderId(o.getId());
         // 5.发送MQ消息，通知报名成功
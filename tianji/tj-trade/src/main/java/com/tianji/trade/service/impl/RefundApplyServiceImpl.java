@@ -154,12 +154,8 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
             // 退款申请失败
             throw new DbException(ErrorInfo.Msg.DB_SAVE_EXCEPTION);
         }
-        // 8.更新订单详情状态
-        OrderDetail d = new OrderDetail();
-        d.setId(detail.getId());
-        d.setStatus(OrderStatus.REFUNDED.getValue());
-        d.setRefundStatus(refundApply.getStatus());
-        detailService.updateById(d);
+        // 8.更新订单详情状态，申请退款后不再计入报名人数
+        detailService.markDetailRefunded(detail, refundApply.getStatus());
         // 9.如果是管理员申请的，立刻异步发送退款请求
         if(!isStudent) {
             sendRefundRequestAsync(refundApply);
@@ -404,103 +400,122 @@ public class RefundApplyServiceImpl extends ServiceImpl<RefundApplyMapper, Refun
     @Override
     @Transactional
     public void handleRefundResult(RefundResultDTO result) {
-        // 1.查询退款申请记录
-        RefundApply refundApply = getById(result.getBizRefundOrderId());
-        if (refundApply == null) {
-            return;
-        }
-        UserContext.setUser(refundApply.getApprover());
-        // 2.判断结果，支付宝支付有可能直接返回退款成功结果，微信只会返回退款中
-        RefundApply r = new RefundApply();
-        r.setId(refundApply.getId());
-        r.setRefundChannel(result.getRefundChannel());
-        r.setRefundOrderNo(result.getRefundOrderNo());
-        // 2.1.判断状态是否退款中
-        int status = result.getStatus();
-        if(status == RefundResultDTO.RUNNING){
-            // 退款中，结果未知，将其它数据写入数据库即可
-            updateById(r);
-            return;
-        }
-
-        // 2.2.判断退款成功还是失败
-        if(status == RefundResultDTO.SUCCESS){
-            // 退款成功，记录状态
-            r.setStatus(RefundStatus.SUCCESS.getValue());
-            r.setMessage(RefundStatus.SUCCESS.getProgressName());
-        }else {
-            // 2.3.退款失败，需要记录状态及退款失败原因
-            r.setStatus(RefundStatus.FAILED.getValue());
-            r.setMessage(RefundStatus.FAILED.getProgressName());
-            r.setFailedReason(result.getMsg());
-        }
-
-        // 2.4.更新数据库
-        r.setFinishTime(LocalDateTime.now());
-        updateById(r);
-
-        // 3.更新子订单状态
-        detailService.updateRefundStatusById(refundApply.getOrderDetailId(), r.getStatus());
-
-        // 4.如果是退款成功，要取消用户报名的课程
-        if (status == RefundResultDTO.SUCCESS) {
-            // 4.1.查询子订单信息
-            OrderDetail detail = detailService.getById(refundApply.getOrderDetailId());
-            // 4.2.发送MQ消息，通知报名成功
-            rabbitMqHelper.send(
-                    MqConstants.Exchange.ORDER_EXCHANGE,
-                    MqConstants.Key.ORDER_REFUND_KEY,
-                    OrderBasicDTO.builder()
-                            .orderId(refundApply.getOrderId())
-                            .userId(refundApply.getUserId())
-                            .courseIds(CollUtils.singletonList(detail.getCourseId())).build());
-        }
+        // 单个结果与批量结果的处理逻辑一致
+        handleRefundResults(CollUtils.singletonList(result));
     }
 
     @Override
-    public List<RefundApply> queryApplyToSend(int index, int size) {
-        Page<RefundApply> page = lambdaQuery()
+    public List<RefundApply> queryApplyToSend(Long lastId, int shardIndex, int shardTotal, int size) {
+        // 按id游标查询，走(status, id)索引，不会因为页码增大而变慢
+        return lambdaQuery()
                 .eq(RefundApply::getStatus, AGREE.getValue())
-                .page(new Page<>(index, size));
-        if (page == null || CollUtils.isEmpty(page.getRecords())) {
-            return CollUtils.emptyList();
-        }
-        return page.getRecords();
+                .gt(RefundApply::getId, lastId)
+                .apply(shardTotal > 1, "MOD(id, {0}) = {1}", shardTotal, shardIndex)
+                .orderByAsc(RefundApply::getId)
+                .last("LIMIT " + size)
+                .list();
     }
 
     @Override
     @Transactional
     public void sendRefundRequest(RefundApply refundApply) {
-        // 1.组织请求参数
-        RefundApplyDTO applyDTO = RefundApplyDTO.builder()
-                .bizOrderNo(refundApply.getOrderId())
-                .bizRefundOrderNo(refundApply.getId())
-                .refundAmount(refundApply.getRefundAmount())
-                .build();
-        // 2.发送退款请求
-        RefundResultDTO result = payClient.applyRefund(applyDTO);
+        // 1.发送退款请求
+        RefundResultDTO result = payClient.applyRefund(buildRefundApplyDTO(refundApply));
 
-        // 3.处理退款结果
+        // 2.处理退款结果
         handleRefundResult(result);
     }
 
+    @Override
+    public RefundResultDTO requestRefund(RefundApply refundApply) {
+        // 1.远程查询，判断是否已经退款结束
+        RefundResultDTO result = payClient.queryRefundResult(refundApply.getId());
+        if (result != null && result.getStatus() != RefundResultDTO.RUNNING) {
+            return result;
+        }
+        // 2.退款数据不存在或者还在退款中，发送退款请求
+        return payClient.applyRefund(buildRefundApplyDTO(refundApply));
+    }
+
     @Override
     @Transactional
-    public boolean checkRefundStatus(RefundApply refundApply) {
-        // 1.先检查是否已经退款成功
-        Integer status = refundApply.getStatus();
-        if(!AGREE.equalsValue(status)){
-            return true;
+    public void handleRefundResults(List<RefundResultDTO> results) {
+        if (CollUtils.isEmpty(results)) {
+            return;
         }
-        // 2.远程查询，判断是否已经退款成功
-        RefundResultDTO result = payClient.queryRefundResult(refundApply.getId());
-        if (result == null) {
-            // 退款数据不存在，放弃处理
-            return false;
+        // 1.查询退款申请记录
+        Map<Long, RefundResultDTO> resultMap = results.stream()
+                .collect(Collectors.toMap(RefundResultDTO::getBizRefundOrderId, r -> r, (r1, r2) -> r2));
+        List<RefundApply> applies = listByIds(resultMap.keySet());
+        if (CollUtils.isEmpty(applies)) {
+            return;
         }
-        // 3.处理退款结果
-        handleRefundResult(result);
-        return result.getStatus() != RefundResultDTO.RUNNING;
+        // 2.组织要更新的数据
+        LocalDateTime now = LocalDateTime.now();
+        List<RefundApply> applyUpdates = new ArrayList<>(applies.size());
+        List<OrderDetail> detailUpdates = new ArrayList<>(applies.size());
+        List<RefundApply> succeeded = new ArrayList<>();
+        for (RefundApply apply : applies) {
+            RefundResultDTO result = resultMap.get(apply.getId());
+            RefundApply r = new RefundApply();
+            r.setId(apply.getId());
+            r.setRefundChannel(result.getRefundChannel());
+            r.setRefundOrderNo(result.getRefundOrderNo());
+            // 批量更新时不会自动填充更新人，与单条处理一致记录为审批人
+            r.setUpdater(apply.getApprover());
+            applyUpdates.add(r);
+            // 2.1.退款中，结果未知，只记录其它数据
+            int status = result.getStatus();
+            if (status == RefundResultDTO.RUNNING) {
+                continue;
+            }
+            // 2.2.判断退款成功还是失败
+            if (status == RefundResultDTO.SUCCESS) {
+                r.setStatus(RefundStatus.SUCCESS.getValue());
+                r.setMessage(RefundStatus.SUCCESS.getProgressName());
+                succeeded.add(apply);
+            } else {
+                r.setStatus(RefundStatus.FAILED.getValue());
+                r.setMessage(RefundStatus.FAILED.getProgressName());
+                r.setFailedReason(result.getMsg());
+            }
+            r.setFinishTime(now);
+            // 2.3.子订单状态
+            OrderDetail d = new OrderDetail();
+            d.setId(apply.getOrderDetailId());
+            d.setRefundStatus(r.getStatus());
+            d.setUpdater(apply.getApprover());
+            detailUpdates.add(d);
+        }
+        // 3.批量更新退款申请和子订单状态
+        updateBatchById(applyUpdates);
+        if (CollUtils.isNotEmpty(detailUpdates)) {
+            detailService.updateBatchById(detailUpdates);
+        }
+        // 4.退款成功的，要取消用户报名的课程
+        if (CollUtils.isEmpty(succeeded)) {
+            return;
+        }
+        Set<Long> detailIds = succeeded.stream().map(RefundApply::getOrderDetailId).collect(Collectors.toSet());
+        Map<Long, Long> courseIdMap = detailService.listByIds(detailIds).stream()
+                .collect(Collectors.toMap(OrderDetail::getId, OrderDetail::getCourseId));
+        for (RefundApply apply : succeeded) {
+            rabbitMqHelper.send(
+                    MqConstants.Exchange.ORDER_EXCHANGE,
+                    MqConstants.Key.ORDER_REFUND_KEY,
+                    OrderBasicDTO.builder()
+                            .orderId(apply.getOrderId())
+                            .userId(apply.getUserId())
+                            .courseIds(CollUtils.singletonList(courseIdMap.get(apply.getOrderDetailId()))).build());
+        }
+    }
+
+    private RefundApplyDTO buildRefundApplyDTO(RefundApply refundApply) {
+        return RefundApplyDTO.builder()
+                .bizOrderNo(refundApply.getOrderId())
+                .bizRefundOrderNo(refundApply.getId())
+                .refundAmount(refundApply.getRefundAmount())
+                .build();
     }
 
     private void sendRefundRequestAsync(RefundApply refundApply) {
@@ -0,0 +1,23 @@
+package com.tianji.trade.task;
+
+import com.tianji.trade.service.ICartService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 购物车缓存写回任务，批量把redis中有变更的购物车写回数据库
+ */
+@Component
+@RequiredArgsConstructor
+public class CartWriteBehindTask {
+
+    private static final int MAX_FLUSH_SIZE = 200;
+
+    private final ICartService cartService;
+
+    @Scheduled(fixedDelay = 1000)
+    public void flushDirtyCarts(){
+        cartService.flushDirtyCarts(MAX_FLUSH_SIZE);
+    }
+}
@@ -0,0 +1,22 @@
+-- KEYS[1]：用户购物车key，KEYS[2]：待写回的用户集合key
+-- ARGV[1]：课程id，ARGV[2]：购物车条目快照，ARGV[3]：购物车容量上限，ARGV[4]：缓存有效期，ARGV[5]：用户id
+if(redis.call('exists', KEYS[1]) == 0) then
+    -- 缓存未加载
+    return 3
+end
+if(redis.call('hexists', KEYS[1], ARGV[1]) == 1) then
+    -- 课程已经在购物车
+    return 1
+end
+-- 减去已加载标记占用的field
+if(redis.call('hlen', KEYS[1]) - 1 >= tonumber(ARGV[3])) then
+    -- 购物车已满
+    return 2
+end
+redis.call('hset', KEYS[1], ARGV[1], ARGV[2])
+-- 已加载标记的值是缓存版本，每次变更+1，写回时据此丢弃较旧的快照
+local version = tonumber(redis.call('hget', KEYS[1], '0')) or 0
+redis.call('hset', KEYS[1], '0', version + 1)
+redis.call('expire', KEYS[1], ARGV[4])
+redis.call('sadd', KEYS[2], ARGV[5])
+return 0
@@ -0,0 +1,13 @@
+-- KEYS[1]：用户购物车key
+-- ARGV[1]：缓存有效期，ARGV[2]：数据库中的写回版本，ARGV[3...]：课程id和购物车条目快照，交替排列
+if(redis.call('exists', KEYS[1]) == 1) then
+    -- 已经被其它请求加载，不能覆盖，否则会把并发删除的条目写回缓存
+    return 0
+end
+-- 已加载标记的值是缓存版本，从数据库的写回版本开始递增
+redis.call('hset', KEYS[1], '0', ARGV[2])
+for i = 3, #ARGV, 2 do
+    redis.call('hset', KEYS[1], ARGV[i], ARGV[i + 1])
+end
+redis.call('expire', KEYS[1], ARGV[1])
+return 1
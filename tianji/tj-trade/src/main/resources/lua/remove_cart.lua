@@ -0,0 +1,13 @@
+-- KEYS[1]：用户购物车key，KEYS[2]：待写回的用户集合key
+-- ARGV[1]：用户id，ARGV[2...]：课程id
+if(redis.call('exists', KEYS[1]) == 0) then
+    -- 缓存未加载
+    return 0
+end
+-- 先删除再标记待写回，写回任务取出用户时读到的一定是删除后的数据
+redis.call('hdel', KEYS[1], unpack(ARGV, 2))
+-- 已加载标记的值是缓存版本，每次变更+1，写回时据此丢弃较旧的快照
+local version = tonumber(redis.call('hget', KEYS[1], '0')) or 0
+redis.call('hset', KEYS[1], '0', version + 1)
+redis.call('sadd', KEYS[2], ARGV[1])
+return 1
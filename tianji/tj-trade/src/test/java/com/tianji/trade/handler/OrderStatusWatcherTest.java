@@ -0,0 +1,73 @@
+package com.tianji.trade.handler;
+
+import com.tianji.trade.config.TradeProperties;
+import com.tianji.trade.constants.OrderStatus;
+import com.tianji.trade.domain.vo.PlaceOrderResultVO;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class OrderStatusWatcherTest {
+
+    private static final int CLIENT_NUM = 20_000;
+
+    @Test
+    void testWaitingClientsReadDbOnce() {
+        OrderStatusWatcher watcher = new OrderStatusWatcher(mock(StringRedisTemplate.class), new TradeProperties());
+        AtomicInteger dbReads = new AtomicInteger();
+
+        // 1.模拟2万个客户端等待各自订单的支付结果，订阅时各查询一次数据库
+        List<DeferredResult<PlaceOrderResultVO>> results = new ArrayList<>(CLIENT_NUM);
+        for (long orderId = 1; orderId <= CLIENT_NUM; orderId++) {
+            long id = orderId;
+            results.add(watcher.watch(id, () -> {
+                dbReads.incrementAndGet();
+                return PlaceOrderResultVO.builder().orderId(id).payAmount(100).status(OrderStatus.NO_PAY.getValue()).build();
+            }));
+        }
+        assertEquals(CLIENT_NUM, watcher.waitingSize());
+        assertEquals(CLIENT_NUM, dbReads.get());
+        results.forEach(r -> assertFalse(r.hasResult()));
+
+        // 2.支付成功通知到达，直接返回新状态，不再查询数据库
+        for (long orderId = 1; orderId <= CLIENT_NUM; orderId++) {
+            watcher.onMessage(message(orderId + ":" + OrderStatus.PAYED.getValue()), null);
+        }
+
+        assertEquals(CLIENT_NUM, dbReads.get());
+        assertEquals(0, watcher.waitingSize());
+        for (DeferredResult<PlaceOrderResultVO> r : results) {
+            PlaceOrderResultVO vo = (PlaceOrderResultVO) r.getResult();
+            assertEquals(OrderStatus.PAYED.getValue(), vo.getStatus());
+            assertEquals(100, vo.getPayAmount());
+        }
+    }
+
+    @Test
+    void testFinishedOrderReturnsImmediately() {
+        OrderStatusWatcher watcher = new OrderStatusWatcher(mock(StringRedisTemplate.class), new TradeProperties());
+
+        DeferredResult<PlaceOrderResultVO> result = watcher.watch(1L, () ->
+                PlaceOrderResultVO.builder().orderId(1L).status(OrderStatus.CLOSED.getValue()).build());
+
+        assertTrue(result.hasResult());
+        assertEquals(OrderStatus.CLOSED.getValue(), ((PlaceOrderResultVO) result.getResult()).getStatus());
+        // 其它订单的通知不影响
+        watcher.onMessage(message("2:" + OrderStatus.PAYED.getValue()), null);
+        assertEquals(OrderStatus.CLOSED.getValue(), ((PlaceOrderResultVO) result.getResult()).getStatus());
+    }
+
+    private static DefaultMessage message(String body) {
+        return new DefaultMessage("trade:order:status:changed".getBytes(StandardCharsets.UTF_8),
+                body.getBytes(StandardCharsets.UTF_8));
+    }
+}
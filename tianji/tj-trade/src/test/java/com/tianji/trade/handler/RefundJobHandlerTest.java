@@ -0,0 +1,160 @@
+package com.tianji.trade.handler;
+
+import com.tianji.pay.sdk.client.PayClient;
+import com.tianji.pay.sdk.dto.*;
+import com.tianji.trade.config.ThreadPoolConfig;
+import com.tianji.trade.config.TradeProperties;
+import com.tianji.trade.domain.po.RefundApply;
+import com.tianji.trade.service.impl.RefundApplyServiceImpl;
+import com.xxl.job.core.context.XxlJobContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RefundJobHandlerTest {
+
+    private static final int REFUND_NUM = 1500;
+
+    private final ThreadPoolTaskExecutor executor = new ThreadPoolConfig().sendRefundRequestExecutor();
+
+    @AfterEach
+    void tearDown() {
+        XxlJobContext.setXxlJobContext(null);
+        executor.shutdown();
+    }
+
+    @Test
+    void testConcurrentRefundRequests() {
+        // 1.本地模拟的支付服务，每次请求耗时10ms
+        LocalPayClient payClient = new LocalPayClient(10);
+        List<List<RefundResultDTO>> batches = Collections.synchronizedList(new ArrayList<>());
+        RefundJobHandler handler = newHandler(payClient, batches);
+
+        handler.handleRefundRequest();
+
+        // 2.每个申请都发送了一次退款请求，并发不超过窗口大小
+        assertEquals(REFUND_NUM, payClient.applied.size());
+        assertTrue(payClient.maxInFlight.get() <= new TradeProperties().getRefundConcurrency());
+        // 3.退款结果按批次更新
+        assertEquals((REFUND_NUM + 99) / 100, batches.size());
+        assertEquals(REFUND_NUM, batches.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void testShardAndFailedRequest() {
+        // 1.两个分片，第1个分片中部分请求失败
+        LocalPayClient payClient = new LocalPayClient(0);
+        payClient.failingIds.addAll(Arrays.asList(2L, 4L, 6L));
+        List<List<RefundResultDTO>> batches = Collections.synchronizedList(new ArrayList<>());
+        RefundJobHandler handler = newHandler(payClient, batches);
+        XxlJobContext.setXxlJobContext(new XxlJobContext(1, null, null, 0, 2));
+
+        handler.handleRefundRequest();
+
+        // 2.只处理id为偶数的申请，失败的申请不更新状态
+        Set<Long> handled = new HashSet<>();
+        batches.forEach(b -> b.forEach(r -> handled.add(r.getBizRefundOrderId())));
+        assertEquals(REFUND_NUM / 2 - 3, handled.size());
+        assertTrue(handled.stream().allMatch(id -> id % 2 == 0));
+        assertFalse(handled.contains(4L));
+    }
+
+    private RefundJobHandler newHandler(PayClient payClient, List<List<RefundResultDTO>> batches) {
+        RefundApplyServiceImpl service = spy(new RefundApplyServiceImpl(
+                null, null, null, payClient, null, executor, null));
+        // 模拟数据库中id为1~REFUND_NUM的待退款申请
+        doAnswer(invocation -> {
+            long lastId = invocation.getArgument(0);
+            int shardIndex = invocation.getArgument(1);
+            int shardTotal = invocation.getArgument(2);
+            int size = invocation.getArgument(3);
+            List<RefundApply> list = new ArrayList<>(size);
+            for (long id = lastId + 1; id <= REFUND_NUM && list.size() < size; id++) {
+                if (id % shardTotal != shardIndex) {
+                    continue;
+                }
+                RefundApply apply = new RefundApply();
+                apply.setId(id);
+                apply.setOrderId(id);
+                apply.setRefundAmount(100);
+                list.add(apply);
+            }
+            return list;
+        }).when(service).queryApplyToSend(anyLong(), anyInt(), anyInt(), anyInt());
+        doAnswer(invocation -> {
+            batches.add(new ArrayList<>(invocation.getArgument(0)));
+            return null;
+        }).when(service).handleRefundResults(anyList());
+        return new RefundJobHandler(service, executor, new TradeProperties());
+    }
+
+    /**
+     * 本地模拟的支付服务
+     */
+    private static class LocalPayClient implements PayClient {
+        private final long latencyMillis;
+        private final Set<Long> applied = ConcurrentHashMap.newKeySet();
+        private final Set<Long> failingIds = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+
+        LocalPayClient(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        @Override
+        public RefundResultDTO queryRefundResult(Long bizRefundOrderId) {
+            call();
+            // 尚未发起过退款
+            return null;
+        }
+
+        @Override
+        public RefundResultDTO applyRefund(RefundApplyDTO refundApplyDTO) {
+            call();
+            Long id = refundApplyDTO.getBizRefundOrderNo();
+            if (failingIds.contains(id)) {
+                throw new IllegalStateException("pay service unavailable");
+            }
+            applied.add(id);
+            return RefundResultDTO.success().bizRefundOrderId(id).refundOrderNo(id).build();
+        }
+
+        private void call() {
+            int current = inFlight.incrementAndGet();
+            maxInFlight.accumulateAndGet(current, Math::max);
+            try {
+                if (latencyMillis > 0) {
+                    Thread.sleep(latencyMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public List<PayChannelDTO> listAllPayChannels() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public String applyPayOrder(PayApplyDTO payApplyDTO) {
+            return null;
+        }
+
+        @Override
+        public PayResultDTO queryPayResult(Long bizOrderId) {
+            return null;
+        }
+    }
+}
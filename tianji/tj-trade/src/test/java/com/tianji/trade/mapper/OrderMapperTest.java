@@ -4,6 +4,13 @@ import com.tianji.trade.domain.po.Order;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 
 @SpringBootTest
 class OrderMapperTest {
@@ -16,4 +23,40 @@ class OrderMapperTest {
         Order order = orderMapper.getById(1L);
         System.out.println("order = " + order);
     }
-}
\ No newline at end of file
+
+    @Test
+    @Transactional
+    void queryMyOrderIdsSkipsDeletedOrders() {
+        // 1.同一用户的4个订单，按创建时间倒序为 o1, o2, o3, o4
+        long userId = 9_000_000_001L;
+        LocalDateTime now = LocalDateTime.now().withNano(0);
+        Order o1 = newOrder(userId, now);
+        Order o2 = newOrder(userId, now.minusMinutes(1));
+        Order o3 = newOrder(userId, now.minusMinutes(2));
+        Order o4 = newOrder(userId, now.minusMinutes(3));
+        // 2.逻辑删除第一页中间的订单
+        orderMapper.deleteById(o2.getId());
+
+        // 3.第一页不包含已删除的订单，也不会因此变短
+        List<Long> page1 = orderMapper.queryMyOrderIds(userId, null, null, null, 0, 2);
+        assertEquals(Arrays.asList(o1.getId(), o3.getId()), page1);
+        // 4.按游标继续查询，不会跳过未删除的订单
+        List<Long> page2 = orderMapper.queryMyOrderIds(userId, null, o3.getCreateTime(), o3.getId(), 0, 2);
+        assertEquals(Arrays.asList(o4.getId()), page2);
+        // 5.按页码查询与游标一致
+        assertEquals(page2, orderMapper.queryMyOrderIds(userId, null, null, null, 2, 2));
+    }
+
+    private Order newOrder(long userId, LocalDateTime createTime) {
+        Order order = new Order();
+        order.setUserId(userId);
+        order.setStatus(1);
+        order.setTotalAmount(100);
+        order.setRealAmount(100);
+        order.setCreateTime(createTime);
+        order.setCreater(userId);
+        order.setUpdater(userId);
+        orderMapper.insert(order);
+        return order;
+    }
+}
@@ -0,0 +1,155 @@
+package com.tianji.trade.service.impl;
+
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.trade.cache.CourseInfoCache;
+import com.tianji.trade.config.TradeProperties;
+import com.tianji.trade.domain.po.Cart;
+import com.tianji.trade.domain.po.CartVersion;
+import com.tianji.trade.mapper.CartMapper;
+import com.tianji.trade.mapper.CartVersionMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static com.tianji.trade.constants.RedisConstants.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartServiceImplTest {
+
+    private HashOperations<String, Object, Object> hashOps;
+    private SetOperations<String, String> setOps;
+    private CartMapper cartMapper;
+    private CartVersionMapper cartVersionMapper;
+    private TransactionTemplate transactionTemplate;
+    private CartServiceImpl cartService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        hashOps = mock(HashOperations.class);
+        setOps = mock(SetOperations.class);
+        doReturn(hashOps).when(redisTemplate).opsForHash();
+        doReturn(setOps).when(redisTemplate).opsForSet();
+        cartMapper = mock(CartMapper.class);
+        cartVersionMapper = mock(CartVersionMapper.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        // 直接执行事务中的逻辑
+        doAnswer(inv -> {
+            Consumer<TransactionStatus> action = inv.getArgument(0);
+            action.accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        cartService = new CartServiceImpl(mock(CourseInfoCache.class), new TradeProperties(),
+                redisTemplate, cartVersionMapper, transactionTemplate);
+        ReflectionTestUtils.setField(cartService, "baseMapper", cartMapper);
+    }
+
+    @Test
+    void testFlushNewerSnapshot() {
+        when(setOps.pop(CART_DIRTY_USERS_KEY, 200)).thenReturn(List.of("1"));
+        Cart cart = cart(1L, 10L);
+        when(hashOps.entries("trade:cart:1")).thenReturn(cache(3L, cart));
+        when(cartVersionMapper.queryForUpdate(List.of(1L))).thenReturn(List.of(version(1L, 2L)));
+
+        cartService.flushDirtyCarts(200);
+
+        // 缓存版本比数据库新，整体覆盖购物车并记录写回版本
+        verify(cartVersionMapper).insertIgnore(List.of(1L));
+        verify(cartMapper).deleteByUserIds(List.of(1L));
+        ArgumentCaptor<List<Cart>> carts = ArgumentCaptor.forClass(List.class);
+        verify(cartMapper).insertBatch(carts.capture());
+        assertEquals(1, carts.getValue().size());
+        assertEquals(cart.getId(), carts.getValue().get(0).getId());
+        assertEquals(10L, carts.getValue().get(0).getCourseId());
+        verify(cartVersionMapper).upsertBatch(List.of(version(1L, 3L)));
+        verify(setOps, never()).add(anyString(), any(String[].class));
+    }
+
+    @Test
+    void testFlushSkipsStaleSnapshot() {
+        when(setOps.pop(CART_DIRTY_USERS_KEY, 200)).thenReturn(List.of("1", "2"));
+        when(hashOps.entries("trade:cart:1")).thenReturn(cache(3L, cart(1L, 10L)));
+        when(hashOps.entries("trade:cart:2")).thenReturn(cache(4L));
+        // 用户1已经被其它实例用版本5写回
+        when(cartVersionMapper.queryForUpdate(List.of(1L, 2L)))
+                .thenReturn(List.of(version(1L, 5L), version(2L, 1L)));
+
+        cartService.flushDirtyCarts(200);
+
+        // 只覆盖用户2，用户2的购物车已清空
+        verify(cartMapper).deleteByUserIds(List.of(2L));
+        verify(cartMapper, never()).insertBatch(any());
+        verify(cartVersionMapper).upsertBatch(List.of(version(2L, 4L)));
+    }
+
+    @Test
+    void testFlushSkipsExpiredCache() {
+        when(setOps.pop(CART_DIRTY_USERS_KEY, 200)).thenReturn(List.of("1"));
+        when(hashOps.entries("trade:cart:1")).thenReturn(Map.of());
+
+        cartService.flushDirtyCarts(200);
+
+        // 缓存已失效，以数据库为准
+        verify(transactionTemplate, never()).executeWithoutResult(any());
+        verifyNoInteractions(cartMapper);
+    }
+
+    @Test
+    void testFlushFailureReAddsUsers() {
+        when(setOps.pop(CART_DIRTY_USERS_KEY, 200)).thenReturn(List.of("1", "2"));
+        when(hashOps.entries("trade:cart:1")).thenReturn(cache(3L, cart(1L, 10L)));
+        when(hashOps.entries("trade:cart:2")).thenReturn(Map.of());
+        when(cartVersionMapper.queryForUpdate(List.of(1L))).thenReturn(List.of(version(1L, 0L)));
+        // 写入成功但提交失败
+        doAnswer(inv -> {
+            Consumer<TransactionStatus> action = inv.getArgument(0);
+            action.accept(null);
+            throw new IllegalStateException("commit failed");
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        assertThrows(IllegalStateException.class, () -> cartService.flushDirtyCarts(200));
+
+        // 取出的用户全部放回待写回集合
+        verify(setOps).add(CART_DIRTY_USERS_KEY, "1", "2");
+    }
+
+    private static Map<Object, Object> cache(long version, Cart... carts) {
+        Map<Object, Object> entries = new HashMap<>();
+        entries.put(CART_LOADED_FIELD, String.valueOf(version));
+        for (Cart cart : carts) {
+            entries.put(cart.getCourseId().toString(), JsonUtils.toJsonStr(cart));
+        }
+        return entries;
+    }
+
+    private static Cart cart(Long userId, Long courseId) {
+        Cart cart = new Cart();
+        cart.setId(userId * 100 + courseId);
+        cart.setUserId(userId);
+        cart.setCourseId(courseId);
+        cart.setCourseName("course" + courseId);
+        cart.setCoverUrl("/img/" + courseId + ".jpg");
+        cart.setPrice(100);
+        cart.setCreateTime(LocalDateTime.of(2022, 8, 28, 0, 0));
+        return cart;
+    }
+
+    private static CartVersion version(Long userId, Long version) {
+        return new CartVersion().setUserId(userId).setVersion(version);
+    }
+}
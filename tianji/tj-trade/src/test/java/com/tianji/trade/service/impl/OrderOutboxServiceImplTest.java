@@ -0,0 +1,92 @@
+package com.tianji.trade.service.impl;
+
+import com.tianji.api.dto.trade.OrderBasicDTO;
+import com.tianji.common.autoconfigure.mq.RabbitMqHelper;
+import com.tianji.common.constants.MqConstants;
+import com.tianji.common.utils.JsonUtils;
+import com.tianji.trade.domain.po.OrderOutbox;
+import com.tianji.trade.mapper.OrderOutboxMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OrderOutboxServiceImplTest {
+
+    private OrderOutboxMapper mapper;
+    private RabbitMqHelper mqHelper;
+    private OrderOutboxServiceImpl outboxService;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(OrderOutboxMapper.class);
+        mqHelper = mock(RabbitMqHelper.class);
+        outboxService = new OrderOutboxServiceImpl(mqHelper);
+        ReflectionTestUtils.setField(outboxService, "baseMapper", mapper);
+    }
+
+    @Test
+    void testSaveOutbox() {
+        when(mapper.insert(any(OrderOutbox.class))).thenReturn(1);
+        OrderBasicDTO message = message();
+
+        OrderOutbox outbox = outboxService.saveOutbox(1L, MqConstants.Key.ORDER_PLACE_KEY, message);
+
+        // 待投递状态写入，消息内容可以还原
+        verify(mapper).insert(outbox);
+        assertEquals(1L, outbox.getOrderId());
+        assertEquals(MqConstants.Key.ORDER_PLACE_KEY, outbox.getRoutingKey());
+        assertEquals(OrderOutbox.PENDING, outbox.getStatus());
+        assertEquals(0, outbox.getRetryTimes());
+        OrderBasicDTO saved = JsonUtils.toBean(outbox.getPayload(), OrderBasicDTO.class);
+        assertEquals(message.getOrderId(), saved.getOrderId());
+        assertEquals(message.getUserId(), saved.getUserId());
+        assertEquals(message.getCourseIds(), saved.getCourseIds());
+    }
+
+    @Test
+    void testRelaySuccess() {
+        OrderOutbox outbox = outbox(0);
+
+        outboxService.relay(outbox);
+
+        // 投递到订单交换机后标记为已投递
+        ArgumentCaptor<OrderBasicDTO> sent = ArgumentCaptor.forClass(OrderBasicDTO.class);
+        verify(mqHelper).send(eq(MqConstants.Exchange.ORDER_EXCHANGE), eq(MqConstants.Key.ORDER_PLACE_KEY), sent.capture());
+        assertEquals(1L, sent.getValue().getOrderId());
+        verify(mapper).markSent(outbox.getId());
+        verify(mapper, never()).incrRetryTimes(anyLong(), anyInt());
+    }
+
+    @Test
+    void testRelayFailureCountsRetry() {
+        doThrow(new IllegalStateException("mq unavailable")).when(mqHelper).send(anyString(), anyString(), any());
+        OrderOutbox outbox = outbox(OrderOutboxServiceImpl.MAX_RETRY_TIMES - 1);
+
+        outboxService.relay(outbox);
+
+        // 投递失败只累加失败次数，由SQL在达到上限时标记为投递失败，不会标记为已投递
+        verify(mapper).incrRetryTimes(outbox.getId(), OrderOutboxServiceImpl.MAX_RETRY_TIMES);
+        verify(mapper, never()).markSent(anyLong());
+    }
+
+    private static OrderBasicDTO message() {
+        return OrderBasicDTO.builder().orderId(1L).userId(2L).courseIds(List.of(3L, 4L)).build();
+    }
+
+    private static OrderOutbox outbox(int retryTimes) {
+        return new OrderOutbox()
+                .setId(10L)
+                .setOrderId(1L)
+                .setRoutingKey(MqConstants.Key.ORDER_PLACE_KEY)
+                .setPayload(JsonUtils.toJsonStr(message()))
+                .setStatus(OrderOutbox.PENDING)
+                .setRetryTimes(retryTimes);
+    }
+}